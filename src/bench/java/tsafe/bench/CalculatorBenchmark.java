@@ -0,0 +1,99 @@
+package tsafe.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Point2D;
+import tsafe.common_datastructures.PointXY;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationMediator;
+import tsafe.server.computation.data.RouteTrack;
+import tsafe.server.computation.sub_computation.RouteTracker;
+
+/**
+ * Time and allocations of the geodesic math of the engine. Run with
+ * "-prof gc" and look at gc.alloc.rate.norm: the primitive conversions and
+ * the distance and angle methods allocate nothing. The PointXY and Point2D
+ * round trip is kept for comparison; it only stays allocation free here
+ * when escape analysis removes the points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    private static final LatLonBounds BOUNDS = new LatLonBounds(40, -75, 45, -68);
+
+    private Calculator calculator;
+    private RouteTracker routeTracker;
+    private FlightTrack track;
+    private FlightPlan plan;
+
+    private double lat1 = 42.36, lon1 = -71.01, lat2 = 40.64, lon2 = -73.78;
+
+    @Setup
+    public void setUp() {
+        calculator = new Calculator();
+
+        ComputationMediator mediator = new ComputationMediator(calculator);
+        mediator.setBounds(BOUNDS);
+        mediator.setParameters(new UserParameters());
+        routeTracker = new RouteTracker(mediator, calculator);
+
+        Route route = new Route();
+        for (int i = 0; i < 8; i++) {
+            route.addFix(new Fix("FIX" + i, 40.5 + 0.5 * i, -74.5 + 0.8 * i));
+        }
+        plan = new FlightPlan(0.2, 30000, route);
+        track = new FlightTrack(42.1, -71.9, 30000, 0, 0.2, 0.8);
+    }
+
+    @Benchmark
+    public double distanceLL() {
+        return calculator.distanceLL(lat1, lon1, lat2, lon2, BOUNDS);
+    }
+
+    @Benchmark
+    public double angleLL() {
+        return calculator.angleLL(lat1, lon1, lat2, lon2, BOUNDS);
+    }
+
+    @Benchmark
+    public double roundTripPrimitive() {
+        double x = calculator.toX(lat1, lon1, BOUNDS);
+        double lat = calculator.toLat(calculator.toY(lat1, BOUNDS), BOUNDS);
+        return lat + calculator.toLon(x, lat, BOUNDS);
+    }
+
+    @Benchmark
+    public double roundTripObjects() {
+        PointXY xy = calculator.toXY(lat1, lon1, BOUNDS);
+        Point2D ll = calculator.toLL(xy, BOUNDS);
+        return ll.getLatitude() + ll.getLongitude();
+    }
+
+    /** Allocates only the RouteTrack it returns and the route's iterator */
+    @Benchmark
+    public RouteTrack findRouteTrack() {
+        return routeTracker.findRouteTrack(track, plan);
+    }
+}
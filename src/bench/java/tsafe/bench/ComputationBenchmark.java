@@ -0,0 +1,117 @@
+package tsafe.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationMediator;
+import tsafe.server.computation.data.RouteTrack;
+import tsafe.server.computation.sub_computation.ConformanceMonitor;
+import tsafe.server.computation.sub_computation.RouteTracker;
+import tsafe.server.computation.sub_computation.TrajectorySynthesizer;
+
+/**
+ * The engine's work for one computation cycle over all the flights: route
+ * tracking, conformance monitoring, trajectory synthesis, and the whole
+ * cycle as the ComputationMediator runs it, without its cache.
+ * One operation is one pass over all the flights.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComputationBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int flights;
+
+    private Flight[] traffic;
+    private RouteTrack[] routeTracks;
+    private UserParameters parameters;
+    private ComputationMediator mediator;
+    private RouteTracker routeTracker;
+    private ConformanceMonitor conformanceMonitor;
+    private TrajectorySynthesizer trajectorySynthesizer;
+
+    @Setup
+    public void setUp() {
+        Calculator calculator = new Calculator();
+        traffic = new TrafficGenerator(1).flights(flights);
+        parameters = new UserParameters();
+
+        mediator = new ComputationMediator(calculator);
+        mediator.setCacheEnabled(false);
+        mediator.setFlights(Arrays.asList(traffic));
+        mediator.setBounds(TrafficGenerator.AIRSPACE);
+        mediator.setParameters(parameters);
+
+        routeTracker = new RouteTracker(mediator, calculator);
+        conformanceMonitor = new ConformanceMonitor(mediator, calculator);
+        trajectorySynthesizer = new TrajectorySynthesizer(mediator, calculator);
+
+        routeTracks = new RouteTrack[traffic.length];
+        for (int i = 0; i < traffic.length; i++) {
+            routeTracks[i] = routeTracker.findRouteTrack(traffic[i].getFlightTrack(),
+                                                         traffic[i].getFlightPlan());
+        }
+    }
+
+    @Benchmark
+    public void findRouteTrack(Blackhole bh) {
+        for (int i = 0; i < traffic.length; i++) {
+            bh.consume(routeTracker.findRouteTrack(traffic[i].getFlightTrack(),
+                                                   traffic[i].getFlightPlan()));
+        }
+    }
+
+    @Benchmark
+    public void findRouteTrackFromPrevious(Blackhole bh) {
+        for (int i = 0; i < traffic.length; i++) {
+            bh.consume(routeTracker.findRouteTrack(traffic[i].getFlightTrack(),
+                                                   traffic[i].getFlightPlan(),
+                                                   routeTracks[i]));
+        }
+    }
+
+    @Benchmark
+    public int isBlundering() {
+        int blunders = 0;
+        for (int i = 0; i < traffic.length; i++) {
+            if (conformanceMonitor.isBlundering(traffic[i].getFlightTrack(), routeTracks[i])) {
+                blunders++;
+            }
+        }
+        return blunders;
+    }
+
+    @Benchmark
+    public void getRouteTrajectory(Blackhole bh) {
+        for (int i = 0; i < traffic.length; i++) {
+            bh.consume(trajectorySynthesizer.getRouteTrajectory(routeTracks[i],
+                                                                traffic[i].getFlightPlan().getRoute()));
+        }
+    }
+
+    @Benchmark
+    public ComputationResults computeFlights() {
+        return mediator.computeFlights(TrafficGenerator.AIRSPACE, parameters);
+    }
+}
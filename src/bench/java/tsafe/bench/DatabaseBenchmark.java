@@ -0,0 +1,59 @@
+package tsafe.bench;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+import tsafe.server.database.RuntimeDatabase;
+
+/**
+ * The bounds query a client makes every computation cycle, for both
+ * database implementations, with the client looking at the Boston area and
+ * at the whole airspace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int flights;
+
+    @Param({ "RuntimeDatabase", "ConcurrentRuntimeDatabase" })
+    public String database;
+
+    private DatabaseInterface db;
+
+    @Setup
+    public void setUp() {
+        db = database.equals("RuntimeDatabase") ? (DatabaseInterface) new RuntimeDatabase()
+                                                : new ConcurrentRuntimeDatabase();
+        TrafficGenerator.loadFlights(db, new TrafficGenerator(1).flights(flights));
+    }
+
+    @Benchmark
+    public Collection selectFlightsInClientBounds() {
+        return db.selectFlightsInBounds(TrafficGenerator.CLIENT_BOUNDS);
+    }
+
+    @Benchmark
+    public Collection selectFlightsInAirspace() {
+        return db.selectFlightsInBounds(TrafficGenerator.AIRSPACE);
+    }
+}
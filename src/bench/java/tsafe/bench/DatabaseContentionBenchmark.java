@@ -0,0 +1,157 @@
+package tsafe.bench;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Route;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+import tsafe.server.database.RuntimeDatabase;
+
+/**
+ * Measures how readers and the feed parser get in each other's way. One
+ * writer thread keeps updating flight tracks in batches of 100, as the
+ * pipelined feed parser does, while 1, 4 and 16 reader threads keep querying
+ * the flights in the bounds of a client. Reports the throughput of both for
+ * RuntimeDatabase and ConcurrentRuntimeDatabase.
+ *
+ * Usage: DatabaseContentionBenchmark [flights] [seconds per run]
+ */
+public class DatabaseContentionBenchmark {
+
+    private static final int[] READER_THREADS = { 1, 4, 16 };
+
+    /** The bounds of the default client view, around Boston */
+    private static final LatLonBounds BOUNDS = new LatLonBounds(40, -75, 45, -68);
+
+    private final int flightCount;
+    private final long runMillis;
+
+    public DatabaseContentionBenchmark(int flightCount, long runMillis) {
+        this.flightCount = flightCount;
+        this.runMillis = runMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int flights = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 3;
+        new DatabaseContentionBenchmark(flights, seconds * 1000).run();
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println(flightCount + " flights, " + runMillis + " ms per run");
+        System.out.println("database                   readers  queries/s  updates/s");
+        for (int i = 0; i < READER_THREADS.length; i++) {
+            report(new RuntimeDatabase(), READER_THREADS[i]);
+            report(new ConcurrentRuntimeDatabase(), READER_THREADS[i]);
+        }
+    }
+
+    private void report(DatabaseInterface db, int readers) throws InterruptedException {
+        populate(db);
+        // Warm up, then measure
+        measure(db, readers, runMillis / 3);
+        long[] counts = measure(db, readers, runMillis);
+
+        String name = db.getClass().getName();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        System.out.println(pad(name, 27) + pad(String.valueOf(readers), 9)
+                           + pad(String.valueOf(counts[0] * 1000 / runMillis), 11)
+                           + counts[1] * 1000 / runMillis);
+    }
+
+    /**
+     * Runs the writer and the readers for the given time.
+     * Returns the number of queries and the number of updates
+     */
+    private long[] measure(final DatabaseInterface db, int readers, long millis)
+        throws InterruptedException {
+
+        final AtomicLong queries = new AtomicLong();
+        final AtomicLong updates = new AtomicLong();
+        final long end = System.currentTimeMillis() + millis;
+        final CountDownLatch done = new CountDownLatch(readers + 1);
+
+        Thread writer = new Thread("Writer") {
+            public void run() {
+                final Random random = new Random(1);
+                Runnable batch = new Runnable() {
+                    public void run() {
+                        for (int i = 0; i < 100; i++) {
+                            Flight f = db.selectFlight(id(random.nextInt(flightCount)));
+                            db.updateFlight(f.withFlightTrack(track(random)));
+                        }
+                    }
+                };
+                long count = 0;
+                while (System.currentTimeMillis() < end) {
+                    db.executeBatch(batch);
+                    count += 100;
+                }
+                updates.set(count);
+                done.countDown();
+            }
+        };
+        writer.start();
+
+        for (int r = 0; r < readers; r++) {
+            new Thread("Reader " + r) {
+                public void run() {
+                    long count = 0;
+                    while (System.currentTimeMillis() < end) {
+                        db.selectFlightsInBounds(BOUNDS);
+                        count++;
+                    }
+                    queries.addAndGet(count);
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        done.await();
+        return new long[] { queries.get(), updates.get() };
+    }
+
+    /** Fills the database with flights spread over the continental US */
+    private void populate(DatabaseInterface db) {
+        Random random = new Random(0);
+        for (int i = 0; i < flightCount; i++) {
+            Route route = new Route();
+            for (int j = 0; j < 6; j++) {
+                route.addFix(new Fix("F" + i + "_" + j, latitude(random), longitude(random)));
+            }
+            db.insertFlight(new Flight(id(i), track(random), new FlightPlan(0.2, 30000, route)));
+        }
+    }
+
+    private static FlightTrack track(Random random) {
+        return new FlightTrack(latitude(random), longitude(random), 30000,
+                               System.currentTimeMillis(), 0.2, random.nextDouble() * 2 * Math.PI);
+    }
+
+    private static double latitude(Random random) {
+        return 25 + 24 * random.nextDouble();
+    }
+
+    private static double longitude(Random random) {
+        return -125 + 58 * random.nextDouble();
+    }
+
+    private static String id(int i) {
+        return "AAL" + i;
+    }
+
+    private static String pad(String s, int width) {
+        StringBuffer sb = new StringBuffer(s);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,241 @@
+package tsafe.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import tsafe.common_datastructures.Airway;
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Route;
+import tsafe.server.database.DatabaseInterface;
+
+/**
+ * Generates synthetic static data and traffic over the continental US for
+ * the benchmarks. The same seed always gives the same data.
+ *
+ * The static data is a set of named fixes and of jet airways made of their
+ * own fixes. Every flight flies from a fix, along part of an airway, to
+ * another fix, and is somewhere near its route. The traffic is available
+ * both as flights and as the ASDI feed lines that describe them.
+ */
+public class TrafficGenerator {
+
+    /** The airspace the data lies in */
+    public static final LatLonBounds AIRSPACE = new LatLonBounds(25, -125, 49, -67);
+
+    /** The bounds of the default client view, around Boston */
+    public static final LatLonBounds CLIENT_BOUNDS = new LatLonBounds(40, -75, 45, -68);
+
+    private static final int FIXES = 4000;
+    private static final int AIRWAYS = 300;
+    private static final int FIXES_PER_AIRWAY = 16;
+
+    private static final double METERS_PER_MS_PER_KNOT = 1852.0 / 3600000.0;
+    private static final double METERS_PER_FOOT = 0.3048;
+
+    private final long seed;
+    private final Fix[] fixes;
+    private final Airway[] airways;
+
+    /** Constructs a generator and its static data */
+    public TrafficGenerator(long seed) {
+        this.seed = seed;
+        Random random = new Random(seed);
+
+        fixes = new Fix[FIXES];
+        for (int i = 0; i < FIXES; i++) {
+            fixes[i] = new Fix(fixName(i), latitude(random), longitude(random));
+        }
+
+        // Each airway is a straight line of fixes
+        airways = new Airway[AIRWAYS];
+        int fixNumber = FIXES;
+        for (int i = 0; i < AIRWAYS; i++) {
+            airways[i] = new Airway("J" + (i + 1));
+            double lat = 28 + 18 * random.nextDouble();
+            double lon = -120 + 45 * random.nextDouble();
+            double heading = 2 * Math.PI * random.nextDouble();
+            for (int j = 0; j < FIXES_PER_AIRWAY; j++) {
+                airways[i].addFix(new Fix(fixName(fixNumber++), lat, lon));
+                lat += 0.4 * Math.sin(heading);
+                lon += 0.5 * Math.cos(heading);
+            }
+        }
+    }
+
+    /** Inserts the fixes and airways into the database */
+    public void loadStaticData(DatabaseInterface db) {
+        for (int i = 0; i < fixes.length; i++) {
+            db.insertFix(fixes[i]);
+        }
+        for (int i = 0; i < airways.length; i++) {
+            db.insertAirway(airways[i]);
+            List awyFixes = airways[i].fixList();
+            for (int j = 0; j < awyFixes.size(); j++) {
+                db.insertFix((Fix) awyFixes.get(j));
+            }
+        }
+    }
+
+    /** Inserts the flights into the database */
+    public static void loadFlights(DatabaseInterface db, Flight[] flights) {
+        for (int i = 0; i < flights.length; i++) {
+            db.insertFlight(flights[i]);
+        }
+    }
+
+    /** Returns the given number of flights, each with a track and a plan */
+    public Flight[] flights(int count) {
+        Flight[] flights = new Flight[count];
+        for (int i = 0; i < count; i++) {
+            Leg leg = new Leg(i);
+            flights[i] = new Flight(aircraftId(i), leg.track(0), leg.plan());
+        }
+        return flights;
+    }
+
+    /** Returns the route descriptions of the given number of flights */
+    public String[] routeDescriptions(int count) {
+        String[] descriptions = new String[count];
+        for (int i = 0; i < count; i++) {
+            descriptions[i] = new Leg(i).routeDescription();
+        }
+        return descriptions;
+    }
+
+    /**
+     * Returns the feed lines of the given number of flights: a flight plan
+     * (FZ) message for every flight, followed by the given number of rounds
+     * of track (TZ) messages for every flight
+     */
+    public String[] feedLines(int count, int updates) {
+        String[] lines = new String[count * (updates + 1)];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            Leg leg = new Leg(i);
+            lines[n] = header(n, n) + "FZ " + aircraftId(i) + "/" + (i % 1000)
+                + " B738/L 0" + leg.knots + " " + leg.origin.getId() + " P1830 "
+                + leg.flightLevel + " " + leg.routeDescription();
+            n++;
+        }
+        for (int u = 1; u <= updates; u++) {
+            for (int i = 0; i < count; i++) {
+                Leg leg = new Leg(i);
+                FlightTrack track = leg.track(u);
+                lines[n] = header(n, n) + "TZ " + aircraftId(i) + "/" + (i % 1000)
+                    + " " + leg.knots + " " + leg.flightLevel + " "
+                    + latLon(track.getLatitude(), track.getLongitude());
+                n++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * The route of a flight: from its origin fix to the first fix of a
+     * stretch of an airway, along the airway, then to its destination fix
+     */
+    private class Leg {
+        private Random random;
+        private Fix origin, destination;
+        private Airway airway;
+        private int on, off;
+        private int knots, flightLevel;
+
+        Leg(int flight) {
+            random = new Random(seed * 31 + flight);
+            origin = fixes[random.nextInt(fixes.length)];
+            destination = fixes[random.nextInt(fixes.length)];
+            airway = airways[random.nextInt(airways.length)];
+            on = random.nextInt(FIXES_PER_AIRWAY - 4);
+            off = on + 2 + random.nextInt(FIXES_PER_AIRWAY - on - 2);
+            knots = 300 + random.nextInt(200);
+            flightLevel = 200 + 10 * random.nextInt(20);
+        }
+
+        Route route() {
+            Route route = new Route();
+            route.addFix(origin);
+            List awyFixes = airway.fixList();
+            for (int i = on; i <= off; i++) {
+                route.addFix((Fix) awyFixes.get(i));
+            }
+            route.addFix(destination);
+            return route;
+        }
+
+        FlightPlan plan() {
+            return new FlightPlan(knots * METERS_PER_MS_PER_KNOT,
+                                  flightLevel * 100 * METERS_PER_FOOT, route());
+        }
+
+        String routeDescription() {
+            List awyFixes = airway.fixList();
+            return origin.getId() + ".." + ((Fix) awyFixes.get(on)).getId() + "."
+                + airway.getId() + "." + ((Fix) awyFixes.get(off)).getId() + ".."
+                + destination.getId();
+        }
+
+        /** The track of the flight at the given update, near its route */
+        FlightTrack track(int update) {
+            List awyFixes = airway.fixList();
+            Fix fix = (Fix) awyFixes.get(on + (update % (off - on + 1)));
+            return new FlightTrack(fix.getLatitude() + 0.2 * random.nextGaussian(),
+                                   fix.getLongitude() + 0.2 * random.nextGaussian(),
+                                   flightLevel * 100 * METERS_PER_FOOT,
+                                   update * 60000L, knots * METERS_PER_MS_PER_KNOT,
+                                   2 * Math.PI * random.nextDouble());
+        }
+    }
+
+    /** Returns the ASDI header of the n-th line: sequence, time and facility */
+    private static String header(int n, int seconds) {
+        int minutes = seconds / 60;
+        return hex4(n) + "16" + two(19 + minutes / 60 % 4) + two(minutes % 60)
+            + two(seconds % 60) + "KZBW";
+    }
+
+    /** Returns a lat/lon fix description: ddmmN/dddmmW */
+    private static String latLon(double lat, double lon) {
+        int latMinutes = (int) Math.round(lat * 60);
+        int lonMinutes = (int) Math.round(-lon * 60);
+        return two(latMinutes / 60) + two(latMinutes % 60) + "N/"
+            + (lonMinutes / 60 < 100 ? "0" : "") + two(lonMinutes / 60)
+            + two(lonMinutes % 60) + "W";
+    }
+
+    /** Returns a five letter fix name for a number */
+    private static String fixName(int n) {
+        char[] name = new char[5];
+        for (int i = 4; i >= 0; i--) {
+            name[i] = (char) ('A' + n % 26);
+            n /= 26;
+        }
+        return new String(name);
+    }
+
+    private static String aircraftId(int i) {
+        return "SYN" + i;
+    }
+
+    private static String hex4(int n) {
+        String hex = Integer.toHexString(n & 0xffff).toUpperCase();
+        return "0000".substring(hex.length()) + hex;
+    }
+
+    private static String two(int n) {
+        return n < 10 ? "0" + n : String.valueOf(n);
+    }
+
+    private static double latitude(Random random) {
+        return 25 + 24 * random.nextDouble();
+    }
+
+    private static double longitude(Random random) {
+        return -125 + 58 * random.nextDouble();
+    }
+}
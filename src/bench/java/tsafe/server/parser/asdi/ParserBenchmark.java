@@ -0,0 +1,103 @@
+package tsafe.server.parser.asdi;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tsafe.bench.TrafficGenerator;
+import tsafe.common_datastructures.Route;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+
+/**
+ * The feed parser's work per message: decoding a feed line into a Message,
+ * decoding a track message and reading its fields, applying a track message
+ * to the database, and parsing a flight plan route. The database holds the given number of flights. It lives in the
+ * parser's package because Message and MessageExtractor are package private.
+ * One operation is one message or one route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final int YEAR = 2003, MONTH = 6;
+
+    @Param({ "1000", "10000", "100000" })
+    public int flights;
+
+    private String[] lines;
+    private Message[] trackMessages;
+    private String[] routes;
+    private DatabaseInterface db;
+    private Calculator calculator;
+    private MessageExtractor extractor;
+
+    private int nextLine, nextTrack, nextRoute;
+
+    @Setup
+    public void setUp() {
+        TrafficGenerator generator = new TrafficGenerator(1);
+        calculator = new Calculator();
+        db = new ConcurrentRuntimeDatabase();
+        generator.loadStaticData(db);
+        extractor = new MessageExtractor(db, calculator);
+
+        // Apply the flight plans and the first round of tracks, then keep
+        // the later rounds of tracks for the benchmark
+        lines = generator.feedLines(flights, 3);
+        trackMessages = new Message[2 * flights];
+        for (int i = 0; i < lines.length; i++) {
+            Message message = new Message(lines[i], YEAR, MONTH);
+            if (i < 2 * flights) {
+                extractor.extractMessage(message);
+            } else {
+                trackMessages[i - 2 * flights] = message;
+            }
+        }
+        routes = generator.routeDescriptions(Math.min(flights, 10000));
+    }
+
+    @Benchmark
+    public Message newMessage() {
+        if (nextLine == lines.length) nextLine = 0;
+        return new Message(lines[nextLine++], YEAR, MONTH);
+    }
+
+    /** Decodes a track message and the fields the extractor reads from it */
+    @Benchmark
+    public int decodeTrackMessage() {
+        if (nextTrack == trackMessages.length) nextTrack = 0;
+        Message message = new Message(lines[2 * flights + nextTrack++], YEAR, MONTH);
+        return message.getField(Message.FLIGHT_ID).length()
+            + message.getField(Message.SPEED).length()
+            + message.getField(Message.ASSIGNED_ALTITUDE).length()
+            + message.getField(Message.TRACK_POSITION).length();
+    }
+
+    @Benchmark
+    public void extractTrackMessage() {
+        if (nextTrack == trackMessages.length) nextTrack = 0;
+        extractor.extractMessage(trackMessages[nextTrack++]);
+    }
+
+    @Benchmark
+    public Route parseRoute() {
+        if (nextRoute == routes.length) nextRoute = 0;
+        return RouteParser.parseRoute(routes[nextRoute++], db, calculator);
+    }
+}
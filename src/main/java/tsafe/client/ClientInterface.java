@@ -1,6 +1,10 @@
 package tsafe.client;
 
+import java.awt.EventQueue;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import tsafe.common_datastructures.LatLonBounds;
 import tsafe.common_datastructures.client_server_communication.ComputationResults;
@@ -45,6 +49,23 @@ public abstract class ClientInterface extends Thread {
 	 */
 	protected SelectedFlights selectedFlights;
 
+	/**
+	 * The latest results pushed by the server that the client has not been
+	 * updated with yet, or null
+	 */
+	private final AtomicReference pendingResults = new AtomicReference();
+
+	/**
+	 * Whether an update with the pending results is scheduled or running
+	 */
+	private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+	/**
+	 * Number of pushed results that were replaced by newer ones before the
+	 * client was updated with them
+	 */
+	private final AtomicLong coalescedUpdates = new AtomicLong();
+
 	//****************************************************************
 
 	public ClientInterface(ServerInterface server, UserParameters params, ShowOptions showOpt, SelectedFlights selFlights) {
@@ -81,8 +102,70 @@ public abstract class ClientInterface extends Thread {
 
 		ComputationResults results = this.server.getFlightData(this.bounds,
 				this.parameters);
-		updateClient(results);
+		if (this.server.isAsynchronous()) {
+			pushResults(results);
+		} else {
+			updateClient(results);
+		}
+
+	}
+
+	/**
+	 * Hands new results to the client without waiting for it to be updated
+	 * with them. If the client is still busy with earlier results, only the
+	 * latest results are kept, so a slow client skips the stale ones instead
+	 * of falling behind.
+	 */
+	public void pushResults(ComputationResults results) {
+		if (this.pendingResults.getAndSet(results) != null) {
+			this.coalescedUpdates.incrementAndGet();
+		}
+		if (this.updateScheduled.compareAndSet(false, true)) {
+			scheduleUpdate(new Runnable() {
+				public void run() {
+					updateWithPendingResults();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Updates the client with the pending results until there are none left
+	 */
+	private void updateWithPendingResults() {
+		while (true) {
+			ComputationResults results = (ComputationResults) this.pendingResults
+					.getAndSet(null);
+			if (results != null) {
+				updateClient(results);
+				continue;
+			}
+			this.updateScheduled.set(false);
+
+			// Results pushed after the last check but before the flag was
+			// cleared would be left behind, unless picked up here
+			if (this.pendingResults.get() == null
+					|| !this.updateScheduled.compareAndSet(false, true)) {
+				return;
+			}
+		}
+	}
 
+	/**
+	 * Runs the update of the client with pushed results. The clients are
+	 * Swing windows, so by default the update runs on the event dispatch
+	 * thread.
+	 */
+	protected void scheduleUpdate(Runnable update) {
+		EventQueue.invokeLater(update);
+	}
+
+	/**
+	 * @return The number of pushed results the client skipped because newer
+	 *         ones arrived before it was updated
+	 */
+	public long getCoalescedUpdates() {
+		return this.coalescedUpdates.get();
 	}
 
 	public abstract void updateClient(ComputationResults results);
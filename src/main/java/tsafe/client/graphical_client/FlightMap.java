@@ -166,19 +166,23 @@ class FlightMap extends JComponent implements ImageObserver {
         this.needUpdate = true;
     }
     
-    /** Sets the flights in the pane */
+    /**
+     * Sets the flights in the pane. Like the blunders and trajectories, they
+     * are kept rather than copied, since the results are not modified once
+     * the client has them.
+     */
     public void setFlights(Collection flights) {
-        this.flights = new LinkedList(flights);
+        this.flights = flights;
     }
     
     /** Sets the blunders in the pane */
     public void setBlunders(Collection blunders) {
-        this.blunders = new LinkedList(blunders);
+        this.blunders = blunders;
     }
 
     /** Sets the flight trajectory map in the pane */
     public void setFlightTrajectoryMap(Map flight2TrajMap) {
-        this.flight2TrajMap = new HashMap(flight2TrajMap);
+        this.flight2TrajMap = flight2TrajMap;
     }
 
     /**
@@ -30,6 +30,7 @@ import tsafe.common_datastructures.Flight;
 import tsafe.common_datastructures.LatLonBounds;
 import tsafe.common_datastructures.TSAFEProperties;
 import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.server.metrics.Tracer;
 
 /**
  *  
@@ -246,6 +247,8 @@ public class GraphicalWindow extends JFrame implements ListSelectionListener,
 	}
 
 	public void updateWindow(ComputationResults results) {
+		Tracer tracer = Tracer.getDefault();
+		long start = tracer.start();
 
 		/* We pass in the current flights to re-populate the list,
 		   we also pass in the selected flights so that the flights that are selected
@@ -265,6 +268,7 @@ public class GraphicalWindow extends JFrame implements ListSelectionListener,
 		
 		flightMap.updateNeeded();
 		repaint();
+		tracer.end(Tracer.RENDER, start);
 	}
 
 	public void startWindow() {
@@ -0,0 +1,111 @@
+package tsafe.client.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collection;
+
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.ResultsState;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.common_datastructures.client_server_communication.WireProtocol;
+
+/**
+ *
+ *
+ * The connection of a display workstation to a headless server. It
+ * subscribes to the flights within some bounds, and receives the results
+ * the server pushes at each cycle, as deltas it applies to its own copy of
+ * the results. Connected to localhost, it is the loopback client of the
+ * tests.
+ */
+public class ResultsClient {
+
+	private final Socket socket;
+
+	private final DataInputStream in;
+
+	private final DataOutputStream out;
+
+	/**
+	 * The fixes sent by the server when the client connected, or null until
+	 * they are read
+	 */
+	private Collection fixes;
+
+	/**
+	 * The results, as of the last delta received
+	 */
+	private final ResultsState state = new ResultsState();
+
+	public ResultsClient(String host, int port) throws IOException {
+		this.socket = new Socket(host, port);
+		this.socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(this.socket
+				.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(this.socket
+				.getOutputStream()));
+	}
+
+	/**
+	 * Asks for the results within the bounds, computed with the parameters,
+	 * from the next cycle on.
+	 */
+	public synchronized void subscribe(LatLonBounds bounds,
+			UserParameters parameters) throws IOException {
+		WireProtocol.writeSubscription(this.out, bounds, parameters);
+		this.out.flush();
+	}
+
+	/**
+	 * @return The fixes of the server, read first if not yet read
+	 */
+	public Collection getFixes() throws IOException {
+		while (this.fixes == null) {
+			readFrame();
+		}
+		return this.fixes;
+	}
+
+	/**
+	 * Waits for the results of the next cycle. Results received as a delta
+	 * are views of the client's state, which the next call updates in
+	 * place.
+	 */
+	public ComputationResults receiveResults() throws IOException {
+		ComputationResults results = null;
+		while (results == null) {
+			results = readFrame();
+		}
+		return results;
+	}
+
+	/**
+	 * Reads a frame from the server
+	 *
+	 * @return The results it carries, or null if it carries none
+	 */
+	private ComputationResults readFrame() throws IOException {
+		byte type = this.in.readByte();
+		switch (type) {
+		case WireProtocol.FIXES:
+			this.fixes = WireProtocol.readFixes(this.in);
+			return null;
+		case WireProtocol.RESULTS:
+			return WireProtocol.readResults(this.in);
+		case WireProtocol.DELTA:
+			this.state.apply(WireProtocol.readDelta(this.in));
+			return this.state.getResults();
+		default:
+			throw new IOException("Unexpected frame type " + type);
+		}
+	}
+
+	public void close() throws IOException {
+		this.socket.close();
+	}
+}
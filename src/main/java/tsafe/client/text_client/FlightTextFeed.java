@@ -285,6 +285,6 @@ public class FlightTextFeed extends JEditorPane{
     
     /** Sets the flight trajectory map in the pane */
     public void setFlightTrajectoryMap(Map flight2TrajMap) {
-        this.flight2TrajMap = new HashMap(flight2TrajMap);
+        this.flight2TrajMap = flight2TrajMap;
     }
 }
\ No newline at end of file
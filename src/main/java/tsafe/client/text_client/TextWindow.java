@@ -14,6 +14,7 @@ import javax.swing.JSplitPane;
 import tsafe.client.ShowOptions;
 import tsafe.common_datastructures.client_server_communication.ComputationResults;
 import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.metrics.Tracer;
 
 /**
  * The Text Window is a JFrame with a command prompt and a text feed.
@@ -92,6 +93,9 @@ public class TextWindow  extends JFrame {
 	 */
 	public void updateTextWindow(ComputationResults results)
 	{
+		Tracer tracer = Tracer.getDefault();
+		long start = tracer.start();
+
 		// Update the flight map
 		synchronized (flightTextFeed) {
 			flightTextFeed.setFlights(results.getFlights());
@@ -105,6 +109,7 @@ public class TextWindow  extends JFrame {
 		synchronized (this.commandPrompt) {
 			commandPrompt.setFlights(results.getFlights());
 		}
+		tracer.end(Tracer.RENDER_TEXT, start);
 	}
 	
 	public void startWindow() {
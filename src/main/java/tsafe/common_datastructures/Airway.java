@@ -19,6 +19,12 @@
 
 package tsafe.common_datastructures;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Represents an airway, such as a jet or victor route
@@ -30,6 +36,23 @@ public class Airway extends Route {
      */
     private String id;
 
+    /**
+     * Position of each fix on the airway, by fix id.
+     * A fix that appears twice is at its first position
+     */
+    private Map fixIndexes = new HashMap();
+
+    /**
+     * The first fix of this airway on each airway that crosses it, by
+     * airway id, for the airways indexed together with this one
+     */
+    private Map crossings;
+
+    /**
+     * Identifies the airways whose crossings were indexed together
+     */
+    private Object crossingIndex;
+
     /**
      * Creates a new airway route with the given id.
      */
@@ -38,6 +61,129 @@ public class Airway extends Route {
         this.id = id;
     }
 
+    /**
+     * Creates a new airway route with the given id over the fixes of the
+     * table at the given handles. It cannot be modified
+     */
+    public Airway(String id, FixTable table, int[] handles) {
+        super(table, handles);
+        this.id = id;
+
+        List fixList = fixList();
+        for (int i = 0; i < fixList.size(); i++) {
+            indexFix((Fix)fixList.get(i), i);
+        }
+    }
+
+    /**
+     * Add a fix to the airway
+     */
+    public void addFix(Fix f) {
+        super.addFix(f);
+        indexFix(f, size() - 1);
+    }
+
+    /**
+     * Add the fixes of a list to the end of the airway, in order
+     */
+    public void addFixes(List fixList) {
+        int start = size();
+        super.addFixes(fixList);
+        for (int i = start; i < size(); i++) {
+            indexFix(getFix(i), i);
+        }
+    }
+
+    /**
+     * Returns the first position of the fix on the airway, or -1 if it is
+     * not on it
+     */
+    public int indexOf(Fix fix) {
+        Integer index = (Integer)fixIndexes.get(fix.getId());
+        return index == null ? -1 : index.intValue();
+    }
+
+    /**
+     * Returns true if the fix is on the airway
+     */
+    public boolean contains(Fix fix) {
+        return fixIndexes.containsKey(fix.getId());
+    }
+
+    /**
+     * Returns the first fix of this airway that is also on the other, or
+     * null if they share no fix. Airways whose crossings were indexed
+     * together look it up, others compare their fixes
+     */
+    public Fix sharedFix(Airway other) {
+        if (crossingIndex != null && crossingIndex == other.crossingIndex) {
+            return (Fix)crossings.get(other.id);
+        }
+
+        Iterator fixIter = fixIterator();
+        while (fixIter.hasNext()) {
+            Fix fix = (Fix)fixIter.next();
+            if (other.contains(fix)) {
+                return fix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexes the fixes shared by each pair of the airways, so that
+     * sharedFix looks them up. Airways that can be modified are not indexed
+     */
+    public static void indexCrossings(Collection airways) {
+        Object index = new Object();
+
+        // The airways through each fix, by fix id
+        Map airwaysThrough = new HashMap();
+        Iterator airwayIter = airways.iterator();
+        while (airwayIter.hasNext()) {
+            Airway airway = (Airway)airwayIter.next();
+            if (!airway.isUnmodifiable()) continue;
+            airway.crossings = new HashMap();
+            airway.crossingIndex = index;
+
+            Iterator idIter = airway.fixIndexes.keySet().iterator();
+            while (idIter.hasNext()) {
+                Object fixId = idIter.next();
+                List through = (List)airwaysThrough.get(fixId);
+                if (through == null) {
+                    through = new ArrayList(2);
+                    airwaysThrough.put(fixId, through);
+                }
+                through.add(airway);
+            }
+        }
+
+        // Each airway meets another first at the first of its fixes the other is on
+        airwayIter = airways.iterator();
+        while (airwayIter.hasNext()) {
+            Airway airway = (Airway)airwayIter.next();
+            if (airway.crossingIndex != index) continue;
+
+            Iterator fixIter = airway.fixIterator();
+            while (fixIter.hasNext()) {
+                Fix fix = (Fix)fixIter.next();
+                List through = (List)airwaysThrough.get(fix.getId());
+                for (int i = 0; i < through.size(); i++) {
+                    Airway other = (Airway)through.get(i);
+                    if (other != airway && !airway.crossings.containsKey(other.id)) {
+                        airway.crossings.put(other.id, fix);
+                    }
+                }
+            }
+        }
+    }
+
+    private void indexFix(Fix fix, int i) {
+        if (!fixIndexes.containsKey(fix.getId())) {
+            fixIndexes.put(fix.getId(), Integer.valueOf(i));
+        }
+    }
+
     /**
      * Return this airway's id
      */
@@ -29,7 +29,7 @@ public class Fix extends Point2D {
     /**
      * The fix id, assumes fixes have unique ids
      */
-    private String id;
+    private final String id;
 
     /**
      * Constructs a Fix with the given name and coordinates.
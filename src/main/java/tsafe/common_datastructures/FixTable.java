@@ -0,0 +1,372 @@
+package tsafe.common_datastructures;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A table of fixes stored by column: the ids, latitudes and longitudes of
+ * the fixes in parallel arrays, and an open addressing index from id to
+ * position. The position of a fix is its handle, by which the routes of the
+ * static data reference it. The Fix object of a handle is only created the
+ * first time it is asked for.
+ *
+ * The data at a handle never changes. Putting a fix with the id of another
+ * gives it a new handle and moves the id to it, and removing a fix only
+ * removes its id from the index. Writers are synchronized, readers take no
+ * locks.
+ */
+public class FixTable {
+
+    /** Index slot that was never used, and slot of a removed id */
+    private static final int FREE = -1, REMOVED = -2;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** The columns, replaced by larger copies as the table grows */
+    private volatile Columns columns;
+
+    /** The handles of the indexed ids, in slots chosen by the hash of the id */
+    private volatile AtomicIntegerArray index;
+
+    /** Number of handles, written after the columns of a new handle */
+    private volatile int size;
+
+    /** Number of ids indexed, and of slots holding an indexed or removed id */
+    private int indexed, usedSlots;
+
+    private static class Columns {
+
+        final String[] ids;
+
+        final double[] lats, lons;
+
+        final Fix[] fixes;
+
+        Columns(int capacity) {
+            ids   = new String[capacity];
+            lats  = new double[capacity];
+            lons  = new double[capacity];
+            fixes = new Fix[capacity];
+        }
+
+        Columns(Columns c, int capacity) {
+            this(capacity);
+            System.arraycopy(c.ids,   0, ids,   0, c.ids.length);
+            System.arraycopy(c.lats,  0, lats,  0, c.lats.length);
+            System.arraycopy(c.lons,  0, lons,  0, c.lons.length);
+            System.arraycopy(c.fixes, 0, fixes, 0, c.fixes.length);
+        }
+    }
+
+    /**
+     * Construct an empty table
+     */
+    public FixTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct an empty table with room for the given number of fixes
+     */
+    public FixTable(int capacity) {
+        capacity = Math.max(capacity, 16);
+        columns = new Columns(capacity);
+        index = newIndex(slotsFor(capacity));
+    }
+
+    /**
+     * Adds a fix, and makes it the fix of its id
+     *
+     *@return the handle of the fix
+     */
+    public synchronized int put(String id, double lat, double lon) {
+        int handle = add(id, lat, lon, null);
+        index(handle);
+        return handle;
+    }
+
+    /**
+     * Adds the fix, and makes it the fix of its id.
+     * The table returns the fix itself for its handle
+     *
+     *@return the handle of the fix
+     */
+    public synchronized int put(Fix fix) {
+        int handle = add(fix.getId(), fix.getLatitude(), fix.getLongitude(), fix);
+        index(handle);
+        return handle;
+    }
+
+    /**
+     * Adds a fix that is only referenced by handle, such as a fix of a route
+     * that is not in the fix files. It is not found by its id
+     *
+     *@return the handle of the fix
+     */
+    public synchronized int append(String id, double lat, double lon) {
+        return add(id, lat, lon, null);
+    }
+
+    /**
+     * Makes the fix at the handle the fix of its id, in place of the fix
+     * the id had, if any
+     *
+     *@throws IndexOutOfBoundsException if there is no such handle
+     */
+    public synchronized void index(int handle) {
+        String id = columns(handle).ids[handle];
+        AtomicIntegerArray index = this.index;
+        int mask = index.length() - 1;
+        int removedSlot = -1;
+
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int h = index.get(slot);
+            if (h == FREE) {
+                if (removedSlot >= 0) {
+                    slot = removedSlot;
+                } else {
+                    usedSlots++;
+                }
+                index.set(slot, handle);
+                indexed++;
+                break;
+            }
+            if (h == REMOVED) {
+                if (removedSlot < 0) removedSlot = slot;
+            } else if (columns.ids[h].equals(id)) {
+                index.set(slot, handle);
+                return;
+            }
+        }
+
+        if (usedSlots * 2 > index.length()) {
+            rehash();
+        }
+    }
+
+    /**
+     * Removes the id from the index. Routes that reference its fix by
+     * handle still do
+     *
+     *@return true if the id was indexed
+     */
+    public synchronized boolean remove(String id) {
+        AtomicIntegerArray index = this.index;
+        int mask = index.length() - 1;
+
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int h = index.get(slot);
+            if (h == FREE) {
+                return false;
+            }
+            if (h >= 0 && columns.ids[h].equals(id)) {
+                index.set(slot, REMOVED);
+                indexed--;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the handle of the fix with the given id, or -1 if none
+     */
+    public int handleOf(String id) {
+        AtomicIntegerArray index = this.index;
+        int mask = index.length() - 1;
+
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int h = index.get(slot);
+            if (h == FREE) {
+                return -1;
+            }
+            if (h >= 0 && columns.ids[h].equals(id)) {
+                return h;
+            }
+        }
+    }
+
+    /**
+     * Returns the fix with the given id, or null if none
+     */
+    public Fix get(String id) {
+        int handle = handleOf(id);
+        return handle < 0 ? null : getFix(handle);
+    }
+
+    /**
+     * Returns the number of handles, including those of fixes that are not
+     * indexed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of the fix at the handle
+     */
+    public String getId(int handle) {
+        return columns(handle).ids[handle];
+    }
+
+    /**
+     * Returns the latitude of the fix at the handle
+     */
+    public double getLatitude(int handle) {
+        return columns(handle).lats[handle];
+    }
+
+    /**
+     * Returns the longitude of the fix at the handle
+     */
+    public double getLongitude(int handle) {
+        return columns(handle).lons[handle];
+    }
+
+    /**
+     * Returns the fix at the handle, created the first time it is asked for.
+     * The same Fix object is returned every time
+     */
+    public Fix getFix(int handle) {
+        Fix fix = columns(handle).fixes[handle];
+        if (fix != null) {
+            return fix;
+        }
+
+        synchronized (this) {
+            Columns c = columns;
+            fix = c.fixes[handle];
+            if (fix == null) {
+                fix = new Fix(c.ids[handle], c.lats[handle], c.lons[handle]);
+                c.fixes[handle] = fix;
+            }
+            return fix;
+        }
+    }
+
+    /**
+     * Returns true if the fix at the handle is the fix of its id
+     */
+    public boolean isIndexed(int handle) {
+        return handleOf(getId(handle)) == handle;
+    }
+
+    /**
+     * Returns an unmodifiable list of the fixes at the handles
+     */
+    public List fixList(int[] handles) {
+        return new FixList(handles);
+    }
+
+    /**
+     * Returns the fixes found by id, in the order of their handles
+     */
+    public Collection fixes() {
+        int size = this.size;
+        List fixes = new ArrayList(size);
+        for (int handle = 0; handle < size; handle++) {
+            if (isIndexed(handle)) {
+                fixes.add(getFix(handle));
+            }
+        }
+        return Collections.unmodifiableList(fixes);
+    }
+
+    /**
+     * The fixes at an array of handles
+     */
+    private class FixList extends AbstractList implements RandomAccess {
+
+        private int[] handles;
+
+        FixList(int[] handles) {
+            this.handles = handles;
+        }
+
+        public Object get(int i) {
+            return getFix(handles[i]);
+        }
+
+        public int size() {
+            return handles.length;
+        }
+    }
+
+    //*********************************************
+
+    /**
+     * Returns the columns, checking that the handle is in the table
+     */
+    private Columns columns(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IndexOutOfBoundsException("handle: " + handle);
+        }
+        return columns;
+    }
+
+    private int add(String id, double lat, double lon, Fix fix) {
+        if (id == null) throw new NullPointerException("id");
+
+        Columns c = columns;
+        if (size == c.ids.length) {
+            c = new Columns(c, c.ids.length * 2);
+            columns = c;
+        }
+        int handle = size;
+        c.ids[handle]   = id;
+        c.lats[handle]  = lat;
+        c.lons[handle]  = lon;
+        c.fixes[handle] = fix;
+        size = handle + 1;
+        return handle;
+    }
+
+    /**
+     * Replaces the index by one with room for twice the ids indexed,
+     * without the removed ids
+     */
+    private void rehash() {
+        AtomicIntegerArray old = this.index;
+        AtomicIntegerArray index = newIndex(slotsFor(indexed * 2));
+        int mask = index.length() - 1;
+
+        for (int i = 0; i < old.length(); i++) {
+            int h = old.get(i);
+            if (h < 0) continue;
+            int slot = hash(columns.ids[h]) & mask;
+            while (index.get(slot) != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            index.set(slot, h);
+        }
+
+        usedSlots = indexed;
+        this.index = index;
+    }
+
+    /** Returns the number of slots that keeps the given number of ids at most half full */
+    private static int slotsFor(int ids) {
+        int slots = 16;
+        while (slots < ids * 2) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    private static AtomicIntegerArray newIndex(int slots) {
+        AtomicIntegerArray index = new AtomicIntegerArray(slots);
+        for (int i = 0; i < slots; i++) {
+            index.set(i, FREE);
+        }
+        return index;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
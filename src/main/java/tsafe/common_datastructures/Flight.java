@@ -21,13 +21,15 @@ package tsafe.common_datastructures;
 
 /**
  * A flight: an id, a flight track, and a flight plan
+ * This is an immutable datatype, so flights may be shared freely between the
+ * database and its readers. Updates create a new flight
  */
 public class Flight {
 
     // Flight id assumes flights have unique ids
-    private String aircraftId;
-    private FlightTrack track;
-    private FlightPlan plan;
+    private final String aircraftId;
+    private final FlightTrack track;
+    private final FlightPlan plan;
 
     /**
      * Constructs a flight with no flight plan
@@ -90,17 +92,17 @@ public class Flight {
     }
 
     /**
-     * Sets the flight track
+     * Returns a flight with the same id and plan and the given track
      */
-    public void setFlightTrack(FlightTrack track) {
-        this.track = track;
+    public Flight withFlightTrack(FlightTrack track) {
+        return new Flight(this.aircraftId, track, this.plan);
     }
 
     /**
-     * Sets the flight plan
+     * Returns a flight with the same id and track and the given plan
      */
-    public void setFlightPlan(FlightPlan plan) {
-        this.plan = plan;
+    public Flight withFlightPlan(FlightPlan plan) {
+        return new Flight(this.aircraftId, this.track, plan);
     }
 
     /**
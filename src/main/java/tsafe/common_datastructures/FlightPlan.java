@@ -35,6 +35,16 @@ public class FlightPlan {
      */
     private Route route;
 
+    /**
+     * Version stamp, unique to each flight plan
+     */
+    private long version;
+
+    /**
+     * The last version stamp handed out
+     */
+    private static long lastVersion = 0;
+
     /**
      * Construct a flight plan
      *
@@ -44,7 +54,13 @@ public class FlightPlan {
         if (route == null) throw new NullPointerException("route is null");
         this.speed = speed;
         this.altitude = altitude;
-        this.route = new Route(route);
+        this.route = Route.unmodifiableRoute(route);
+        this.version = nextVersion();
+    }
+
+    /** Return a fresh version stamp */
+    private static synchronized long nextVersion() {
+        return ++lastVersion;
     }
 
     /** Return the assigned speed */
@@ -57,9 +73,20 @@ public class FlightPlan {
         return this.altitude;
     }
      
-    /** Return a copy of the flight route */
+    /**
+     * Return the flight route.
+     * The route is shared and cannot be modified
+     */
     public Route getRoute() {
-        return new Route(this.route);
+        return this.route;
+    }
+
+    /**
+     * Return the version stamp of this plan.
+     * Every new or amended flight plan receives a greater stamp
+     */
+    public long getVersion() {
+        return this.version;
     }
 
     /** Returns a flight plan with the amended speed */
@@ -74,7 +101,7 @@ public class FlightPlan {
 
     /** Returns a flight plan with the amended route */
     public FlightPlan amendRoute(Route newRoute) {
-        return new FlightPlan(this.speed, this.altitude,  new Route(newRoute));
+        return new FlightPlan(this.speed, this.altitude, newRoute);
     }
 }
 
@@ -55,6 +55,27 @@ public class LatLonBounds {
                (lon > minLon && lon < maxLon);
     }
 
+    /**
+     * Returns true if o is a LatLonBounds with the same coordinates as this
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof LatLonBounds)) return false;
+        LatLonBounds b = (LatLonBounds)o;
+        return b.minLat == this.minLat && b.minLon == this.minLon &&
+               b.maxLat == this.maxLat && b.maxLon == this.maxLon;
+    }
+
+    /**
+     * Returns a hash code for the bounds
+     */
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(minLat);
+        bits = 31 * bits + Double.doubleToLongBits(minLon);
+        bits = 31 * bits + Double.doubleToLongBits(maxLat);
+        bits = 31 * bits + Double.doubleToLongBits(maxLon);
+        return (int)(bits ^ (bits >>> 32));
+    }
+
     public String toString() {
         return "Latitude: "  + minLat + "-" + maxLat + " " +
         "Longitude: " + minLon + "-" + maxLon;
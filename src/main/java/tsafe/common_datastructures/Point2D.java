@@ -25,7 +25,7 @@ package tsafe.common_datastructures;
  */
 public class Point2D {
 
-    private double lat, lon;
+    private final double lat, lon;
 
     public Point2D(double lat, double lon) {
         this.lat = lat;
@@ -19,9 +19,9 @@
 
 package tsafe.common_datastructures;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -35,27 +35,94 @@ public class Route {
      */
     private List fixes;
 
+    /**
+     * True if the route cannot be modified
+     */
+    private boolean unmodifiable;
+
+    /**
+     * The table of the fixes and their handles in it, if the route
+     * references its fixes by handle
+     */
+    private FixTable table;
+
+    private int[] handles;
+
     /**
      * Construct an empty route
      */
     public Route () {
-        fixes = new LinkedList();
+        fixes = new ArrayList();
     }
 
     /**
      * Construct a route that is a copy of another
      */
     public Route(Route r) {
-        this.fixes = new LinkedList(r.fixes);
+        this.fixes = new ArrayList(r.fixes);
+    }
+
+    /**
+     * Construct a route that cannot be modified over the given list of fixes
+     */
+    private Route(List fixes) {
+        this.fixes = Collections.unmodifiableList(fixes);
+        this.unmodifiable = true;
+    }
+
+    /**
+     * Construct a route that cannot be modified over the fixes of the table
+     * at the given handles
+     */
+    public Route(FixTable table, int[] handles) {
+        this.table = table;
+        this.handles = handles.clone();
+        this.fixes = table.fixList(this.handles);
+        this.unmodifiable = true;
+    }
+
+    /**
+     * Returns a copy of the route that cannot be modified.
+     * Returns r itself if it already cannot be modified
+     */
+    public static Route unmodifiableRoute(Route r) {
+        return r.unmodifiable ? r : new Route(new ArrayList(r.fixes));
     }
 
     /**
      * Add a fix to the route
+     *
+     *@throws UnsupportedOperationException if the route cannot be modified
      */
     public void addFix(Fix f) {
         fixes.add(f);
     }
 
+    /**
+     * Add the fixes of a list to the end of the route, in order
+     *
+     *@throws UnsupportedOperationException if the route cannot be modified
+     */
+    public void addFixes(List fixList) {
+        fixes.addAll(fixList);
+    }
+
+    /**
+     * Returns the number of fixes in the route
+     */
+    public int size() {
+        return fixes.size();
+    }
+
+    /**
+     * Returns the fix at the given position in the route
+     *
+     *@throws IndexOutOfBoundsException if there is no such position
+     */
+    public Fix getFix(int i) {
+        return (Fix)fixes.get(i);
+    }
+
     /**
      * Returns true if the route is empty
      */
@@ -84,7 +151,8 @@ public class Route {
     }
 
     /**
-     * Return an unmodifiable list of fixes in the route
+     * Return an unmodifiable list of fixes in the route, with constant time
+     * access by position
      */
     public List fixList() {
         return Collections.unmodifiableList(fixes);
@@ -97,6 +165,30 @@ public class Route {
         return fixes.iterator();
     }
 
+    /**
+     * Returns true if the route cannot be modified, so that what is derived
+     * from its fixes may be kept as long as the route
+     */
+    public boolean isUnmodifiable() {
+        return unmodifiable;
+    }
+
+    /**
+     * Returns the table the route references its fixes in, or null if it
+     * holds the fixes themselves
+     */
+    public FixTable getFixTable() {
+        return table;
+    }
+
+    /**
+     * Returns a copy of the handles of the fixes in the fix table,
+     * or null if the route holds the fixes themselves
+     */
+    public int[] fixHandles() {
+        return handles == null ? null : handles.clone();
+    }
+
     /**
      * Return a String representation of this route
      */
@@ -124,6 +124,17 @@ public class Sid {
     }
     
     private Route appendTransition(Route transition) {
+        // Routes of the same fix table are joined by handle
+        FixTable table = basic.getFixTable();
+        if (table != null && table == transition.getFixTable()) {
+            int[] basicHandles = basic.fixHandles();
+            int[] transHandles = transition.fixHandles();
+            int[] handles = new int[basicHandles.length + transHandles.length - 1];
+            System.arraycopy(basicHandles, 0, handles, 0, basicHandles.length);
+            System.arraycopy(transHandles, 1, handles, basicHandles.length, transHandles.length - 1);
+            return new Route(table, handles);
+        }
+
         Route fullRoute = new Route();
 
         // Add all the basic route fixes to the full route
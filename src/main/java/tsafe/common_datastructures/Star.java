@@ -124,6 +124,17 @@ public class Star {
     }
 
     private Route appendTransition(Route transition) {
+        // Routes of the same fix table are joined by handle
+        FixTable table = basic.getFixTable();
+        if (table != null && table == transition.getFixTable()) {
+            int[] transHandles = transition.fixHandles();
+            int[] basicHandles = basic.fixHandles();
+            int[] handles = new int[transHandles.length + basicHandles.length - 1];
+            System.arraycopy(transHandles, 0, handles, 0, transHandles.length);
+            System.arraycopy(basicHandles, 1, handles, transHandles.length, basicHandles.length - 1);
+            return new Route(table, handles);
+        }
+
         Route fullRoute = new Route();
 
         // Add all the fixes of the transition to the basic route
@@ -16,51 +16,103 @@
  along with this program; if not, write to the Free Software
  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
  */
-
 package tsafe.common_datastructures;
 
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 /**
- * Represents a trajectory, or 4-Dimensional path
+ * Represents a trajectory, or 4-Dimensional path.
+ * The points are kept in an array, with their times in a parallel array
+ * that is searched by binary search. Points are expected in time order
  */
 public class Trajectory {
     
     /**
-     * List of all the points in the trajectory
+     * Array of all the points in the trajectory, and their times
+     */
+    private Point4D[] points;
+    private long[] times;
+
+    /**
+     * Number of points in the trajectory
      */
-    private List points;
+    private int size;
 
     /**
      * Construct an empty trajectory
      */
     public Trajectory() {
-        points = new LinkedList();
+        this(4);
+    }
+
+    /**
+     * Construct an empty trajectory with room for the given number of points
+     */
+    public Trajectory(int capacity) {
+        capacity = Math.max(capacity, 1);
+        points = new Point4D[capacity];
+        times = new long[capacity];
     }
 
     /**
      * Construct a trajectory that is a copy of another
      */
     public Trajectory(Trajectory t) {
-        this.points = new LinkedList(t.points);
+        this(t.size);
+        System.arraycopy(t.points, 0, points, 0, t.size);
+        System.arraycopy(t.times, 0, times, 0, t.size);
+        size = t.size;
     }
 
     /**
      * Add a point to the trajectory
      */
     public void addPoint(Point4D p) {
-        points.add(p);
+        if (size == points.length) {
+            grow(size + 1);
+        }
+        points[size] = p;
+        times[size] = p.getTime();
+        size++;
+    }
+
+    /**
+     * Add the points of a list to the end of the trajectory, in order
+     */
+    public void addPoints(List pointList) {
+        grow(size + pointList.size());
+        Iterator pointIter = pointList.iterator();
+        while (pointIter.hasNext()) {
+            addPoint((Point4D)pointIter.next());
+        }
     }
 
     /**
      * Returns true if the trajectory is empty
      */
     public boolean isEmpty() {
-        return points.isEmpty();
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of points in the trajectory
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the point at the given position in the trajectory
+     *
+     *@throws IndexOutOfBoundsException if there is no such position
+     */
+    public Point4D getPoint(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("point " + i + " of " + size);
+        return points[i];
     }
 
     /**
@@ -70,7 +122,7 @@ public class Trajectory {
      */
     public Point4D firstPoint() {
         if (isEmpty()) throw new NoSuchElementException("trajectory is empty");
-        return (Point4D)points.get(0);
+        return points[0];
     }
 
     /**
@@ -80,21 +132,39 @@ public class Trajectory {
      */
     public Point4D lastPoint() {
         if (isEmpty()) throw new NoSuchElementException("trajectory is empty");
-        return (Point4D)points.get(points.size() - 1);
+        return points[size - 1];
+    }
+
+    /**
+     * Returns the position of the last point whose time is at or before
+     * the given time, or -1 if every point is later
+     */
+    public int indexAtTime(long time) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
     }
     
     /**
-     * Return an unmodifiable list of points in the trajectory
+     * Return an unmodifiable list of points in the trajectory, with constant
+     * time access by position
      */
     public List pointList() {
-        return Collections.unmodifiableList(points);
+        return new PointList();
     }
 
     /**
      * Return an iterator over the points in the trajectory
      */
     public Iterator pointIterator() {
-        return points.iterator();
+        return pointList().iterator();
     }
 
     /**
@@ -102,16 +172,43 @@ public class Trajectory {
      */
     public String toString() {
         StringBuffer sb = new StringBuffer("[");
-        Iterator pointIter = points.iterator();
-
-        while(pointIter.hasNext()) {
-            sb.append(pointIter.next());
-            if (pointIter.hasNext()) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
                 sb.append(",");
             }
+            sb.append(points[i]);
         }
 
         sb.append("]");
         return sb.toString();
     }
+
+    /**
+     * Makes room for at least the given number of points
+     */
+    private void grow(int capacity) {
+        if (capacity <= points.length) return;
+        capacity = Math.max(capacity, points.length * 2);
+
+        Point4D[] newPoints = new Point4D[capacity];
+        long[] newTimes = new long[capacity];
+        System.arraycopy(points, 0, newPoints, 0, size);
+        System.arraycopy(times, 0, newTimes, 0, size);
+        points = newPoints;
+        times = newTimes;
+    }
+
+    /**
+     * The points of the trajectory, as they are when read
+     */
+    private class PointList extends AbstractList implements RandomAccess {
+
+        public Object get(int i) {
+            return getPoint(i);
+        }
+
+        public int size() {
+            return size;
+        }
+    }
 }
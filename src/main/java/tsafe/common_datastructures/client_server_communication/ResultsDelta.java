@@ -0,0 +1,75 @@
+package tsafe.common_datastructures.client_server_communication;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The changes between two versions of a client's results: the flights added
+ * or changed, the flights removed, the flights that started or stopped
+ * blundering, and the trajectories that changed. Flights are identified by
+ * their aircraft ids.
+ *
+ * @see ResultsState
+ */
+public class ResultsDelta {
+
+    /** The version the delta applies to, and the version it results in */
+    private long baseVersion, version;
+
+    /** Flights added or changed */
+    private Collection updatedFlights = new ArrayList();
+
+    /** Ids of the flights removed */
+    private Collection removedFlightIds = new ArrayList();
+
+    /** Ids of the flights that started or stopped blundering */
+    private Collection newBlunderIds = new ArrayList();
+    private Collection clearedBlunderIds = new ArrayList();
+
+    /** Changed trajectories, by aircraft id. A null trajectory is removed. */
+    private Map changedTrajectories = new HashMap();
+
+    public ResultsDelta(long baseVersion, long version) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+    }
+
+    // GETTERS
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Collection getUpdatedFlights() {
+        return updatedFlights;
+    }
+
+    public Collection getRemovedFlightIds() {
+        return removedFlightIds;
+    }
+
+    public Collection getNewBlunderIds() {
+        return newBlunderIds;
+    }
+
+    public Collection getClearedBlunderIds() {
+        return clearedBlunderIds;
+    }
+
+    public Map getChangedTrajectories() {
+        return changedTrajectories;
+    }
+
+    /** Returns whether nothing changed */
+    public boolean isEmpty() {
+        return updatedFlights.isEmpty() && removedFlightIds.isEmpty() &&
+               newBlunderIds.isEmpty() && clearedBlunderIds.isEmpty() &&
+               changedTrajectories.isEmpty();
+    }
+}
@@ -0,0 +1,245 @@
+package tsafe.common_datastructures.client_server_communication;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.Trajectory;
+
+/**
+ * A version of a client's results, kept up to date by deltas.
+ *
+ * The server keeps the state each client has been sent, and turns the
+ * results of a cycle into the delta from it with update(). The client keeps
+ * its own copy of the state, and brings it to the same version with
+ * apply(), at a cost proportional to the changes rather than to the number
+ * of flights.
+ *
+ * The results of getResults() are views of the state, which change as
+ * deltas are applied.
+ */
+public class ResultsState {
+
+    /** The version of the state, 0 when empty */
+    private long version;
+
+    /** Flights by aircraft id */
+    private Map flights = new LinkedHashMap();
+
+    /** Ids of the blundering flights */
+    private Set blunderIds = new LinkedHashSet();
+
+    /** Trajectories by aircraft id */
+    private Map trajectories = new HashMap();
+
+    /** Views of the state */
+    private ComputationResults results = new ComputationResults(
+        Collections.unmodifiableCollection(flights.values()),
+        new BlunderView(), new TrajectoryView());
+
+    public long getVersion() {
+        return version;
+    }
+
+    /** Returns the results of the current version, as views of the state */
+    public ComputationResults getResults() {
+        return results;
+    }
+
+    //-------------------------------------------
+    /**
+     * Brings the state to the version of the delta
+     *
+     * @throws IllegalStateException  if the delta does not apply to the
+     *                                current version
+     */
+    public void apply(ResultsDelta delta) {
+        if (delta.getBaseVersion() != version) {
+            throw new IllegalStateException("Delta from version " + delta.getBaseVersion() +
+                                            " applied to version " + version);
+        }
+
+        Iterator idIter = delta.getRemovedFlightIds().iterator();
+        while (idIter.hasNext()) {
+            Object id = idIter.next();
+            flights.remove(id);
+            blunderIds.remove(id);
+            trajectories.remove(id);
+        }
+
+        Iterator flightIter = delta.getUpdatedFlights().iterator();
+        while (flightIter.hasNext()) {
+            Flight flight = (Flight)flightIter.next();
+            flights.put(flight.getAircraftId(), flight);
+        }
+
+        blunderIds.addAll(delta.getNewBlunderIds());
+        blunderIds.removeAll(delta.getClearedBlunderIds());
+
+        Iterator trajIter = delta.getChangedTrajectories().entrySet().iterator();
+        while (trajIter.hasNext()) {
+            Map.Entry entry = (Map.Entry)trajIter.next();
+            if (entry.getValue() == null) {
+                trajectories.remove(entry.getKey());
+            } else {
+                trajectories.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        version = delta.getVersion();
+    }
+
+    //-------------------------------------------
+    /**
+     * Brings the state to the results of a cycle
+     *
+     * @return The delta from the previous version of the state. Flights and
+     *         trajectories are compared by identity, since each change
+     *         yields new objects.
+     */
+    public ResultsDelta update(ComputationResults newResults) {
+        ResultsDelta delta = new ResultsDelta(version, version + 1);
+
+        Collection newFlights = newResults.getFlights();
+        Set newIds = new HashSet(newFlights.size() * 4 / 3 + 1);
+        Iterator flightIter = newFlights.iterator();
+        while (flightIter.hasNext()) {
+            Flight flight = (Flight)flightIter.next();
+            newIds.add(flight.getAircraftId());
+            if (flights.get(flight.getAircraftId()) != flight) {
+                delta.getUpdatedFlights().add(flight);
+            }
+        }
+        Iterator idIter = flights.keySet().iterator();
+        while (idIter.hasNext()) {
+            Object id = idIter.next();
+            if (!newIds.contains(id)) {
+                delta.getRemovedFlightIds().add(id);
+            }
+        }
+
+        Set newBlunderIds = new HashSet();
+        Iterator blunderIter = newResults.getBlunders().iterator();
+        while (blunderIter.hasNext()) {
+            String id = ((Flight)blunderIter.next()).getAircraftId();
+            newBlunderIds.add(id);
+            if (!blunderIds.contains(id)) {
+                delta.getNewBlunderIds().add(id);
+            }
+        }
+        idIter = blunderIds.iterator();
+        while (idIter.hasNext()) {
+            Object id = idIter.next();
+            if (!newBlunderIds.contains(id) && newIds.contains(id)) {
+                delta.getClearedBlunderIds().add(id);
+            }
+        }
+
+        Map newTrajectories = newResults.getFlight2TrajectoryMap();
+        Set trajectoryIds = new HashSet(newTrajectories.size() * 4 / 3 + 1);
+        Iterator trajIter = newTrajectories.entrySet().iterator();
+        while (trajIter.hasNext()) {
+            Map.Entry entry = (Map.Entry)trajIter.next();
+            String id = ((Flight)entry.getKey()).getAircraftId();
+            trajectoryIds.add(id);
+            if (entry.getValue() != trajectories.get(id)) {
+                delta.getChangedTrajectories().put(id, entry.getValue());
+            }
+        }
+        idIter = trajectories.keySet().iterator();
+        while (idIter.hasNext()) {
+            Object id = idIter.next();
+            if (!trajectoryIds.contains(id) && newIds.contains(id)) {
+                delta.getChangedTrajectories().put(id, null);
+            }
+        }
+
+        apply(delta);
+        return delta;
+    }
+
+    //-------------------------------------------
+    /** The blundering flights */
+    private class BlunderView extends AbstractCollection {
+
+        public int size() {
+            return blunderIds.size();
+        }
+
+        public boolean contains(Object o) {
+            return o instanceof Flight &&
+                   blunderIds.contains(((Flight)o).getAircraftId());
+        }
+
+        public Iterator iterator() {
+            final Iterator idIter = blunderIds.iterator();
+            return new Iterator() {
+                public boolean hasNext() {
+                    return idIter.hasNext();
+                }
+
+                public Object next() {
+                    return flights.get(idIter.next());
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /** The trajectories by flight */
+    private class TrajectoryView extends AbstractMap {
+
+        public int size() {
+            return trajectories.size();
+        }
+
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        public Object get(Object key) {
+            if (!(key instanceof Flight)) return null;
+            return trajectories.get(((Flight)key).getAircraftId());
+        }
+
+        public Set entrySet() {
+            return new AbstractSet() {
+                public int size() {
+                    return trajectories.size();
+                }
+
+                public Iterator iterator() {
+                    final Iterator entryIter = trajectories.entrySet().iterator();
+                    return new Iterator() {
+                        public boolean hasNext() {
+                            return entryIter.hasNext();
+                        }
+
+                        public Object next() {
+                            Map.Entry entry = (Map.Entry)entryIter.next();
+                            return new SimpleImmutableEntry(flights.get(entry.getKey()),
+                                                            (Trajectory)entry.getValue());
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
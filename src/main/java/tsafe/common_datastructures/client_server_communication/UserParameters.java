@@ -26,6 +26,22 @@ public class UserParameters {
 
     public UserParameters() {}
 
+    /**
+     * Construct a copy of another set of parameters
+     */
+    public UserParameters(UserParameters p) {
+        this.cmLateralWeightOn   = p.cmLateralWeightOn;
+        this.cmVerticalWeightOn  = p.cmVerticalWeightOn;
+        this.cmAngularWeightOn   = p.cmAngularWeightOn;
+        this.cmSpeedWeightOn     = p.cmSpeedWeightOn;
+        this.cmLateralThreshold  = p.cmLateralThreshold;
+        this.cmVerticalThreshold = p.cmVerticalThreshold;
+        this.cmAngularThreshold  = p.cmAngularThreshold;
+        this.cmSpeedThreshold    = p.cmSpeedThreshold;
+        this.cmResidualThreshold = p.cmResidualThreshold;
+        this.tsTimeHorizon       = p.tsTimeHorizon;
+    }
+
     // CONFORMANCE MONITOR (CM) PARAMETERS
     private static final boolean DEFAULT_CM_LATERAL_WEIGHT_ON  = true;
     private static final boolean DEFAULT_CM_VERTICAL_WEIGHT_ON = true;
@@ -51,4 +67,37 @@ public class UserParameters {
     // TRAJECTORY SYNTHESIZER (TS) PARAMETERS
     private static final long DEFAULT_TS_TIME_HORIZON = 3 * 60 * 1000;
     public long tsTimeHorizon = DEFAULT_TS_TIME_HORIZON;
+
+    /**
+     * Returns true if o is a UserParameters with the same values as this
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof UserParameters)) return false;
+        UserParameters p = (UserParameters)o;
+        return p.cmLateralWeightOn   == this.cmLateralWeightOn   &&
+               p.cmVerticalWeightOn  == this.cmVerticalWeightOn  &&
+               p.cmAngularWeightOn   == this.cmAngularWeightOn   &&
+               p.cmSpeedWeightOn     == this.cmSpeedWeightOn     &&
+               p.cmLateralThreshold  == this.cmLateralThreshold  &&
+               p.cmVerticalThreshold == this.cmVerticalThreshold &&
+               p.cmAngularThreshold  == this.cmAngularThreshold  &&
+               p.cmSpeedThreshold    == this.cmSpeedThreshold    &&
+               p.cmResidualThreshold == this.cmResidualThreshold &&
+               p.tsTimeHorizon       == this.tsTimeHorizon;
+    }
+
+    /**
+     * Returns a hash code for the parameters
+     */
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(cmLateralThreshold);
+        bits = 31 * bits + Double.doubleToLongBits(cmVerticalThreshold);
+        bits = 31 * bits + Double.doubleToLongBits(cmAngularThreshold);
+        bits = 31 * bits + Double.doubleToLongBits(cmSpeedThreshold);
+        bits = 31 * bits + Double.doubleToLongBits(cmResidualThreshold);
+        bits = 31 * bits + tsTimeHorizon;
+        int flags = (cmLateralWeightOn  ? 1 : 0) | (cmVerticalWeightOn ? 2 : 0) |
+                    (cmAngularWeightOn  ? 4 : 0) | (cmSpeedWeightOn    ? 8 : 0);
+        return (int)(bits ^ (bits >>> 32)) * 31 + flags;
+    }
 }
@@ -0,0 +1,381 @@
+package tsafe.common_datastructures.client_server_communication;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Point4D;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.Trajectory;
+
+/**
+ * The binary encoding of the frames exchanged by the server and its remote
+ * clients. A frame is a type byte followed by its payload:
+ *
+ * <pre>
+ * SUBSCRIBE  client to server: bounds, parameters
+ * FIXES      server to client: fix table
+ * RESULTS    server to client: fix table, flights, blunders, trajectories
+ * DELTA      server to client: versions, fix table, updated flights,
+ *            removed flights, blunder transitions, changed trajectories
+ * </pre>
+ *
+ * Each fix and flight of the results is written once, and routes, blunders
+ * and trajectories refer to it by its index in the frame. Deltas refer to
+ * the flights by their aircraft ids.
+ */
+public final class WireProtocol {
+
+    /** Frame types */
+    public static final byte SUBSCRIBE = 1;
+    public static final byte FIXES     = 2;
+    public static final byte RESULTS   = 3;
+    public static final byte DELTA     = 4;
+
+    /** Flight flags */
+    private static final int HAS_TRACK = 1;
+    private static final int HAS_PLAN  = 2;
+
+    private WireProtocol() {}
+
+    //-------------------------------------------
+    /**
+     * Writes a frame asking for the results within the bounds, computed with
+     * the parameters.
+     */
+    public static void writeSubscription(DataOutput out, LatLonBounds bounds,
+                                         UserParameters parameters) throws IOException {
+        out.writeByte(SUBSCRIBE);
+        out.writeDouble(bounds.minLat);
+        out.writeDouble(bounds.minLon);
+        out.writeDouble(bounds.maxLat);
+        out.writeDouble(bounds.maxLon);
+        out.writeBoolean(parameters.cmLateralWeightOn);
+        out.writeBoolean(parameters.cmVerticalWeightOn);
+        out.writeBoolean(parameters.cmAngularWeightOn);
+        out.writeBoolean(parameters.cmSpeedWeightOn);
+        out.writeDouble(parameters.cmLateralThreshold);
+        out.writeDouble(parameters.cmVerticalThreshold);
+        out.writeDouble(parameters.cmAngularThreshold);
+        out.writeDouble(parameters.cmSpeedThreshold);
+        out.writeDouble(parameters.cmResidualThreshold);
+        out.writeLong(parameters.tsTimeHorizon);
+    }
+
+    /** Reads the bounds of a subscription frame, after its type */
+    public static LatLonBounds readBounds(DataInput in) throws IOException {
+        return new LatLonBounds(in.readDouble(), in.readDouble(),
+                                in.readDouble(), in.readDouble());
+    }
+
+    /** Reads the parameters of a subscription frame, after its bounds */
+    public static UserParameters readParameters(DataInput in) throws IOException {
+        UserParameters parameters = new UserParameters();
+        parameters.cmLateralWeightOn   = in.readBoolean();
+        parameters.cmVerticalWeightOn  = in.readBoolean();
+        parameters.cmAngularWeightOn   = in.readBoolean();
+        parameters.cmSpeedWeightOn     = in.readBoolean();
+        parameters.cmLateralThreshold  = in.readDouble();
+        parameters.cmVerticalThreshold = in.readDouble();
+        parameters.cmAngularThreshold  = in.readDouble();
+        parameters.cmSpeedThreshold    = in.readDouble();
+        parameters.cmResidualThreshold = in.readDouble();
+        parameters.tsTimeHorizon       = in.readLong();
+        return parameters;
+    }
+
+    //-------------------------------------------
+    /**
+     * Writes a frame with the fixes
+     */
+    public static void writeFixes(DataOutput out, Collection fixes) throws IOException {
+        out.writeByte(FIXES);
+        out.writeInt(fixes.size());
+        Iterator fixIter = fixes.iterator();
+        while (fixIter.hasNext()) {
+            writeFix(out, (Fix)fixIter.next());
+        }
+    }
+
+    /** Reads the fixes of a fixes frame, after its type */
+    public static List readFixes(DataInput in) throws IOException {
+        int count = in.readInt();
+        List fixes = new ArrayList(count);
+        for (int i = 0; i < count; i++) {
+            fixes.add(readFix(in));
+        }
+        return fixes;
+    }
+
+    private static void writeFix(DataOutput out, Fix fix) throws IOException {
+        out.writeUTF(fix.getId());
+        out.writeDouble(fix.getLatitude());
+        out.writeDouble(fix.getLongitude());
+    }
+
+    private static Fix readFix(DataInput in) throws IOException {
+        return new Fix(in.readUTF(), in.readDouble(), in.readDouble());
+    }
+
+    //-------------------------------------------
+    /**
+     * Writes a frame with the results
+     */
+    public static void writeResults(DataOutput out, ComputationResults results) throws IOException {
+        Collection flights = results.getFlights();
+
+        out.writeByte(RESULTS);
+        Map fixIndexes = writeFixTable(out, flights);
+
+        Map flightIndexes = new HashMap(flights.size() * 4 / 3 + 1);
+        out.writeInt(flights.size());
+        Iterator flightIter = flights.iterator();
+        while (flightIter.hasNext()) {
+            Flight flight = (Flight)flightIter.next();
+            flightIndexes.put(flight, Integer.valueOf(flightIndexes.size()));
+            writeFlight(out, flight, fixIndexes);
+        }
+
+        Collection blunders = results.getBlunders();
+        out.writeInt(blunders.size());
+        Iterator blunderIter = blunders.iterator();
+        while (blunderIter.hasNext()) {
+            out.writeInt(indexOf(flightIndexes, blunderIter.next()));
+        }
+
+        Map flight2TrajMap = results.getFlight2TrajectoryMap();
+        out.writeInt(flight2TrajMap.size());
+        Iterator entryIter = flight2TrajMap.entrySet().iterator();
+        while (entryIter.hasNext()) {
+            Map.Entry entry = (Map.Entry)entryIter.next();
+            out.writeInt(indexOf(flightIndexes, entry.getKey()));
+            writeTrajectory(out, (Trajectory)entry.getValue());
+        }
+    }
+
+    /** Reads the results of a results frame, after its type */
+    public static ComputationResults readResults(DataInput in) throws IOException {
+        List fixes = readFixes(in);
+
+        int flightCount = in.readInt();
+        Flight[] flights = new Flight[flightCount];
+        for (int i = 0; i < flightCount; i++) {
+            flights[i] = readFlight(in, fixes);
+        }
+
+        int blunderCount = in.readInt();
+        Collection blunders = new ArrayList(blunderCount);
+        for (int i = 0; i < blunderCount; i++) {
+            blunders.add(flights[in.readInt()]);
+        }
+
+        int trajectoryCount = in.readInt();
+        Map flight2TrajMap = new HashMap(trajectoryCount * 4 / 3 + 1);
+        for (int i = 0; i < trajectoryCount; i++) {
+            Flight flight = flights[in.readInt()];
+            flight2TrajMap.put(flight, readTrajectory(in));
+        }
+
+        List flightList = new ArrayList(flightCount);
+        for (int i = 0; i < flightCount; i++) {
+            flightList.add(flights[i]);
+        }
+        return new ComputationResults(flightList, blunders, flight2TrajMap);
+    }
+
+    //-------------------------------------------
+    /**
+     * Writes a frame with the delta
+     */
+    public static void writeDelta(DataOutput out, ResultsDelta delta) throws IOException {
+        Collection flights = delta.getUpdatedFlights();
+
+        out.writeByte(DELTA);
+        out.writeLong(delta.getBaseVersion());
+        out.writeLong(delta.getVersion());
+        Map fixIndexes = writeFixTable(out, flights);
+
+        out.writeInt(flights.size());
+        Iterator flightIter = flights.iterator();
+        while (flightIter.hasNext()) {
+            writeFlight(out, (Flight)flightIter.next(), fixIndexes);
+        }
+        writeIds(out, delta.getRemovedFlightIds());
+        writeIds(out, delta.getNewBlunderIds());
+        writeIds(out, delta.getClearedBlunderIds());
+
+        Map changedTrajectories = delta.getChangedTrajectories();
+        out.writeInt(changedTrajectories.size());
+        Iterator entryIter = changedTrajectories.entrySet().iterator();
+        while (entryIter.hasNext()) {
+            Map.Entry entry = (Map.Entry)entryIter.next();
+            out.writeUTF((String)entry.getKey());
+            writeTrajectory(out, (Trajectory)entry.getValue());
+        }
+    }
+
+    /** Reads the delta of a delta frame, after its type */
+    public static ResultsDelta readDelta(DataInput in) throws IOException {
+        long baseVersion = in.readLong();
+        ResultsDelta delta = new ResultsDelta(baseVersion, in.readLong());
+        List fixes = readFixes(in);
+
+        int flightCount = in.readInt();
+        for (int i = 0; i < flightCount; i++) {
+            delta.getUpdatedFlights().add(readFlight(in, fixes));
+        }
+        readIds(in, delta.getRemovedFlightIds());
+        readIds(in, delta.getNewBlunderIds());
+        readIds(in, delta.getClearedBlunderIds());
+
+        int trajectoryCount = in.readInt();
+        for (int i = 0; i < trajectoryCount; i++) {
+            String id = in.readUTF();
+            delta.getChangedTrajectories().put(id, readTrajectory(in));
+        }
+        return delta;
+    }
+
+    private static void writeIds(DataOutput out, Collection ids) throws IOException {
+        out.writeInt(ids.size());
+        Iterator idIter = ids.iterator();
+        while (idIter.hasNext()) {
+            out.writeUTF((String)idIter.next());
+        }
+    }
+
+    private static void readIds(DataInput in, Collection ids) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ids.add(in.readUTF());
+        }
+    }
+
+    /**
+     * Numbers the fixes of the flights' routes, and writes each of them once
+     *
+     * @return The indexes of the fixes
+     */
+    private static Map writeFixTable(DataOutput out, Collection flights) throws IOException {
+        Map fixIndexes = new HashMap();
+        List fixes = new ArrayList();
+        Iterator flightIter = flights.iterator();
+        while (flightIter.hasNext()) {
+            FlightPlan plan = ((Flight)flightIter.next()).getFlightPlan();
+            if (plan == null) continue;
+            Iterator fixIter = plan.getRoute().fixIterator();
+            while (fixIter.hasNext()) {
+                Object fix = fixIter.next();
+                if (!fixIndexes.containsKey(fix)) {
+                    fixIndexes.put(fix, Integer.valueOf(fixes.size()));
+                    fixes.add(fix);
+                }
+            }
+        }
+        out.writeInt(fixes.size());
+        for (int i = 0; i < fixes.size(); i++) {
+            writeFix(out, (Fix)fixes.get(i));
+        }
+        return fixIndexes;
+    }
+
+    private static int indexOf(Map flightIndexes, Object flight) throws IOException {
+        Integer index = (Integer)flightIndexes.get(flight);
+        if (index == null) {
+            throw new IOException("Flight " + flight + " is not among the results");
+        }
+        return index.intValue();
+    }
+
+    private static void writeFlight(DataOutput out, Flight flight, Map fixIndexes) throws IOException {
+        FlightTrack track = flight.getFlightTrack();
+        FlightPlan plan = flight.getFlightPlan();
+        out.writeUTF(flight.getAircraftId());
+        out.writeByte((track != null ? HAS_TRACK : 0) | (plan != null ? HAS_PLAN : 0));
+        if (track != null) {
+            out.writeDouble(track.getLatitude());
+            out.writeDouble(track.getLongitude());
+            out.writeDouble(track.getAltitude());
+            out.writeLong(track.getTime());
+            out.writeDouble(track.getSpeed());
+            out.writeDouble(track.getHeading());
+        }
+        if (plan != null) {
+            out.writeDouble(plan.getAssignedSpeed());
+            out.writeDouble(plan.getAssignedAltitude());
+            List route = plan.getRoute().fixList();
+            out.writeInt(route.size());
+            for (int i = 0; i < route.size(); i++) {
+                out.writeInt(((Integer)fixIndexes.get(route.get(i))).intValue());
+            }
+        }
+    }
+
+    private static Flight readFlight(DataInput in, List fixes) throws IOException {
+        String aircraftId = in.readUTF();
+        int flags = in.readByte();
+        FlightTrack track = null;
+        FlightPlan plan = null;
+        if ((flags & HAS_TRACK) != 0) {
+            double lat = in.readDouble();
+            double lon = in.readDouble();
+            double alt = in.readDouble();
+            long time = in.readLong();
+            double speed = in.readDouble();
+            double heading = in.readDouble();
+            track = new FlightTrack(lat, lon, alt, time, speed, heading);
+        }
+        if ((flags & HAS_PLAN) != 0) {
+            double speed = in.readDouble();
+            double altitude = in.readDouble();
+            Route route = new Route();
+            int length = in.readInt();
+            for (int i = 0; i < length; i++) {
+                route.addFix((Fix)fixes.get(in.readInt()));
+            }
+            plan = new FlightPlan(speed, altitude, route);
+        }
+        return new Flight(aircraftId, track, plan);
+    }
+
+    private static void writeTrajectory(DataOutput out, Trajectory trajectory) throws IOException {
+        if (trajectory == null) {
+            out.writeInt(-1);
+            return;
+        }
+        List points = trajectory.pointList();
+        out.writeInt(points.size());
+        Iterator pointIter = points.iterator();
+        while (pointIter.hasNext()) {
+            Point4D point = (Point4D)pointIter.next();
+            out.writeDouble(point.getLatitude());
+            out.writeDouble(point.getLongitude());
+            out.writeDouble(point.getAltitude());
+            out.writeLong(point.getTime());
+        }
+    }
+
+    private static Trajectory readTrajectory(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        Trajectory trajectory = new Trajectory();
+        for (int i = 0; i < count; i++) {
+            trajectory.addPoint(new Point4D(in.readDouble(), in.readDouble(),
+                                            in.readDouble(), in.readLong()));
+        }
+        return trajectory;
+    }
+}
@@ -0,0 +1,59 @@
+package tsafe.main;
+
+import java.io.File;
+import java.io.IOException;
+
+import tsafe.common_datastructures.TSAFEProperties;
+import tsafe.server.ServerInterface;
+import tsafe.server.parser.asdi.MappedFeedReader;
+import tsafe.server.remote.ResultsServer;
+
+/**
+ * Runs the TSAFE engine without the configuration console or any window,
+ * and streams the results to the remote clients that connect to it.
+ *
+ * Usage: HeadlessMain [port [feed file]]
+ *
+ * Without a feed file, the feed source of the properties is parsed. To
+ * replay a recorded feed by the times of its messages, set
+ * -Dtsafe.replaySpeed to a multiple of real time or to max, and optionally
+ * -Dtsafe.replayInterval to the simulated milliseconds between cycles.
+ */
+public class HeadlessMain {
+
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+
+		int port = ResultsServer.DEFAULT_PORT;
+		if (args.length >= 1) {
+			try {
+				port = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				System.err.println("Invalid port " + args[0] + ", using "
+						+ port);
+			}
+		}
+		if (args.length >= 2) {
+			TSAFEProperties.setFeedSource(new MappedFeedReader(new File(
+					args[1])));
+		}
+
+		ServerInterface server = new ServerInterface(true);
+		server.setAsynchronous(true);
+		server.launchTsafe();
+
+		ResultsServer resultsServer = new ResultsServer(server, port);
+		resultsServer.start();
+		System.out.println("TSAFE results server listening on port "
+				+ resultsServer.getPort());
+
+		// The server threads are daemons, so keep the process alive
+		while (true) {
+			try {
+				Thread.sleep(Long.MAX_VALUE);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+}
@@ -98,6 +98,9 @@ public class Main {
 		// Start the server.
 		server = new ServerInterface();
 
+		// Compute off the event dispatch thread and push the results
+		server.setAsynchronous(true);
+
 		
 		// Create the clients
 		ClientInterface client = new GraphicalClient(server,userParams,showOptions,selFlights);
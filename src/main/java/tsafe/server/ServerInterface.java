@@ -8,6 +8,7 @@ import tsafe.client.ClientInterface;
 import tsafe.common_datastructures.LatLonBounds;
 import tsafe.common_datastructures.client_server_communication.ComputationResults;
 import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.parser.ReplayClock;
 
 /**
  *
@@ -32,8 +33,17 @@ public class ServerInterface {
 	 *  
 	 */
 	public ServerInterface() {
+		this(false);
+	}
+
+	/**
+	 * Constructor: Creates a new Vector object for the clients. A headless
+	 * server shows no configuration console and is launched with
+	 * launchTsafe().
+	 */
+	public ServerInterface(boolean headless) {
 		clients = new Vector();
-		this.mediator = new ServerMediator(this);
+		this.mediator = new ServerMediator(this, headless);
 	}
 
 	/**
@@ -61,11 +71,11 @@ public class ServerInterface {
 	 */
 	public void notifyObservers() {
 
-		Iterator clientIterator = this.clients.iterator();
+		// Remote clients come and go while the others are notified
+		Object[] clients = this.clients.toArray();
 
-		while (clientIterator.hasNext()) {
-			ClientInterface client = (ClientInterface) clientIterator.next();
-			client.notifyClient();
+		for (int i = 0; i < clients.length; i++) {
+			((ClientInterface) clients[i]).notifyClient();
 		}
 	}
 
@@ -91,10 +101,36 @@ public class ServerInterface {
 	}
 
 	/**
-	 * Starts the ServerMediator for launching Tsafe.
+	 * Replays the feed at the pace of the clock, which notifies the observers
+	 * at each of its cycles. Must be called before Tsafe is launched.
 	 */
-	public void launchTsafe() {
+	public void setReplayClock(ReplayClock replayClock) {
+		this.mediator.setReplayClock(replayClock);
+	}
 
+	/**
+	 * In asynchronous mode, the computation runs on the scheduler thread,
+	 * which pushes the results to the clients.
+	 * 
+	 * @see ClientInterface#pushResults(ComputationResults)
+	 */
+	public void setAsynchronous(boolean asynchronous) {
+		this.mediator.setAsynchronous(asynchronous);
+	}
+
+	/**
+	 * @return Whether the results are pushed to the clients
+	 */
+	public boolean isAsynchronous() {
+		return this.mediator.isAsynchronous();
+	}
+
+	/**
+	 * Starts the ServerMediator for launching Tsafe without the configuration
+	 * console, with the data files and feed source of the properties.
+	 */
+	public void launchTsafe() {
+		this.mediator.startTsafe();
 	};
 
 	/*
@@ -1,24 +1,39 @@
 package tsafe.server;
 
+import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
-import javax.swing.Timer;
+import javax.management.JMException;
 
+import tsafe.common_datastructures.Flight;
 import tsafe.common_datastructures.LatLonBounds;
 import tsafe.common_datastructures.TSAFEProperties;
 import tsafe.common_datastructures.client_server_communication.ComputationResults;
 import tsafe.common_datastructures.client_server_communication.UserParameters;
 import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.BlunderListener;
 import tsafe.server.computation.ComputationMediator;
+import tsafe.server.computation.ComputationScheduler;
+import tsafe.server.computation.ConformanceWatcher;
+import tsafe.server.computation.data.RouteTrack;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
 import tsafe.server.database.DatabaseInterface;
-import tsafe.server.database.RuntimeDatabase;
-import tsafe.server.parser.ParserInterface;
+import tsafe.server.metrics.Tracer;
+import tsafe.server.parser.ReplayClock;
 import tsafe.server.parser.asdi.ASDIParser;
+import tsafe.server.parser.asdi.IngestMetrics;
 import tsafe.server.server_gui.ConfigConsole;
 
 /**
@@ -37,15 +52,86 @@ public class ServerMediator implements ActionListener {
 	ServerInterface serverInterface;
 
 	/**
-	 * Timer that triggers a repaint call
+	 * Scheduler that runs the computation cycles and notifies the clients
 	 */
-	private Timer timer;
+	private ComputationScheduler scheduler;
 
 	/**
 	 * Initial time between successive repaints
 	 */
 	private static final int REPAINT_STEP = 3000;
 
+	/**
+	 * System properties configuring the scheduler: the time between the
+	 * cycles in milliseconds, the number of track messages that trigger a
+	 * cycle, and what to do with overrun cycles, skip or coalesce
+	 */
+	public static final String COMPUTATION_PERIOD_PROPERTY = "tsafe.computationPeriod";
+
+	public static final String TRACK_TRIGGER_PROPERTY = "tsafe.trackTrigger";
+
+	public static final String OVERRUN_POLICY_PROPERTY = "tsafe.overrunPolicy";
+
+	/**
+	 * System property setting the number of threads that compute the flights
+	 * of a cycle. By default, or if it is 1, they are computed one after the
+	 * other on the cycle's thread
+	 */
+	public static final String PARALLELISM_PROPERTY = "tsafe.parallelism";
+
+	/**
+	 * System properties pipelining the feed parser: the number of messages
+	 * applied per database transaction, and the number of threads that parse
+	 * the feed ahead of the updates. Both default to 1, which reads, parses
+	 * and applies each message in turn on the parser thread. A batch size of
+	 * ASDIParser.DEFAULT_BATCH_SIZE and a thread per processor suit a busy
+	 * feed
+	 */
+	public static final String INGEST_BATCH_SIZE_PROPERTY = "tsafe.ingestBatchSize";
+
+	public static final String PARSE_THREADS_PROPERTY = "tsafe.parseThreads";
+
+	/**
+	 * System property that, set to true, makes the server evaluate the
+	 * conformance of each flight as its track messages arrive, and run a
+	 * cycle as soon as a flight starts or stops blundering
+	 */
+	public static final String EVENT_CONFORMANCE_PROPERTY = "tsafe.eventConformance";
+
+	/**
+	 * System property naming the file the static data is compiled to, by
+	 * default .tsafe/static-data.snapshot in the home directory of the user
+	 */
+	public static final String STATIC_DATA_SNAPSHOT_PROPERTY = "tsafe.staticDataSnapshot";
+
+	/**
+	 * System property setting the time, in milliseconds, between successive
+	 * prints of the ingest metrics to standard output. They are not printed
+	 * unless it is set
+	 */
+	public static final String METRICS_REPORT_PERIOD_PROPERTY = "tsafe.metricsReportPeriod";
+
+	/**
+	 * System property naming the file the trace is written to on exit
+	 */
+	public static final String TRACE_FILE_PROPERTY = "tsafe.traceFile";
+
+	/**
+	 * System properties that replay the feed as a recording: the speed, as a
+	 * multiple of real time or max to replay as fast as it is parsed, and
+	 * the simulated time between the cycles in milliseconds, by default the
+	 * repaint step. The feed is only replayed if the speed is set
+	 */
+	public static final String REPLAY_SPEED_PROPERTY = "tsafe.replaySpeed";
+
+	public static final String REPLAY_INTERVAL_PROPERTY = "tsafe.replayInterval";
+
+	/**
+	 * Clock that paces a recorded feed and triggers the repaints instead of
+	 * the timer, if replaying
+	 */
+	private ReplayClock replayClock;
+
 	/**
 	 * Handle to the computation component
 	 */
@@ -56,16 +142,46 @@ public class ServerMediator implements ActionListener {
 	 */
 	private DatabaseInterface database;
 
+	/**
+	 * Evaluates the conformance of the flights as their tracks arrive, or
+	 * null if conformance is only evaluated at the cycles
+	 */
+	private ConformanceWatcher conformanceWatcher;
+
+	/**
+	 * The results computed while the clients are being notified, keyed by the
+	 * bounds and parameters they were computed for, or null between
+	 * notifications
+	 */
+	private volatile Map cycleResults;
+
+	/**
+	 * Whether the cycles are computed on the scheduler thread, and the
+	 * results pushed to the clients
+	 */
+	private volatile boolean asynchronous;
+
 	public ServerMediator(ServerInterface serverInterface) {
+		this(serverInterface, false);
+	}
+
+	public ServerMediator(ServerInterface serverInterface, boolean headless) {
 
 		this.serverInterface = serverInterface;
 
-		// Create a timer to periodically repaint the flight map
-		this.timer = new Timer(REPAINT_STEP, this);
+		// Create a scheduler to periodically repaint the flight map
+		this.scheduler = new ComputationScheduler(new Runnable() {
+			public void run() {
+				runScheduledCycle();
+			}
+		}, REPAINT_STEP);
+		configureScheduler();
 
 		//this.launchTsafe();
 		// Shows the configuration console.
-		ConfigConsole console = new ConfigConsole(this);
+		if (!headless) {
+			ConfigConsole console = new ConfigConsole(this);
+		}
 	}
 
 	/**
@@ -79,7 +195,7 @@ public class ServerMediator implements ActionListener {
 		List errorMessages = new Vector();
 		
 		//Make the database.
-		this.database = new RuntimeDatabase();
+		this.database = new ConcurrentRuntimeDatabase();
 
 
 		// Make the Engine Calculator.
@@ -92,43 +208,303 @@ public class ServerMediator implements ActionListener {
 		Reader feedReader = TSAFEProperties.getFeedSource();
 
 		// Make the feed parser.
-		ParserInterface feedParser = new ASDIParser(feedReader, this.database,
+		ASDIParser feedParser = new ASDIParser(feedReader, this.database,
 				calculator);
+		int batchSize = Integer.getInteger(INGEST_BATCH_SIZE_PROPERTY, 1)
+				.intValue();
+		int parseThreads = Integer.getInteger(PARSE_THREADS_PROPERTY, 1)
+				.intValue();
+		try {
+			feedParser.setPipelined(batchSize, parseThreads);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid ingest batch size " + batchSize
+					+ " or parse threads " + parseThreads
+					+ ", parsing the feed one message at a time");
+		}
+		IngestMetrics metrics = new IngestMetrics();
+		feedParser.setMetrics(metrics);
+		try {
+			metrics.registerMBeans();
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		Long metricsReportPeriod = Long.getLong(METRICS_REPORT_PERIOD_PROPERTY);
+		if (metricsReportPeriod != null && metricsReportPeriod.longValue() > 0) {
+			metrics.startReporting(metricsReportPeriod.longValue(), System.out);
+		}
+		try {
+			Tracer.getDefault().registerMBean();
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		exportTraceOnExit();
+		if (this.replayClock == null) {
+			this.replayClock = replayClockFromProperties();
+		}
+		if (this.replayClock != null) {
+			feedParser.setReplayClock(this.replayClock);
+			this.replayClock.addActionListener(this);
+		} else {
+			feedParser.setComputationScheduler(this.scheduler);
+		}
+
+		if (Boolean.getBoolean(EVENT_CONFORMANCE_PROPERTY)) {
+			this.conformanceWatcher = new ConformanceWatcher(calculator,
+					TSAFEProperties.getLatLonBounds(), new UserParameters());
+			feedParser.setConformanceWatcher(this.conformanceWatcher);
+			if (this.replayClock == null) {
+				this.conformanceWatcher.addBlunderListener(new BlunderListener() {
+					public void blunderStarted(Flight flight,
+							RouteTrack routeTrack) {
+						scheduler.trigger();
+					}
+
+					public void blunderCleared(String aircraftId) {
+						scheduler.trigger();
+					}
+				});
+			}
+		}
 
-		feedParser.readStaticData(dataFiles);
+		// Report every error in the data files at once
+		List dataErrors = feedParser.readStaticData(dataFiles, new File(System
+				.getProperty(STATIC_DATA_SNAPSHOT_PROPERTY, System
+						.getProperty("user.home")
+						+ File.separator + ".tsafe" + File.separator
+						+ "static-data.snapshot")));
+		for (Iterator i = dataErrors.iterator(); i.hasNext();) {
+			System.err.println(i.next());
+		}
+		errorMessages.addAll(dataErrors);
 
 		// Make the Tsafe Engine.
 		this.computation = new ComputationMediator(calculator);
+		int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, 1)
+				.intValue();
+		try {
+			this.computation.setParallelism(parallelism);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid parallelism " + parallelism
+					+ ", computing the flights on one thread");
+		}
+
+		// Project every client's flights from the corner of the configured
+		// airspace, so that clients with overlapping bounds share the
+		// results of the flights they both see
+		this.computation.setProjectionBounds(TSAFEProperties.getLatLonBounds());
 
 		// Start parsing the dynamic feed source
 		feedParser.startParsing();
 
-		// Start the timer that runs the program
-		timer.start();
+		// Start the scheduler that runs the program
+		startScheduler();
 		return errorMessages;
 	}
 
 	/**
-	 * Timer event handler When timer goes off, notify the clients
+	 * If the tsafe.traceFile system property names a file, writes the recent
+	 * spans of the default tracer to it as a Chrome trace when the server
+	 * exits
+	 */
+	private void exportTraceOnExit() {
+		final String traceFile = System.getProperty(TRACE_FILE_PROPERTY);
+		if (traceFile == null) {
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread("Trace Export") {
+			public void run() {
+				try {
+					Tracer.getDefault().exportChromeTrace(traceFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Replays the feed at the pace of the clock, which notifies the clients
+	 * at each of its cycles instead of the timer. Must be called before Tsafe
+	 * is launched.
+	 */
+	public void setReplayClock(ReplayClock replayClock) {
+		this.replayClock = replayClock;
+	}
+
+	/**
+	 * Returns a replay clock configured from the system properties, or null
+	 * if the replay speed is not set or not valid
+	 */
+	private static ReplayClock replayClockFromProperties() {
+		String speed = System.getProperty(REPLAY_SPEED_PROPERTY);
+		if (speed == null) {
+			return null;
+		}
+		long interval = Long.getLong(REPLAY_INTERVAL_PROPERTY, REPAINT_STEP)
+				.longValue();
+		try {
+			return new ReplayClock("max".equalsIgnoreCase(speed)
+					? ReplayClock.MAX_SPEED
+					: Double.parseDouble(speed), interval);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid replay speed " + speed
+					+ " or interval " + interval + ", reading the feed live");
+			return null;
+		}
+	}
+
+	/**
+	 * Configures the scheduler from the system properties, if they are set
+	 */
+	private void configureScheduler() {
+		Long period = Long.getLong(COMPUTATION_PERIOD_PROPERTY);
+		if (period != null) {
+			this.scheduler.setPeriod(period.longValue());
+		}
+		Integer trackTrigger = Integer.getInteger(TRACK_TRIGGER_PROPERTY);
+		if (trackTrigger != null) {
+			this.scheduler.setTrackTrigger(trackTrigger.intValue());
+		}
+		String overrunPolicy = System.getProperty(OVERRUN_POLICY_PROPERTY);
+		if ("coalesce".equalsIgnoreCase(overrunPolicy)) {
+			this.scheduler.setOverrunPolicy(ComputationScheduler.COALESCE);
+		} else if ("skip".equalsIgnoreCase(overrunPolicy)) {
+			this.scheduler.setOverrunPolicy(ComputationScheduler.SKIP);
+		} else if (overrunPolicy != null) {
+			System.err.println("Unknown overrun policy " + overrunPolicy
+					+ ", skipping overrun cycles");
+		}
+	}
+
+	/**
+	 * @return The scheduler that runs the computation cycles
+	 */
+	public ComputationScheduler getScheduler() {
+		return this.scheduler;
+	}
+
+	/**
+	 * @return The watcher that evaluates the conformance of the flights as
+	 *         their tracks arrive, or null if it is not enabled
+	 */
+	public ConformanceWatcher getConformanceWatcher() {
+		return this.conformanceWatcher;
+	}
+
+	/**
+	 * In asynchronous mode, the cycles are computed on the scheduler thread,
+	 * and the results pushed to the clients. Otherwise, they are computed on
+	 * the event dispatch thread, like the clients' own requests. The cycles
+	 * of a replay clock are always computed on the parser thread, so that
+	 * they see exactly the messages before them.
+	 */
+	public void setAsynchronous(boolean asynchronous) {
+		this.asynchronous = asynchronous;
+	}
+
+	/**
+	 * @return Whether the results are pushed to the clients
+	 */
+	public boolean isAsynchronous() {
+		return this.asynchronous;
+	}
+
+	/**
+	 * Starts the scheduler, unless the replay clock triggers the repaints
+	 */
+	private void startScheduler() {
+		if (this.replayClock == null) {
+			this.scheduler.start();
+		}
+	}
+
+	/**
+	 * Runs a cycle of the scheduler
+	 */
+	private void runScheduledCycle() {
+		if (this.asynchronous) {
+			notifyCycle();
+			return;
+		}
+		try {
+			EventQueue.invokeAndWait(new Runnable() {
+				public void run() {
+					notifyCycle();
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (InvocationTargetException e) {
+			e.getCause().printStackTrace();
+		}
+	}
+
+	/**
+	 * Replay clock event handler When the clock fires a cycle, notify the
+	 * clients
 	 */
 	public void actionPerformed(ActionEvent e) {
-		// The timer has gone off
+		// The clock has fired a cycle
 		if (e.getActionCommand() == null) {
+			notifyCycle();
+		}
+	}
+
+	/**
+	 * Notifies the clients of a cycle
+	 */
+	private void notifyCycle() {
+		Tracer tracer = Tracer.getDefault();
+		long start = tracer.start();
+
+		// Clients that ask for the same bounds and parameters while they
+		// are notified share the results of one computation
+		this.cycleResults = new HashMap();
+		try {
 			this.serverInterface.notifyObservers();
+		} finally {
+			this.cycleResults = null;
 		}
+		tracer.end(Tracer.NOTIFY, start);
 	}
 
 	/**
-	 * Manages the flight data of a client.
+	 * Manages the flight data of a client. While the clients are being
+	 * notified, the results are computed once for each distinct bounds and
+	 * parameters, and shared by the clients that ask for them.
 	 */
 	public ComputationResults proceedFlights(LatLonBounds bounds,
 			UserParameters parameters) {
+		Map cycleResults = this.cycleResults;
+		List key = null;
+		if (cycleResults != null) {
+			// The clients change their parameters in place, so key on a copy
+			key = Arrays.asList(new Object[] { bounds,
+					new UserParameters(parameters) });
+			ComputationResults shared = (ComputationResults) cycleResults
+					.get(key);
+			if (shared != null) {
+				return shared;
+			}
+		}
 
 		// Query the database for flight in bounds, parse the flight list to the
 		// computation component and start it
-		this.computation
-				.setFlights(this.database.selectFlightsInBounds(bounds));
-		return this.computation.computeFlights(bounds, parameters);
+		Tracer tracer = Tracer.getDefault();
+		long start = tracer.start();
+		Collection flights = this.database.selectFlightsInBounds(bounds);
+		tracer.end(Tracer.QUERY, start);
+
+		this.computation.setFlights(flights);
+		start = tracer.start();
+		ComputationResults results = this.computation.computeFlights(bounds,
+				parameters);
+		tracer.end(Tracer.COMPUTE, start);
+
+		if (cycleResults != null) {
+			cycleResults.put(key, results);
+		}
+		return results;
 	}
 
 	public Collection getFixes() {
@@ -139,9 +515,13 @@ public class ServerMediator implements ActionListener {
 	 * Method necessary for the communication to the client while launchin
 	 * Tsafe.
 	 */
+	public void startTsafe() {
+		this.launchTsafe();
+	}
+
 	public void startTsafe(LatLonBounds bounds) {
 		this.launchTsafe();
 		this.serverInterface.displayClient(bounds);
-		timer.start();
+		startScheduler();
 	}
 }
\ No newline at end of file
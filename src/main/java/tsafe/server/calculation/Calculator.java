@@ -24,6 +24,11 @@ public class Calculator {
 
 	private static final double METERS_PER_LON_AT_EQUATOR = METERS_PER_LAT;
 
+	/**
+	 * Bounds with the origin at (0, 0), used when no bounds are given
+	 */
+	private static final LatLonBounds ORIGIN = new LatLonBounds(0, 0, 0, 0);
+
 	/**
 	 * Return the meters per degree longitude at the given degree latitude
 	 */
@@ -31,25 +36,54 @@ public class Calculator {
 		return METERS_PER_LON_AT_EQUATOR * Math.cos(lat * RADIANS_PER_DEGREE);
 	}
 
+	// PRIMITIVE CONVERSION METHODS
+	// These do not allocate, so the engine uses them in its inner loops
+
+	/**
+	 * Returns the x coordinate, in meters, of the point (lat, lon)
+	 */
+	public double toX(double lat, double lon, LatLonBounds bounds) {
+		return (lon - bounds.minLon) * metersPerLonAt(lat);
+	}
+
+	/**
+	 * Returns the y coordinate, in meters, of the latitude lat
+	 */
+	public double toY(double lat, LatLonBounds bounds) {
+		return (lat - bounds.minLat) * METERS_PER_LAT;
+	}
+
+	/**
+	 * Returns the latitude of the y coordinate y
+	 */
+	public double toLat(double y, LatLonBounds bounds) {
+		return (y / METERS_PER_LAT) + bounds.minLat;
+	}
+
+	/**
+	 * Returns the longitude of the x coordinate x, at the latitude lat
+	 */
+	public double toLon(double x, double lat, LatLonBounds bounds) {
+		return (x / metersPerLonAt(lat)) + bounds.minLon;
+	}
+
 	/**
 	 * Implementation of Calculator method
 	 */
 	public PointXY toXY(double lat, double lon, LatLonBounds bounds) {
-		return new PointXY((lon - bounds.minLon) * metersPerLonAt(lat),
-				(lat - bounds.minLat) * METERS_PER_LAT);
+		return new PointXY(toX(lat, lon, bounds), toY(lat, bounds));
 	}
 
 	/**
 	 * Implementation of Calculator method
 	 */
 	public Point2D toLL(double x, double y, LatLonBounds bounds) {
-		double lat = (y / METERS_PER_LAT) + bounds.minLat;
-		double lon = (x / metersPerLonAt(lat)) + bounds.minLon;
-		return new Point2D(lat, lon);
+		double lat = toLat(y, bounds);
+		return new Point2D(lat, toLon(x, lat, bounds));
 	}
 	
 	public Point2D toLL(double x, double y) {
-		return toLL(x, y, new LatLonBounds(0,0,0,0));
+		return toLL(x, y, ORIGIN);
 	}
 
 	//  NON-ABSTRACT CONVERSION METHODS
@@ -58,7 +92,7 @@ public class Calculator {
 	}
 	
 	public PointXY toXY(Point2D p) {
-		return toXY(p, new LatLonBounds(0,0,0,0));
+		return toXY(p, ORIGIN);
 	}
 
 	public Point2D toLL(PointXY p, LatLonBounds bounds) {
@@ -68,7 +102,8 @@ public class Calculator {
 	// DISTANCES BETWEEN LAT/LON COORDINATES
 	public double distanceLL(double lat1, double lon1, double lat2,
 			double lon2, LatLonBounds bounds) {
-		return distanceXY(toXY(lat1, lon1, bounds), toXY(lat2, lon2, bounds));
+		return distanceXY(toX(lat1, lon1, bounds), toY(lat1, bounds), toX(
+				lat2, lon2, bounds), toY(lat2, bounds));
 	}
 	
 
@@ -84,7 +119,7 @@ public class Calculator {
 	}
 	
 	public double distanceLL(Point2D p1, Point2D p2) {
-		return distanceLL(p1, p2, new LatLonBounds(0,0,0,0));
+		return distanceLL(p1, p2, ORIGIN);
 	}
 
 	// DISTANCES BETWEEN X,Y COORDINATES
@@ -103,11 +138,12 @@ public class Calculator {
 	// ANGLE BETWEEN LAT/LON COORDINATES
 	public double angleLL(double lat1, double lon1, double lat2, double lon2,
 			LatLonBounds bounds) {
-		return angleXY(toXY(lat1, lon1, bounds), toXY(lat2, lon2, bounds));
+		return angleXY(toX(lat1, lon1, bounds), toY(lat1, bounds), toX(lat2,
+				lon2, bounds), toY(lat2, bounds));
 	}
 	
 	public double angleLL(double lat1, double lon1, double lat2, double lon2) {
-		return angleLL(lat1, lon1, lat2, lon2, new LatLonBounds(0,0,0,0));
+		return angleLL(lat1, lon1, lat2, lon2, ORIGIN);
 	}
 
 	public double angleLL(double lat1, double lon1, Point2D p2,
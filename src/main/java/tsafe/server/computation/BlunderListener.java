@@ -0,0 +1,27 @@
+package tsafe.server.computation;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.server.computation.data.RouteTrack;
+
+/**
+ * Is told when a flight starts or stops blundering, as soon as the track
+ * message that changed it is applied.
+ *
+ * @see ConformanceWatcher
+ */
+public interface BlunderListener {
+
+	/**
+	 * The flight no longer conforms to its route
+	 *
+	 * @param routeTrack
+	 *            Where the flight is expected to be on its route
+	 */
+	public void blunderStarted(Flight flight, RouteTrack routeTrack);
+
+	/**
+	 * The flight conforms to its route again, or was removed while
+	 * blundering
+	 */
+	public void blunderCleared(String aircraftId);
+}
@@ -0,0 +1,219 @@
+package tsafe.server.computation;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.computation.data.FlightResult;
+import tsafe.server.computation.data.RouteTrack;
+
+/**
+ * Remembers the result of the engine for each flight, so that a flight whose
+ * track, flight plan, parameters and projection bounds have not changed
+ * since it was last computed is not computed again.
+ *
+ * Lookups and stores may be made concurrently by the threads computing a
+ * cycle; beginCycle and endCycle are called by a single thread.
+ */
+public class ComputationCache {
+
+	/**
+	 * Number of cycles an entry may go unused before it is evicted
+	 */
+	private static final int MAX_IDLE_CYCLES = 10;
+
+	/**
+	 * The cached results, keyed by aircraft id
+	 */
+	private Map entries = new ConcurrentHashMap();
+
+	/**
+	 * Copy of the parameters of the current cycle. The clients change their
+	 * parameters in place, so the cache keeps its own copy.
+	 */
+	private volatile UserParameters parameters;
+
+	/**
+	 * Projection bounds of the current cycle
+	 */
+	private volatile LatLonBounds bounds;
+
+	/**
+	 * Number of the current cycle
+	 */
+	private volatile long cycle = 0;
+
+	/**
+	 * Cache statistics
+	 */
+	private AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+	/**
+	 * Starts a new computation cycle with the given parameters and the
+	 * bounds whose corner the flights are projected from
+	 */
+	public void beginCycle(UserParameters parameters,
+			LatLonBounds bounds) {
+		this.cycle++;
+		if (this.parameters == null || !this.parameters.equals(parameters)) {
+			this.parameters = new UserParameters(parameters);
+		}
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Ends the current computation cycle and evicts the entries of flights
+	 * that have not been looked up for a while
+	 */
+	public void endCycle() {
+		Iterator entryIter = entries.values().iterator();
+
+		while (entryIter.hasNext()) {
+			Entry entry = (Entry) entryIter.next();
+			if (cycle - entry.lastUsed > MAX_IDLE_CYCLES) {
+				entryIter.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return Returns the parameters of the current cycle.
+	 */
+	public UserParameters getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Returns the cached result of the flight, or null if the flight has not
+	 * been computed with its current track, plan, parameters and bounds
+	 */
+	public FlightResult lookup(Flight flight) {
+		Entry entry = (Entry) entries.get(flight.getAircraftId());
+
+		if (entry != null && entry.matches(flight, parameters, bounds)) {
+			entry.lastUsed = cycle;
+			hits.incrementAndGet();
+			return entry.result;
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Returns the route track last computed for the flight, whatever its
+	 * inputs, or null if there is none. The search for the flight's new
+	 * route track starts from it.
+	 */
+	public RouteTrack lastRouteTrack(Flight flight) {
+		Entry entry = (Entry) entries.get(flight.getAircraftId());
+		return entry == null ? null : entry.result.getRouteTrack();
+	}
+
+	/**
+	 * Stores the result computed for the flight in the current cycle
+	 */
+	public void store(Flight flight, FlightResult result) {
+		entries.put(flight.getAircraftId(), new Entry(flight, parameters,
+				bounds, result, cycle));
+	}
+
+	/**
+	 * Removes all entries from the cache
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return Returns the number of flights in the cache.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Returns the number of lookups that found a result.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Returns the number of lookups that found no result.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Resets the hit and miss counters
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * A cached result and the inputs it was computed from
+	 */
+	private static class Entry {
+
+		private FlightTrack track;
+
+		private long planVersion;
+
+		private UserParameters parameters;
+
+		private LatLonBounds bounds;
+
+		private FlightResult result;
+
+		private volatile long lastUsed;
+
+		Entry(Flight flight, UserParameters parameters, LatLonBounds bounds,
+				FlightResult result, long cycle) {
+			this.track = flight.getFlightTrack();
+			this.planVersion = planVersion(flight.getFlightPlan());
+			this.parameters = parameters;
+			this.bounds = bounds;
+			this.result = result;
+			this.lastUsed = cycle;
+		}
+
+		/**
+		 * Returns true if this entry was computed from the same inputs
+		 */
+		boolean matches(Flight flight, UserParameters parameters,
+				LatLonBounds bounds) {
+			return planVersion == planVersion(flight.getFlightPlan())
+					&& sameTrack(track, flight.getFlightTrack())
+					&& (this.parameters == parameters || this.parameters
+							.equals(parameters))
+					&& (this.bounds == bounds || this.bounds.equals(bounds));
+		}
+
+		private static long planVersion(FlightPlan fp) {
+			return fp == null ? 0 : fp.getVersion();
+		}
+
+		private static boolean sameTrack(FlightTrack t1, FlightTrack t2) {
+			if (t1 == t2)
+				return true;
+			if (t1 == null || t2 == null)
+				return false;
+			return t1.getTime() == t2.getTime()
+					&& t1.getLatitude() == t2.getLatitude()
+					&& t1.getLongitude() == t2.getLongitude()
+					&& t1.getAltitude() == t2.getAltitude()
+					&& t1.getSpeed() == t2.getSpeed()
+					&& t1.getHeading() == t2.getHeading();
+		}
+	}
+}
@@ -26,6 +26,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import tsafe.common_datastructures.Flight;
 import tsafe.common_datastructures.FlightPlan;
@@ -35,6 +37,7 @@ import tsafe.common_datastructures.Trajectory;
 import tsafe.common_datastructures.client_server_communication.ComputationResults;
 import tsafe.common_datastructures.client_server_communication.UserParameters;
 import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.data.FlightResult;
 import tsafe.server.computation.data.RouteTrack;
 import tsafe.server.computation.sub_computation.ConformanceMonitor;
 import tsafe.server.computation.sub_computation.RouteTracker;
@@ -68,6 +71,36 @@ public class ComputationMediator {
 	 */
 	private Collection observers = new LinkedList();
 
+	/**
+	 * Results of previous cycles, reused for flights that have not changed
+	 */
+	private ComputationCache cache = new ComputationCache();
+
+	/**
+	 * True if results of previous cycles may be reused
+	 */
+	private boolean cacheEnabled = true;
+
+	/**
+	 * Number of threads that compute the flights of a cycle
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * Pool that computes the flights when parallelism is greater than one
+	 */
+	private volatile ForkJoinPool pool;
+
+	/**
+	 * Number of flights below which a parallel computation is no longer split
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	/**
+	 * Bounds whose corner is the origin of the projection, if fixed
+	 */
+	private LatLonBounds projectionBounds;
+
 	/**
 	 * Private engine constructor
 	 */
@@ -94,6 +127,29 @@ public class ComputationMediator {
 		this.bounds = bounds;
 	}
 
+	/**
+	 * Returns the bounds whose minimum corner is the origin of the flat
+	 * projection the engine computes in: the projection bounds if set,
+	 * otherwise the bounds being computed.
+	 */
+	public LatLonBounds getProjectionBounds() {
+		return projectionBounds != null ? projectionBounds : bounds;
+	}
+
+	/**
+	 * Fixes the origin of the projection, which otherwise is the corner of
+	 * the bounds of each computation. With a fixed origin, the result of a
+	 * flight is the same for every client whose bounds include it, so the
+	 * cache shares it between clients with different bounds.
+	 * 
+	 * @param projectionBounds
+	 *            The bounds to project from, or null to project from the
+	 *            bounds being computed.
+	 */
+	public void setProjectionBounds(LatLonBounds projectionBounds) {
+		this.projectionBounds = projectionBounds;
+	}
+
 	/**
 	 * @return Returns the parameters.
 	 */
@@ -117,6 +173,62 @@ public class ComputationMediator {
 		this.flights = flights;
 	}
 
+	/**
+	 * @return Returns the cache of per flight results.
+	 */
+	public ComputationCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return Returns true if results of previous cycles are reused.
+	 */
+	public boolean isCacheEnabled() {
+		return cacheEnabled;
+	}
+
+	/**
+	 * @param cacheEnabled
+	 *            True if results of previous cycles may be reused.
+	 */
+	public void setCacheEnabled(boolean cacheEnabled) {
+		this.cacheEnabled = cacheEnabled;
+		if (!cacheEnabled) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return Returns the number of threads that compute a cycle.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads that compute the flights of a cycle. With a
+	 * parallelism of one, flights are computed on the calling thread.
+	 * 
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @throws IllegalArgumentException
+	 *             if parallelism is less than one
+	 */
+	public synchronized void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism < 1: "
+					+ parallelism);
+		}
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.parallelism = parallelism;
+		if (parallelism > 1) {
+			pool = new ForkJoinPool(parallelism);
+		}
+	}
+
 	//*********************************************
 
 	// Experiment fields:
@@ -141,54 +253,41 @@ public class ComputationMediator {
 		// Instantiate an empty collection of blunders,
 		// an empty flight2traj map, and a copy of the current flights
 		Collection blunders = new LinkedList();
-		Map flight2TrajMap = new HashMap();
-
-		// For each flight:
-		// 1) If it has no flight plan, assign it a dr traj and continue
-		// 2) If it has a flight plan, determine if it is blundering
-		// 3) If it is, assign its dr trajectory as its predicted trajectory
-		//    If it isn't, assign its route trajectory as its predicted trajectory
-		Iterator flightIter = flights.iterator(); 
-
-		while (flightIter.hasNext()) {
-			Flight flight = (Flight) flightIter.next();
-			FlightTrack ft = flight.getFlightTrack();
-			FlightPlan fp = flight.getFlightPlan();
-
-			// If the flight doesn't have a flight plan, assign it a dr
-			// trajectory
-			// Don't check its conformance, just continue to the next flight
-			if (fp == null) {
-				Trajectory drTraj = trajSynth.getDeadReckoningTrajectory(ft);
-				flight2TrajMap.put(flight, drTraj);
-				continue;
-			}
-
-			// Determine if flight is blundering by comparing its actual track
-			// to its route track
-			RouteTrack rt = routeTracker.findRouteTrack(ft, fp);
+		Map flight2TrajMap = new HashMap(flights.size() * 4 / 3 + 1);
 
-			boolean blundering = confMonitor.isBlundering(ft, rt);
-
-			// If the flight is bludering, add it to the set of blunders
-			// and assign a dead reckoning trajectory as its assigned trajectory
-			if (blundering) {
-				blunders.add(flight);
+		// Compute against the cache's copy of the parameters, so that the
+		// results are stored under the parameters they were computed with
+		if (cacheEnabled) {
+			cache.beginCycle(parameters, getProjectionBounds());
+			this.parameters = cache.getParameters();
+		}
 
-				Trajectory drTraj = trajSynth.getDeadReckoningTrajectory(ft);
-				flight2TrajMap.put(flight, drTraj);
-			}
+		// Compute the flights, in parallel if the cycle is large enough.
+		// Each flight's result goes to its own slot, so no locking is needed
+		Flight[] flightArray = (Flight[]) flights.toArray(new Flight[flights
+				.size()]);
+		FlightResult[] flightResults = new FlightResult[flightArray.length];
+		ForkJoinPool pool = this.pool;
+
+		if (pool != null && flightArray.length > PARALLEL_THRESHOLD) {
+			pool.invoke(new ComputeTask(flightArray, flightResults, 0,
+					flightArray.length));
+		} else {
+			computeRange(flightArray, flightResults, 0, flightArray.length);
+		}
 
-			// If the flight is conforming, synthesize a route trajectory for
-			// it,
-			// assuming it's current track is its route track
-			else {
-				Trajectory rtTraj = trajSynth.getRouteTrajectory(rt, fp
-						.getRoute());
-				flight2TrajMap.put(flight, rtTraj);
+		// Merge the results in the order of the flight collection
+		for (int i = 0; i < flightArray.length; i++) {
+			if (flightResults[i].isBlundering()) {
+				blunders.add(flightArray[i]);
 			}
+			flight2TrajMap.put(flightArray[i], flightResults[i]
+					.getTrajectory());
 		}
 
+		if (cacheEnabled) {
+			cache.endCycle();
+		}
 
 		// Notify the observers of the results
 		ComputationResults results = new ComputationResults(flights, blunders,
@@ -196,4 +295,129 @@ public class ComputationMediator {
 
 		return results;
 	}
+
+	/**
+	 * Computes the flights in [from, to) into the corresponding result slots
+	 */
+	private void computeRange(Flight[] flights, FlightResult[] results,
+			int from, int to) {
+		for (int i = from; i < to; i++) {
+			results[i] = computeFlight(flights[i]);
+		}
+	}
+
+	/**
+	 * Splits a range of flights in halves until it is small enough to be
+	 * computed by a single thread
+	 */
+	private class ComputeTask extends RecursiveAction {
+
+		static final long serialVersionUID = 42L;
+
+		private Flight[] flights;
+
+		private FlightResult[] results;
+
+		private int from, to;
+
+		ComputeTask(Flight[] flights, FlightResult[] results, int from, int to) {
+			this.flights = flights;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				computeRange(flights, results, from, to);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new ComputeTask(flights, results, from, middle),
+					new ComputeTask(flights, results, middle, to));
+		}
+	}
+
+	/**
+	 * Runs the TSAFE Engine on a single flight, reusing the result of a
+	 * previous cycle if the flight has not changed since
+	 */
+	private FlightResult computeFlight(Flight flight) {
+		if (cacheEnabled) {
+			FlightResult cached = cache.lookup(flight);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		FlightResult result = computeUncachedFlight(flight,
+				cacheEnabled ? cache.lastRouteTrack(flight) : null);
+
+		if (cacheEnabled) {
+			cache.store(flight, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Determines whether a single flight is blundering, with the parameters
+	 * and projection bounds set, without synthesizing its trajectory
+	 *
+	 * @param previous
+	 *            The previous route track of the flight, where the search for
+	 *            its new one starts, or null
+	 * @return The route track and blunder status of the flight, or null if it
+	 *         has no track or no flight plan
+	 */
+	public FlightResult monitorFlight(Flight flight, RouteTrack previous) {
+		FlightTrack ft = flight.getFlightTrack();
+		FlightPlan fp = flight.getFlightPlan();
+		if (ft == null || fp == null) {
+			return null;
+		}
+
+		RouteTrack rt = routeTracker.findRouteTrack(ft, fp, previous);
+		return new FlightResult(rt, confMonitor.isBlundering(ft, rt), null);
+	}
+
+	/**
+	 * For each flight:
+	 * 1) If it has no flight plan, assign it a dr traj
+	 * 2) If it has a flight plan, determine if it is blundering
+	 * 3) If it is, assign its dr trajectory as its predicted trajectory
+	 *    If it isn't, assign its route trajectory as its predicted trajectory
+	 * The search for the route track starts from the previous one, if any
+	 */
+	private FlightResult computeUncachedFlight(Flight flight,
+			RouteTrack previous) {
+		FlightTrack ft = flight.getFlightTrack();
+		FlightPlan fp = flight.getFlightPlan();
+
+		// If the flight doesn't have a flight plan, assign it a dr
+		// trajectory
+		// Don't check its conformance
+		if (fp == null) {
+			Trajectory drTraj = trajSynth.getDeadReckoningTrajectory(ft);
+			return new FlightResult(null, false, drTraj);
+		}
+
+		// Determine if flight is blundering by comparing its actual track
+		// to its route track
+		RouteTrack rt = routeTracker.findRouteTrack(ft, fp, previous);
+
+		boolean blundering = confMonitor.isBlundering(ft, rt);
+
+		// If the flight is bludering, assign a dead reckoning trajectory
+		// as its assigned trajectory
+		if (blundering) {
+			Trajectory drTraj = trajSynth.getDeadReckoningTrajectory(ft);
+			return new FlightResult(rt, true, drTraj);
+		}
+
+		// If the flight is conforming, synthesize a route trajectory for it,
+		// assuming it's current track is its route track
+		Trajectory rtTraj = trajSynth.getRouteTrajectory(rt, fp.getRoute());
+		return new FlightResult(rt, false, rtTraj);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package tsafe.server.computation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the computation cycles on a thread of its own, at a fixed period,
+ * and optionally as soon as enough track messages have arrived since the
+ * last cycle.
+ *
+ * A cycle that takes longer than the period overruns the cycles due while
+ * it ran. With the SKIP policy they are dropped, and the schedule resumes
+ * at the next period boundary. With the COALESCE policy they are run as a
+ * single cycle, immediately.
+ */
+public class ComputationScheduler implements Runnable {
+
+	/**
+	 * Overrun policies
+	 */
+	public static final int SKIP = 0;
+
+	public static final int COALESCE = 1;
+
+	/**
+	 * The cycle to run
+	 */
+	private final Runnable cycle;
+
+	/**
+	 * Time between the cycles in milliseconds, or 0 to only run the cycles
+	 * triggered by track messages
+	 */
+	private volatile long period;
+
+	private volatile int overrunPolicy = SKIP;
+
+	/**
+	 * Number of track messages that trigger a cycle, or 0 to only run the
+	 * periodic cycles
+	 */
+	private volatile int trackTrigger;
+
+	/**
+	 * Number of track messages that arrived since the last cycle, or since
+	 * the last one that triggered a cycle
+	 */
+	private final AtomicInteger pendingTracks = new AtomicInteger();
+
+	/**
+	 * Guards the fields below, and wakes up the scheduler thread
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * The scheduler thread. A thread left over from before a stop and a
+	 * start finds it is no longer the scheduler thread, and ends.
+	 */
+	private Thread thread;
+
+	private boolean running;
+
+	private boolean triggered;
+
+	/**
+	 * Statistics
+	 */
+	private volatile long cycleCount, triggeredCycleCount, skippedCycleCount,
+			coalescedCycleCount, maxCycleNanos;
+
+	public ComputationScheduler(Runnable cycle, long period) {
+		this.cycle = cycle;
+		setPeriod(period);
+	}
+
+	/**
+	 * Sets the time between the cycles in milliseconds, or 0 to only run the
+	 * cycles triggered by track messages
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the period is negative
+	 */
+	public void setPeriod(long period) {
+		if (period < 0) {
+			throw new IllegalArgumentException("negative period: " + period);
+		}
+		this.period = period;
+		wakeUp();
+	}
+
+	public long getPeriod() {
+		return this.period;
+	}
+
+	/**
+	 * Sets what is done with the cycles a long cycle overruns, SKIP or
+	 * COALESCE
+	 */
+	public void setOverrunPolicy(int overrunPolicy) {
+		if (overrunPolicy != SKIP && overrunPolicy != COALESCE) {
+			throw new IllegalArgumentException("unknown overrun policy: "
+					+ overrunPolicy);
+		}
+		this.overrunPolicy = overrunPolicy;
+	}
+
+	public int getOverrunPolicy() {
+		return this.overrunPolicy;
+	}
+
+	/**
+	 * Runs a cycle as soon as this many track messages have arrived since the
+	 * last one, on top of the periodic cycles. 0 turns the trigger off.
+	 */
+	public void setTrackTrigger(int trackTrigger) {
+		if (trackTrigger < 0) {
+			throw new IllegalArgumentException("negative track trigger: "
+					+ trackTrigger);
+		}
+		this.trackTrigger = trackTrigger;
+	}
+
+	public int getTrackTrigger() {
+		return this.trackTrigger;
+	}
+
+	/**
+	 * Counts a track message that arrived, which may trigger a cycle. Called
+	 * by the parser for each track message it applies. Once the count reaches
+	 * the trigger, even one lowered below it, the message that resets the
+	 * count triggers the cycle.
+	 */
+	public void trackArrived() {
+		int trigger = this.trackTrigger;
+		if (trigger > 0) {
+			int pending = this.pendingTracks.incrementAndGet();
+			if (pending >= trigger
+					&& this.pendingTracks.compareAndSet(pending, 0)) {
+				trigger();
+			}
+		}
+	}
+
+	/**
+	 * Runs a cycle as soon as the current one, if any, is over
+	 */
+	public void trigger() {
+		synchronized (this.lock) {
+			this.triggered = true;
+			this.lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Starts running the cycles
+	 */
+	public void start() {
+		synchronized (this.lock) {
+			if (this.running) {
+				return;
+			}
+			this.running = true;
+			this.thread = new Thread(this, "Computation Scheduler");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+	}
+
+	/**
+	 * Stops running the cycles, after the current one
+	 */
+	public void stop() {
+		synchronized (this.lock) {
+			this.running = false;
+			this.lock.notifyAll();
+		}
+	}
+
+	public boolean isRunning() {
+		synchronized (this.lock) {
+			return this.running;
+		}
+	}
+
+	private void wakeUp() {
+		synchronized (this.lock) {
+			this.lock.notifyAll();
+		}
+	}
+
+	public void run() {
+		Thread self = Thread.currentThread();
+		long next = System.nanoTime() + this.period * 1000000L;
+		while (true) {
+			boolean byTracks;
+			synchronized (this.lock) {
+				while (this.running && this.thread == self && !this.triggered) {
+					long period = this.period;
+					long wait = period > 0 ? next - System.nanoTime() : 0;
+					if (period > 0 && wait <= 0) {
+						break;
+					}
+					try {
+						if (period > 0) {
+							this.lock.wait(wait / 1000000L,
+									(int) (wait % 1000000L));
+						} else {
+							this.lock.wait();
+						}
+					} catch (InterruptedException e) {
+						if (this.thread == self) {
+							this.running = false;
+						}
+					}
+				}
+				if (!this.running || this.thread != self) {
+					return;
+				}
+				byTracks = this.triggered;
+				this.triggered = false;
+			}
+			this.pendingTracks.set(0);
+
+			long start = System.nanoTime();
+			try {
+				this.cycle.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+			long end = System.nanoTime();
+			recordCycle(end - start, byTracks);
+			next = nextCycle(next, end, byTracks);
+		}
+	}
+
+	/**
+	 * Returns the time the cycle after the one that ended at the given time
+	 * is due, counting the cycles it overran
+	 */
+	private long nextCycle(long due, long end, boolean byTracks) {
+		long period = this.period * 1000000L;
+		if (period == 0) {
+			return end;
+		}
+
+		// The periodic cycles are a fallback for the triggered ones
+		if (byTracks) {
+			return end + period;
+		}
+		due += period;
+		if (due > end) {
+			return due;
+		}
+		long overrun = (end - due) / period + 1;
+		if (this.overrunPolicy == COALESCE) {
+			this.coalescedCycleCount += overrun - 1;
+			return end;
+		}
+		this.skippedCycleCount += overrun;
+		return due + overrun * period;
+	}
+
+	private void recordCycle(long nanos, boolean byTracks) {
+		this.cycleCount++;
+		if (byTracks) {
+			this.triggeredCycleCount++;
+		}
+		if (nanos > this.maxCycleNanos) {
+			this.maxCycleNanos = nanos;
+		}
+	}
+
+	/**
+	 * @return The number of cycles run
+	 */
+	public long getCycleCount() {
+		return this.cycleCount;
+	}
+
+	/**
+	 * @return The number of cycles run because of the track messages or a
+	 *         trigger()
+	 */
+	public long getTriggeredCycleCount() {
+		return this.triggeredCycleCount;
+	}
+
+	/**
+	 * @return The number of cycles skipped because an earlier cycle overran
+	 *         them
+	 */
+	public long getSkippedCycleCount() {
+		return this.skippedCycleCount;
+	}
+
+	/**
+	 * @return The number of overrun cycles that were run as part of a single
+	 *         catch-up cycle
+	 */
+	public long getCoalescedCycleCount() {
+		return this.coalescedCycleCount;
+	}
+
+	/**
+	 * @return The duration of the longest cycle in nanoseconds
+	 */
+	public long getMaxCycleNanos() {
+		return this.maxCycleNanos;
+	}
+}
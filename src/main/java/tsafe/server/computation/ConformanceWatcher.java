@@ -0,0 +1,156 @@
+package tsafe.server.computation;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.data.FlightResult;
+import tsafe.server.computation.data.RouteTrack;
+
+/**
+ * Monitors the conformance of each flight as its track messages are
+ * applied, rather than at the next computation cycle. Only the flight of a
+ * message is evaluated, and the listeners are told of the flights that
+ * start or stop blundering.
+ *
+ * The flights are evaluated with the server's parameters, projected from
+ * the corner of the configured airspace. Updates are made by the thread
+ * that applies the messages; the status may be read from any thread.
+ */
+public class ConformanceWatcher {
+
+	/**
+	 * The engine the flights are evaluated with
+	 */
+	private ComputationMediator engine;
+
+	/**
+	 * The route track and blunder status of each flight with a track and a
+	 * flight plan, keyed by aircraft id
+	 */
+	private Map results = new ConcurrentHashMap();
+
+	private List listeners = new CopyOnWriteArrayList();
+
+	/**
+	 * Number of flights evaluated
+	 */
+	private volatile long evaluationCount;
+
+	public ConformanceWatcher(Calculator calculator,
+			LatLonBounds projectionBounds, UserParameters parameters) {
+		this.engine = new ComputationMediator(calculator);
+		this.engine.setProjectionBounds(projectionBounds);
+		this.engine.setParameters(new UserParameters(parameters));
+	}
+
+	public void addBlunderListener(BlunderListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeBlunderListener(BlunderListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Sets the parameters the flights are evaluated with, from their next
+	 * track message on
+	 */
+	public synchronized void setParameters(UserParameters parameters) {
+		this.engine.setParameters(new UserParameters(parameters));
+	}
+
+	/**
+	 * Evaluates the flight, whose track or flight plan has just been
+	 * updated, and tells the listeners if its blunder status changed
+	 */
+	public synchronized void flightUpdated(Flight flight) {
+		String aircraftId = flight.getAircraftId();
+		FlightResult result = this.engine.monitorFlight(flight,
+				getRouteTrack(aircraftId));
+		FlightResult previous;
+		if (result == null) {
+			previous = (FlightResult) this.results.remove(aircraftId);
+		} else {
+			previous = (FlightResult) this.results.put(aircraftId, result);
+			this.evaluationCount++;
+		}
+
+		boolean wasBlundering = previous != null && previous.isBlundering();
+		boolean blundering = result != null && result.isBlundering();
+		if (blundering && !wasBlundering) {
+			Iterator listenerIter = this.listeners.iterator();
+			while (listenerIter.hasNext()) {
+				((BlunderListener) listenerIter.next()).blunderStarted(flight,
+						result.getRouteTrack());
+			}
+		} else if (wasBlundering && !blundering) {
+			fireBlunderCleared(aircraftId);
+		}
+	}
+
+	/**
+	 * Forgets the flight, which has been removed from the database
+	 */
+	public synchronized void flightRemoved(String aircraftId) {
+		FlightResult previous = (FlightResult) this.results.remove(aircraftId);
+		if (previous != null && previous.isBlundering()) {
+			fireBlunderCleared(aircraftId);
+		}
+	}
+
+	private void fireBlunderCleared(String aircraftId) {
+		Iterator listenerIter = this.listeners.iterator();
+		while (listenerIter.hasNext()) {
+			((BlunderListener) listenerIter.next()).blunderCleared(aircraftId);
+		}
+	}
+
+	/**
+	 * @return Whether the flight was blundering at its last track message
+	 */
+	public boolean isBlundering(String aircraftId) {
+		FlightResult result = (FlightResult) this.results.get(aircraftId);
+		return result != null && result.isBlundering();
+	}
+
+	/**
+	 * @return Where the flight was expected on its route at its last track
+	 *         message, or null if it has no track or no flight plan
+	 */
+	public RouteTrack getRouteTrack(String aircraftId) {
+		FlightResult result = (FlightResult) this.results.get(aircraftId);
+		return result == null ? null : result.getRouteTrack();
+	}
+
+	/**
+	 * @return The ids of the blundering flights
+	 */
+	public Set getBlunderIds() {
+		Set blunderIds = new HashSet();
+		Iterator entryIter = this.results.entrySet().iterator();
+		while (entryIter.hasNext()) {
+			Map.Entry entry = (Map.Entry) entryIter.next();
+			if (((FlightResult) entry.getValue()).isBlundering()) {
+				blunderIds.add(entry.getKey());
+			}
+		}
+		return Collections.unmodifiableSet(blunderIds);
+	}
+
+	/**
+	 * @return The number of flights evaluated
+	 */
+	public long getEvaluationCount() {
+		return this.evaluationCount;
+	}
+}
@@ -0,0 +1,43 @@
+package tsafe.server.computation.data;
+
+import tsafe.common_datastructures.Trajectory;
+
+/**
+ * The outcome of the engine's computation for a single flight: its route
+ * track, whether it is blundering, and its predicted trajectory.
+ * This is an immutable datatype
+ */
+public class FlightResult {
+
+    private RouteTrack routeTrack;
+    private boolean blundering;
+    private Trajectory trajectory;
+
+    /**
+     * Construct a flight result.
+     * The route track is null if the flight has no flight plan
+     */
+    public FlightResult(RouteTrack routeTrack, boolean blundering, Trajectory trajectory) {
+        this.routeTrack = routeTrack;
+        this.blundering = blundering;
+        this.trajectory = trajectory;
+    }
+
+    /**
+     * Returns the route track.
+     * Returns null if the flight has no flight plan
+     */
+    public RouteTrack getRouteTrack() {
+        return routeTrack;
+    }
+
+    /** Returns true if the flight is blundering */
+    public boolean isBlundering() {
+        return blundering;
+    }
+
+    /** Returns the predicted trajectory */
+    public Trajectory getTrajectory() {
+        return trajectory;
+    }
+}
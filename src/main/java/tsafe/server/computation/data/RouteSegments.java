@@ -0,0 +1,215 @@
+package tsafe.server.computation.data;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Route;
+import tsafe.server.calculation.Calculator;
+
+/**
+ * The segments of a route, projected to x,y coordinates from the corner of
+ * some bounds: their end points, direction vectors, lengths, headings and
+ * bounding boxes. They are computed once per route and projection bounds,
+ * and cached for as long as the route is in use.
+ * This is an immutable datatype
+ */
+public class RouteSegments {
+
+    /**
+     * The segments of the unmodifiable routes, by route. Lookups do not
+     * lock, so the flights computed in parallel do not wait on each other
+     */
+    private static final ConcurrentMap cache = new ConcurrentHashMap();
+
+    /** The keys of the routes no longer in use */
+    private static final ReferenceQueue released = new ReferenceQueue();
+
+    /** The bounds the fixes are projected from */
+    private LatLonBounds bounds;
+
+    /** The fixes of the route */
+    private Fix[] fixes;
+
+    /** Coordinates of the fixes */
+    private double[] x, y;
+
+    /** Direction vector, squared length, length and heading of each segment */
+    private double[] dx, dy, lengthSq, length, heading;
+
+    /** Bounding box of each segment */
+    private double[] minX, minY, maxX, maxY;
+
+    private RouteSegments(Route route, Calculator calculator, LatLonBounds bounds) {
+        this.bounds = bounds;
+
+        List fixList = route.fixList();
+        fixes = (Fix[])fixList.toArray(new Fix[fixList.size()]);
+        x = new double[fixes.length];
+        y = new double[fixes.length];
+        for (int i = 0; i < fixes.length; i++) {
+            x[i] = calculator.toX(fixes[i].getLatitude(), fixes[i].getLongitude(), bounds);
+            y[i] = calculator.toY(fixes[i].getLatitude(), bounds);
+        }
+
+        int segments = Math.max(fixes.length - 1, 0);
+        dx       = new double[segments];
+        dy       = new double[segments];
+        lengthSq = new double[segments];
+        length   = new double[segments];
+        heading  = new double[segments];
+        minX     = new double[segments];
+        minY     = new double[segments];
+        maxX     = new double[segments];
+        maxY     = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            dx[i]       = x[i + 1] - x[i];
+            dy[i]       = y[i + 1] - y[i];
+            lengthSq[i] = dx[i] * dx[i] + dy[i] * dy[i];
+            length[i]   = Math.sqrt(lengthSq[i]);
+            heading[i]  = calculator.angleXY(x[i], y[i], x[i + 1], y[i + 1]);
+            minX[i]     = Math.min(x[i], x[i + 1]);
+            minY[i]     = Math.min(y[i], y[i + 1]);
+            maxX[i]     = Math.max(x[i], x[i + 1]);
+            maxY[i]     = Math.max(y[i], y[i + 1]);
+        }
+    }
+
+    /**
+     * Returns the segments of the route projected from the corner of the
+     * bounds. Those of an unmodifiable route are cached until the route is
+     * no longer used
+     */
+    public static RouteSegments of(Route route, Calculator calculator, LatLonBounds bounds) {
+        if (!route.isUnmodifiable()) {
+            return new RouteSegments(route, calculator, bounds);
+        }
+
+        RouteSegments segments = (RouteSegments)cache.get(new RouteKey(route, null));
+        if (segments != null
+            && (segments.bounds == bounds || segments.bounds.equals(bounds))) {
+            return segments;
+        }
+
+        for (Object key; (key = released.poll()) != null; ) {
+            cache.remove(key);
+        }
+        segments = new RouteSegments(route, calculator, bounds);
+        cache.put(new RouteKey(route, released), segments);
+        return segments;
+    }
+
+    /**
+     * A weak reference to a route that is equal to the references to the
+     * same route. Routes do not override equals, so each route has its own
+     * segments
+     */
+    private static class RouteKey extends WeakReference {
+
+        private final int hash;
+
+        RouteKey(Route route, ReferenceQueue queue) {
+            super(route, queue);
+            hash = System.identityHashCode(route);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof RouteKey)) return false;
+            Object route = get();
+            return route != null && route == ((RouteKey)o).get();
+        }
+    }
+
+    /** Returns the number of segments, one less than the number of fixes */
+    public int size() {
+        return dx.length;
+    }
+
+    /** Returns the fix at the start of segment i, or the last fix if i is the size */
+    public Fix getFix(int i) {
+        return fixes[i];
+    }
+
+    /**
+     * Returns the length of segment i, the same as the distance the
+     * calculator finds between its fixes
+     */
+    public double getLength(int i) {
+        return length[i];
+    }
+
+    /** Returns the heading of segment i, between 0 and 2PI */
+    public double getHeading(int i) {
+        return heading[i];
+    }
+
+    /**
+     * Returns the index of the segment closest to (px, py).
+     * The search starts at the hint, usually the segment the flight was
+     * closest to last, and only snaps to the other segments whose bounding
+     * box is closer than the closest segment so far. Of segments equally
+     * close, the first is returned, whatever the hint
+     *
+     *@throws IndexOutOfBoundsException if there are no segments
+     */
+    public int closestSegment(double px, double py, int hint) {
+        int closest = hint >= 0 && hint < dx.length ? hint : 0;
+        double closestSq = distanceSq(closest, px, py);
+
+        for (int i = 0; i < dx.length; i++) {
+            if (i == closest) continue;
+            double boxSq = boxDistanceSq(i, px, py);
+            if (boxSq > closestSq || (boxSq == closestSq && i > closest)) continue;
+            double distSq = distanceSq(i, px, py);
+            if (distSq < closestSq || (distSq == closestSq && i < closest)) {
+                closest = i;
+                closestSq = distSq;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Returns the position along segment i of the point closest to (px, py),
+     * from 0 at its start to 1 at its end
+     */
+    public double snap(int i, double px, double py) {
+        if (lengthSq[i] == 0) return 0;
+        double t = ((px - x[i]) * dx[i] + (py - y[i]) * dy[i]) / lengthSq[i];
+        return t < 0 ? 0 : t > 1 ? 1 : t;
+    }
+
+    /** Returns the x coordinate of the point at position t along segment i */
+    public double getX(int i, double t) {
+        return t == 1 ? x[i + 1] : x[i] + t * dx[i];
+    }
+
+    /** Returns the y coordinate of the point at position t along segment i */
+    public double getY(int i, double t) {
+        return t == 1 ? y[i + 1] : y[i] + t * dy[i];
+    }
+
+    /** Returns the squared distance from (px, py) to segment i */
+    private double distanceSq(int i, double px, double py) {
+        double t = snap(i, px, py);
+        double ex = px - getX(i, t);
+        double ey = py - getY(i, t);
+        return ex * ex + ey * ey;
+    }
+
+    /** Returns the squared distance from (px, py) to the bounding box of segment i */
+    private double boxDistanceSq(int i, double px, double py) {
+        double ex = px < minX[i] ? minX[i] - px : px > maxX[i] ? px - maxX[i] : 0;
+        double ey = py < minY[i] ? minY[i] - py : py > maxY[i] ? py - maxY[i] : 0;
+        return ex * ex + ey * ey;
+    }
+}
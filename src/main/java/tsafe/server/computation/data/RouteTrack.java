@@ -28,6 +28,9 @@ import tsafe.common_datastructures.FlightTrack;
 public class RouteTrack extends FlightTrack {
 
     private Fix prevFix, nextFix;
+
+    /** Index of the route segment from prevFix to nextFix, or -1 if none */
+    private int segment = -1;
     
     public RouteTrack(Fix prevFix, Fix nextFix, double latitude, double longitude,
                       double altitude, long time, double speed, double heading) {
@@ -35,6 +38,13 @@ public class RouteTrack extends FlightTrack {
         this.prevFix = prevFix;
         this.nextFix = nextFix;
     }
+
+    public RouteTrack(Fix prevFix, Fix nextFix, int segment, double latitude,
+                      double longitude, double altitude, long time, double speed,
+                      double heading) {
+        this(prevFix, nextFix, latitude, longitude, altitude, time, speed, heading);
+        this.segment = segment;
+    }
     
     public RouteTrack(Fix prevFix, Fix nextFix, FlightTrack ft) {
         super(ft.getLatitude(), ft.getLongitude(), ft.getAltitude(),
@@ -50,4 +60,8 @@ public class RouteTrack extends FlightTrack {
     public Fix getNextFix() {
         return nextFix;
     }
+
+    public int getSegment() {
+        return segment;
+    }
 }
@@ -66,7 +66,7 @@ public class ConformanceMonitor extends ComputationColleagues {
 		if (this.mediator.getParameters().cmLateralWeightOn) {
 			double lateralDev = calculator.distanceLL(ftObserved.getLatitude(),
 					ftObserved.getLongitude(), ftExpected.getLatitude(),
-					ftExpected.getLongitude(), this.mediator.getBounds());
+					ftExpected.getLongitude(), this.mediator.getProjectionBounds());
 			double lateralResidual = lateralDev
 					/ this.mediator.getParameters().cmLateralThreshold;
 			sum += lateralResidual;
@@ -19,15 +19,13 @@
 
 package tsafe.server.computation.sub_computation;
 
-import java.util.Iterator;
-
 import tsafe.common_datastructures.Fix;
 import tsafe.common_datastructures.FlightPlan;
 import tsafe.common_datastructures.FlightTrack;
-import tsafe.common_datastructures.Point2D;
-import tsafe.common_datastructures.PointXY;
+import tsafe.common_datastructures.LatLonBounds;
 import tsafe.server.calculation.Calculator;
 import tsafe.server.computation.ComputationMediator;
+import tsafe.server.computation.data.RouteSegments;
 import tsafe.server.computation.data.RouteTrack;
 
 /**
@@ -49,98 +47,49 @@ public class RouteTracker extends ComputationColleagues {
 	 * assume that every route has at least 2 fixes.
 	 */
 	public RouteTrack findRouteTrack(FlightTrack ft, FlightPlan fp) {
-		Point2D flightPoint = new Point2D(ft.getLatitude(), ft.getLongitude());
+		return findRouteTrack(ft, fp, null);
+	}
 
-		
-		// We will find the route position on each route segment
-		// and take the route position that is closest to the flight
-		Iterator fixIter = fp.getRoute().fixIterator();
+	/**
+	 * Finds the point along the route that is closest to the flight track,
+	 * starting the search at the segment of the flight's previous route
+	 * track, which may be null
+	 */
+	public RouteTrack findRouteTrack(FlightTrack ft, FlightPlan fp,
+			RouteTrack previous) {
+		LatLonBounds bounds = this.mediator.getProjectionBounds();
 
 		// If route does not have any fixess
 		// return flights current position
-		if (!fixIter.hasNext()) {
+		if (fp.getRoute().isEmpty()) {
 			return new RouteTrack(null, null, ft);
 		}
-		Fix prevFix = (Fix) fixIter.next();
+
+		// The segments of the route are projected once, and cached
+		RouteSegments segments = RouteSegments.of(fp.getRoute(), calculator,
+				bounds);
 
 		// If route does not has exactly one fix,
 		// make that fix the prev and next
-		if (!fixIter.hasNext()) {
-			return new RouteTrack(prevFix, prevFix, ft);
+		if (segments.size() == 0) {
+			Fix fix = segments.getFix(0);
+			return new RouteTrack(fix, fix, ft);
 		}
 
-		// Minimums to keep track of
-		double minDeviation = Double.MAX_VALUE;
-		Fix minPrevFix = null, minNextFix = null;
-		Point2D minSnapPoint = null;
-
-		while (fixIter.hasNext()) {
-			Fix nextFix = (Fix) fixIter.next();
-			Point2D snapPoint = snapPointToRouteSegment(flightPoint, prevFix,
-					nextFix, false);
-			double snapDistance = calculator.distanceLL(snapPoint, flightPoint,
-					this.mediator.getBounds());
-
-			// found a new minimum
-			if (snapDistance < minDeviation) {
-				minPrevFix = prevFix;
-				minNextFix = nextFix;
-				minSnapPoint = snapPoint;
-				minDeviation = snapDistance;
-			}
-
-			prevFix = nextFix;
-		}
+		// Find the segment closest to the flight, and the closest point on it
+		double px = calculator.toX(ft.getLatitude(), ft.getLongitude(), bounds);
+		double py = calculator.toY(ft.getLatitude(), bounds);
+		int segment = segments.closestSegment(px, py,
+				previous == null ? -1 : previous.getSegment());
+		double t = segments.snap(segment, px, py);
 
-		PointXY flightXY = calculator.toXY(flightPoint, this.mediator
-				.getBounds());
-		PointXY prevXY = calculator.toXY(minPrevFix, this.mediator.getBounds());
-		PointXY nextXY = calculator.toXY(minNextFix, this.mediator.getBounds());
+		double snapLat = calculator.toLat(segments.getY(segment, t), bounds);
+		double snapLon = calculator.toLon(segments.getX(segment, t), snapLat,
+				bounds);
 
-		return new RouteTrack(minPrevFix, minNextFix, minSnapPoint
-				.getLatitude(), minSnapPoint.getLongitude(), fp
+		return new RouteTrack(segments.getFix(segment), segments
+				.getFix(segment + 1), segment, snapLat, snapLon, fp
 				.getAssignedAltitude(), ft.getTime(), fp.getAssignedSpeed(),
-				calculator.angleLL(minPrevFix, minNextFix, this.mediator
-						.getBounds()));
-	}
-
-	/**
-	 * Finds closest point on straight line between l1 and l2 to p
-	 */
-	private Point2D snapPointToRouteSegment(Point2D latLonPoint, Point2D fix1,
-			Point2D fix2, boolean print) {
-		PointXY p = calculator.toXY(latLonPoint, this.mediator.getBounds());
-		PointXY l1 = calculator.toXY(fix1, this.mediator.getBounds());
-		PointXY l2 = calculator.toXY(fix2, this.mediator.getBounds());
-
-		// Find linear equation for line segment (y = mx + b)
-		double m = (l2.getY() - l1.getY()) / (l2.getX() - l1.getX());
-		double b = l1.getY() - (m * l1.getX());
-
-		// Find linear equation for perpendicular line
-		double mP = -1 / m;
-		double bP = p.getY() - (mP * p.getX());
-
-		// Find where line segment and perpendicular intersect
-		double x = (b - bP) / (mP - m);
-		double y = (m * x) + b;
-		PointXY intersectXY = new PointXY(x, y);
-
-		// Check if this point does indeed lie on the line segment.
-		// If so, it must be the closest point on the line segment to p
-		if (((l1.getX() < x && x < l2.getX()) || (l2.getX() < x && x < l1
-				.getX()))
-				&& ((l1.getY() < y && y < l2.getY()) || (l2.getY() < y && y < l1
-						.getY()))) {
-			return calculator.toLL(intersectXY, this.mediator.getBounds());
-		}
-
-		// If this intersection point does not lie on the line segment,
-		// the closest point on the line segment to p must be an end point
-		// Find the minimum distance to an end point
-		double dist1 = calculator.distanceXY(p, l1);
-		double dist2 = calculator.distanceXY(p, l2);
-		PointXY minXY = dist1 < dist2 ? l1 : l2;
-		return calculator.toLL(minXY, this.mediator.getBounds());
+				segments.getHeading(segment));
 	}
-}
\ No newline at end of file
+}
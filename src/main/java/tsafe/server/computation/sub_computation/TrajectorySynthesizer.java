@@ -19,17 +19,15 @@
 
 package tsafe.server.computation.sub_computation;
 
-import java.util.Iterator;
-
 import tsafe.common_datastructures.Fix;
 import tsafe.common_datastructures.FlightTrack;
-import tsafe.common_datastructures.Point2D;
+import tsafe.common_datastructures.LatLonBounds;
 import tsafe.common_datastructures.Point4D;
-import tsafe.common_datastructures.PointXY;
 import tsafe.common_datastructures.Route;
 import tsafe.common_datastructures.Trajectory;
 import tsafe.server.calculation.Calculator;
 import tsafe.server.computation.ComputationMediator;
+import tsafe.server.computation.data.RouteSegments;
 import tsafe.server.computation.data.RouteTrack;
 
 /**
@@ -59,7 +57,7 @@ public class TrajectorySynthesizer extends ComputationColleagues {
 		Point4D end = deadReckon(ft,
 				this.mediator.getParameters().tsTimeHorizon);
 
-		Trajectory drTraj = new Trajectory();
+		Trajectory drTraj = new Trajectory(2);
 		drTraj.addPoint(start);
 		drTraj.addPoint(end);
 		return drTraj;
@@ -70,16 +68,26 @@ public class TrajectorySynthesizer extends ComputationColleagues {
 	 * end point of this dead reckoning.
 	 */
 	private Point4D deadReckon(FlightTrack ft, long time) {
-		double distance = ft.getSpeed() * time;
-		double xChange = Math.cos(ft.getHeading()) * distance;
-		double yChange = Math.sin(ft.getHeading()) * distance;
-
-		PointXY startXY = calculator.toXY(ft.getLatitude(), ft.getLongitude(),
-				this.mediator.getBounds());
-		Point2D end = calculator.toLL(startXY.getX() + xChange, startXY.getY()
-				+ yChange, this.mediator.getBounds());
-		return new Point4D(end.getLatitude(), end.getLongitude(), ft
-				.getAltitude(), ft.getTime() + time);
+		return deadReckon(ft.getLatitude(), ft.getLongitude(), ft.getAltitude(),
+				ft.getTime(), ft.getSpeed(), ft.getHeading(), time);
+	}
+
+	/**
+	 * Dead reckons from the given position, speed and heading for a given
+	 * amount of time. Returns the end point of this dead reckoning.
+	 */
+	private Point4D deadReckon(double lat, double lon, double altitude,
+			long startTime, double speed, double heading, long time) {
+		LatLonBounds bounds = this.mediator.getProjectionBounds();
+		double distance = speed * time;
+		double endX = calculator.toX(lat, lon, bounds) + Math.cos(heading)
+				* distance;
+		double endY = calculator.toY(lat, bounds) + Math.sin(heading)
+				* distance;
+
+		double endLat = calculator.toLat(endY, bounds);
+		return new Point4D(endLat, calculator.toLon(endX, endLat, bounds),
+				altitude, startTime + time);
 	}
 
 	/**
@@ -87,32 +95,44 @@ public class TrajectorySynthesizer extends ComputationColleagues {
 	 *         Assumes flight adheres strictly to its route
 	 */
 	public Trajectory getRouteTrajectory(RouteTrack rt, Route r) {
+		LatLonBounds bounds = this.mediator.getProjectionBounds();
+		long timeHorizon = this.mediator.getParameters().tsTimeHorizon;
+
 		// Start trajectory at route track point
 		Trajectory routeTraj = new Trajectory();
 		Point4D currPoint = rt.asPoint4D();
 		routeTraj.addPoint(currPoint);
 
-		// Move cursor to the next fix in the route
-		Iterator fixIter = r.fixIterator();
-		if (!fixIter.hasNext()) {
+		if (r.isEmpty()) {
 			System.out.println("Trajectory Synthesizer: ROUTE HAS NO POINTS.");
 			return getDeadReckoningTrajectory(rt);
 		}
+
+		// The segments of the route are projected once, and cached with it
+		RouteSegments segments = RouteSegments.of(r, calculator, bounds);
+
+		// Find the position of the next fix in the route: the end of the
+		// segment the flight was tracked to, or else the first fix equal to it
 		Fix nextFix = rt.getNextFix();
-		Fix f = (Fix) fixIter.next();
-		while (!f.equals(nextFix)) {
-			f = (Fix) fixIter.next();
+		int next = rt.getSegment() + 1;
+		if (next == 0 || next >= r.size() || r.getFix(next) != nextFix) {
+			next = 0;
+			while (!r.getFix(next).equals(nextFix)) {
+				next++;
+			}
 		}
+		int last = r.size() - 1;
 
 		// Find the distance and time to the next fix
 		long timeElapsed = 0;
 		double dist = calculator.distanceLL(rt.getLatitude(),
-				rt.getLongitude(), nextFix, this.mediator.getBounds());
+				rt.getLongitude(), nextFix, bounds);
 		long timeToNextFix = (long) (dist / rt.getSpeed());
 
 		// If the time to the next fix is within the time horizon,
 		// add this next fix location and expected time to the trajectory
-		if (timeToNextFix < this.mediator.getParameters().tsTimeHorizon) {
+		int reached = next;
+		if (timeToNextFix < timeHorizon) {
 			currPoint = new Point4D(nextFix.getLatitude(), nextFix
 					.getLongitude(), rt.getAltitude(), rt.getTime()
 					+ timeToNextFix);
@@ -121,16 +141,16 @@ public class TrajectorySynthesizer extends ComputationColleagues {
 
 			// While there are more fixes on the route,
 			// try to add them to the trajectory as well.
-			while (fixIter.hasNext()) {
-				nextFix = (Fix) fixIter.next();
-				dist = calculator.distanceLL(currPoint.getLatitude(), currPoint
-						.getLongitude(), nextFix, this.mediator.getBounds());
-				timeToNextFix = (long) (dist / rt.getSpeed());
+			// The distance to each is the length of the segment leading to it
+			while (reached < last) {
+				reached++;
+				nextFix = segments.getFix(reached);
+				timeToNextFix = (long) (segments.getLength(reached - 1) / rt
+						.getSpeed());
 
 				// If there is not enough time to reach the next fix,
 				// break out of the loop
-				if (timeToNextFix > this.mediator.getParameters().tsTimeHorizon
-						- timeElapsed)
+				if (timeToNextFix > timeHorizon - timeElapsed)
 					break;
 
 				currPoint = new Point4D(nextFix.getLatitude(), nextFix
@@ -145,18 +165,17 @@ public class TrajectorySynthesizer extends ComputationColleagues {
 		// next fix,
 		// and not because the route had actually ended, then dead reckon for
 		// the remaining time.
-		if (fixIter.hasNext()) {
-			double heading = calculator.angleLL(currPoint.getLatitude(),
-					currPoint.getLongitude(), nextFix, this.mediator
-							.getBounds());
-			FlightTrack lastTrack = new FlightTrack(currPoint.getLatitude(),
-					currPoint.getLongitude(), rt.getAltitude(), currPoint
-							.getTime(), rt.getSpeed(), heading);
-			Point4D end = deadReckon(lastTrack,
-					this.mediator.getParameters().tsTimeHorizon - timeElapsed);
+		if (reached < last) {
+			// From a fix, the heading is that of the segment leaving it
+			double heading = reached > next ? segments.getHeading(reached - 1)
+					: calculator.angleLL(currPoint.getLatitude(), currPoint
+							.getLongitude(), nextFix, bounds);
+			Point4D end = deadReckon(currPoint.getLatitude(), currPoint
+					.getLongitude(), rt.getAltitude(), currPoint.getTime(), rt
+					.getSpeed(), heading, timeHorizon - timeElapsed);
 			routeTraj.addPoint(end);
 		}
 
 		return routeTraj;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,288 @@
+package tsafe.server.database;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import tsafe.common_datastructures.Airway;
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FixTable;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Sid;
+import tsafe.common_datastructures.Star;
+
+/**
+ * A runtime database that may be read while it is being written, without
+ * readers and writers blocking each other. The tables are concurrent maps,
+ * the fixes are kept in a FixTable and the flights in a concurrent
+ * FlightGrid. Writers of flights lock one of a fixed number of stripes,
+ * chosen by aircraft id, so that two writers only wait for each other if
+ * they modify the same stripe. Readers only lock while a batch of updates
+ * runs.
+ *
+ * Each flight is published as a whole, so a reader sees either the old or
+ * the new version of a flight that is updated while it reads, never a mix of
+ * both. Queries over many flights are consistent per flight: a flight that
+ * is updated during a bounds query is returned exactly once, checked against
+ * the bounds with the version that is returned.
+ *
+ * A batch is published as a whole too. Batches run one at a time, and a
+ * flight query that overlaps a batch is validated against the batch
+ * sequence and run again, waiting for the batch to end, so that it sees
+ * either none or all of the batch.
+ */
+public class ConcurrentRuntimeDatabase extends DatabaseInterface {
+
+	/**
+	 * Default number of lock stripes for the writers of flights
+	 */
+	public static final int DEFAULT_STRIPES = 16;
+
+	// In memory database tables
+	private FlightGrid flights = new FlightGrid(FlightGrid.DEFAULT_CELL_SIZE,
+			true);
+
+	private FixTable fixes = new FixTable();
+
+	private Map airways = new ConcurrentHashMap();
+
+	private Map sids = new ConcurrentHashMap();
+
+	private Map stars = new ConcurrentHashMap();
+
+	// Locks of the writers of flights
+	private Object[] stripes;
+
+	// Sequence of the batches, validated by the flight queries
+	private final StampedLock batches = new StampedLock();
+
+	// The thread running the current batch, which reads its own updates
+	private volatile Thread batchThread;
+
+	/**
+	 * Construct a database with the default number of lock stripes
+	 */
+	public ConcurrentRuntimeDatabase() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Construct a database with the given number of lock stripes
+	 */
+	public ConcurrentRuntimeDatabase(int stripes) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be positive: "
+					+ stripes);
+		}
+		this.stripes = new Object[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Object();
+		}
+	}
+
+	// ****************************
+	// ***** Managing Flights *****
+	// ****************************
+
+	public void insertFlight(Flight f) {
+		synchronized (stripe(f.getAircraftId())) {
+			flights.add(f);
+		}
+	}
+
+	/**
+	 * Replaces the flight with the same aircraft id. Unlike a delete followed
+	 * by an insert, readers never find the flight missing.
+	 */
+	public void updateFlight(Flight f) {
+		synchronized (stripe(f.getAircraftId())) {
+			flights.add(f);
+		}
+	}
+
+	public void deleteFlight(String aircraftId) {
+		synchronized (stripe(aircraftId)) {
+			flights.remove(aircraftId);
+		}
+	}
+
+	/**
+	 * Runs the batch of updates while no other batch runs. The flight
+	 * queries of other threads see either none or all of it
+	 */
+	public void executeBatch(Runnable batch) {
+		if (batchThread == Thread.currentThread()) {
+			batch.run();
+			return;
+		}
+
+		long stamp = batches.writeLock();
+		batchThread = Thread.currentThread();
+		try {
+			batch.run();
+		} finally {
+			batchThread = null;
+			batches.unlockWrite(stamp);
+		}
+	}
+
+	public Flight selectFlight(String aircraftId) {
+		long stamp = batches.tryOptimisticRead();
+		Flight f = flights.get(aircraftId);
+		if (batches.validate(stamp) || batchThread == Thread.currentThread()) {
+			return f;
+		}
+
+		// A batch ran during the lookup
+		stamp = batches.readLock();
+		try {
+			return flights.get(aircraftId);
+		} finally {
+			batches.unlockRead(stamp);
+		}
+	}
+
+	public Collection selectFlightsInBounds(LatLonBounds bounds) {
+		long stamp = batches.tryOptimisticRead();
+		Collection selectedFlights = flightsInBounds(bounds);
+		if (batches.validate(stamp) || batchThread == Thread.currentThread()) {
+			return selectedFlights;
+		}
+
+		// A batch ran during the query
+		stamp = batches.readLock();
+		try {
+			return flightsInBounds(bounds);
+		} finally {
+			batches.unlockRead(stamp);
+		}
+	}
+
+	private Collection flightsInBounds(LatLonBounds bounds) {
+		FlightTrack ft = null;
+		FlightPlan fp = null;
+		boolean routeInBounds = false;
+		Set selectedFlights = new HashSet();
+
+		Iterator entryIter = flights.candidates(bounds).iterator();
+		while (entryIter.hasNext()) {
+			FlightGrid.Entry entry = (FlightGrid.Entry) entryIter.next();
+			Flight f = entry.getFlight();
+			ft = f.getFlightTrack();
+			fp = f.getFlightPlan();
+			routeInBounds = fp != null && entry.routeMayIntersect(bounds)
+					&& super.routeInBounds(fp.getRoute(), bounds);
+			// If flight or route is in bounds add it to the list
+			if (ft != null)
+				if ((bounds.contains(ft.getLatitude(), ft.getLongitude()))
+						|| (routeInBounds)) {
+					selectedFlights.add(f);
+				}
+		}
+
+		return selectedFlights;
+	}
+
+	// **************************
+	// ***** Managing Fixes *****
+	// **************************
+
+	public void insertFix(Fix fix) {
+		fixes.put(fix);
+	}
+
+	public void deleteFix(String fixId) {
+		fixes.remove(fixId);
+	}
+
+	public Fix selectFix(String fixId) {
+		return fixes.get(fixId);
+	}
+
+	public Collection selectFixesInBounds() {
+		return fixes.fixes();
+	}
+
+	public FixTable getFixTable() {
+		return fixes;
+	}
+
+	// ****************************
+	// ***** Managing Airways *****
+	// ****************************
+
+	public void insertAirway(Airway awy) {
+		airways.put(awy.getId(), awy);
+	}
+
+	public void deleteAirway(String awyId) {
+		airways.remove(awyId);
+	}
+
+	public Airway selectAirway(String airwayId) {
+		return (Airway) airways.get(airwayId);
+	}
+
+	public Collection selectAirwaysInBounds() {
+		return Collections.unmodifiableCollection(airways.values());
+	}
+
+	// ****************************
+	// ***** Managing Sids *****
+	// ****************************
+
+	public void insertSid(Sid sid) {
+		sids.put(sid.getId(), sid);
+	}
+
+	public void deleteSid(String sidId) {
+		sids.remove(sidId);
+	}
+
+	public Sid selectSid(String sidId) {
+		return (Sid) sids.get(sidId);
+	}
+
+	public Collection selectSidsInBounds() {
+		return Collections.unmodifiableCollection(sids.values());
+	}
+
+	// ****************************
+	// ***** Managing Stars *****
+	// ****************************
+
+	public void insertStar(Star star) {
+		stars.put(star.getId(), star);
+	}
+
+	public void deleteStar(String starId) {
+		stars.remove(starId);
+	}
+
+	public Star selectStar(String starId) {
+		return (Star) stars.get(starId);
+	}
+
+	public Collection selectStarsInBounds() {
+		return Collections.unmodifiableCollection(stars.values());
+	}
+
+	// ***************************
+	// ***** Helpers Methods *****
+	// ***************************
+
+	/**
+	 * Returns the lock of the stripe of the aircraft id
+	 */
+	private Object stripe(String aircraftId) {
+		return stripes[(aircraftId.hashCode() & 0x7fffffff) % stripes.length];
+	}
+}
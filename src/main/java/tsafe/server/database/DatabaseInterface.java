@@ -24,6 +24,7 @@ import java.util.Iterator;
 
 import tsafe.common_datastructures.Airway;
 import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FixTable;
 import tsafe.common_datastructures.Flight;
 import tsafe.common_datastructures.LatLonBounds;
 import tsafe.common_datastructures.Route;
@@ -53,6 +54,12 @@ public abstract class DatabaseInterface {
    public abstract void deleteFix(String fixId);
    public abstract Fix selectFix(String fixId);
    public abstract Collection selectFixesInBounds();
+
+   /**
+    * Returns the table the fixes are stored in, by whose handles the routes
+    * of the static data reference their fixes
+    */
+   public abstract FixTable getFixTable();
   
    // Airways    
    public abstract void insertAirway(Airway a);
@@ -73,6 +80,16 @@ public abstract class DatabaseInterface {
    public abstract Collection selectStarsInBounds();
 
 
+   /**
+    * Runs a batch of updates as one transaction, so that an implementation
+    * that locks can take its lock once for the whole batch.
+    *
+    * This implementation simply runs the batch; readers may see part of it.
+    */
+   public void executeBatch(Runnable batch) {
+      batch.run();
+   }
+
    /** Returns true if the route is within bounds */
    protected final boolean routeInBounds(Route r, LatLonBounds bounds) {
        boolean inBounds = false;
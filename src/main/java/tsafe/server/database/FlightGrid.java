@@ -0,0 +1,434 @@
+package tsafe.server.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+
+/**
+ * A uniform lat/lon grid over the flights of the database. Every flight is
+ * registered in the cell of its track position and in the cell of each fix
+ * of its route, so a bounds query only looks at the flights of the cells the
+ * bounds overlap. The bounding box of each route is kept as well, so that
+ * the routes of candidate flights can be rejected without walking their
+ * fixes.
+ *
+ * A grid that is not concurrent is not synchronized. A concurrent grid may be
+ * queried while it is being modified, but modifications of the same aircraft
+ * id must not run at the same time. A query of a concurrent grid that runs
+ * while a flight moves may have missed that flight, if it entered a cell the
+ * query had already visited. Each cell has a version that changes when a
+ * flight enters it, so the query rescans the cells that changed until none
+ * did. Only if flights keep moving for too many rescans does it fall back to
+ * returning every flight.
+ */
+class FlightGrid {
+
+	/**
+	 * Default size of a grid cell, in degrees
+	 */
+	static final double DEFAULT_CELL_SIZE = 0.5;
+
+	/**
+	 * Size of a grid cell, in degrees
+	 */
+	private final double cellSize;
+
+	/**
+	 * True if the grid may be queried while it is being modified
+	 */
+	private final boolean concurrent;
+
+	/**
+	 * Number of times a concurrent query rescans the cells that changed
+	 * before returning every flight
+	 */
+	static final int MAX_RESCANS = 8;
+
+	/**
+	 * Maps a cell key to the Cell with the ids of the flights in that cell
+	 */
+	private final Map cells;
+
+	/**
+	 * Maps an aircraft id to the entry of that flight
+	 */
+	private final Map entries;
+
+	/**
+	 * Number of cells created, since a query may have passed over a cell
+	 * before it existed
+	 */
+	private final AtomicLong cellsCreated = new AtomicLong();
+
+	/**
+	 * Construct a grid with the default cell size
+	 */
+	FlightGrid() {
+		this(DEFAULT_CELL_SIZE, false);
+	}
+
+	/**
+	 * Construct a grid with the given cell size, in degrees
+	 */
+	FlightGrid(double cellSize, boolean concurrent) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("cell size must be positive: "
+					+ cellSize);
+		}
+		this.cellSize = cellSize;
+		this.concurrent = concurrent;
+		this.cells = concurrent ? (Map) new ConcurrentHashMap() : new HashMap();
+		this.entries = concurrent ? (Map) new ConcurrentHashMap() : new HashMap();
+	}
+
+	/**
+	 * Registers the flight in the cells of its track and route, replacing
+	 * any previous registration of the same aircraft id
+	 */
+	void add(Flight f) {
+		String aircraftId = f.getAircraftId();
+		Entry entry = new Entry(f);
+		Entry old = (Entry) entries.put(aircraftId, entry);
+
+		// Register the new cells before leaving the old ones,
+		// so that a concurrent query finds the flight in either
+		for (int i = 0; i < entry.cells.length; i++) {
+			cell(entry.cells[i]).enter(aircraftId);
+		}
+		if (old != null) {
+			for (int i = 0; i < old.cells.length; i++) {
+				if (!entry.occupies(old.cells[i])) {
+					leaveCell(old.cells[i], aircraftId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the flight with the given id from the grid
+	 */
+	void remove(String aircraftId) {
+		Entry entry = (Entry) entries.remove(aircraftId);
+		if (entry == null)
+			return;
+
+		for (int i = 0; i < entry.cells.length; i++) {
+			leaveCell(entry.cells[i], aircraftId);
+		}
+	}
+
+	/**
+	 * Removes all flights from the grid
+	 */
+	void clear() {
+		cells.clear();
+		entries.clear();
+	}
+
+	/**
+	 * Returns the flight with the given id, or null if there is none
+	 */
+	Flight get(String aircraftId) {
+		Entry entry = (Entry) entries.get(aircraftId);
+		return entry == null ? null : entry.flight;
+	}
+
+	/**
+	 * Returns the number of flights in the grid
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the entries of the flights whose track or route may lie within
+	 * the bounds. Every flight that does is returned; the caller must check
+	 * the candidates against the bounds.
+	 */
+	Collection candidates(LatLonBounds bounds) {
+		Set ids = new HashSet();
+		long created = cellsCreated.get();
+		List visits = scan(bounds, ids);
+
+		// A flight may have left a cell the query had not reached yet
+		// for one it had already passed
+		for (int rescans = 0; concurrent; rescans++) {
+			boolean changed;
+			if (cellsCreated.get() != created) {
+				created = cellsCreated.get();
+				visits = scan(bounds, ids);
+				changed = true;
+			} else {
+				changed = rescanChanged(visits, ids);
+			}
+			if (!changed) {
+				break;
+			}
+			if (rescans == MAX_RESCANS) {
+				return new ArrayList(entries.values());
+			}
+		}
+
+		Collection result = new HashSet();
+		Iterator idIter = ids.iterator();
+		while (idIter.hasNext()) {
+			Object entry = entries.get(idIter.next());
+			if (entry != null) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the ids of the flights of the cells the bounds overlap
+	 *
+	 * @return The Visit of each cell
+	 */
+	private List scan(LatLonBounds bounds, Set ids) {
+		List visits = new ArrayList();
+
+		int minLatIdx = index(bounds.minLat), maxLatIdx = index(bounds.maxLat);
+		int minLonIdx = index(bounds.minLon), maxLonIdx = index(bounds.maxLon);
+		long rangeSize = (long) (maxLatIdx - minLatIdx + 1)
+				* (maxLonIdx - minLonIdx + 1);
+
+		// If the bounds cover more cells than are occupied,
+		// visit the occupied cells instead
+		if (rangeSize > cells.size()) {
+			Iterator cellIter = cells.entrySet().iterator();
+			while (cellIter.hasNext()) {
+				Map.Entry cell = (Map.Entry) cellIter.next();
+				long key = ((Long) cell.getKey()).longValue();
+				int latIdx = (int) (key >> 32), lonIdx = (int) key;
+				if (latIdx >= minLatIdx && latIdx <= maxLatIdx
+						&& lonIdx >= minLonIdx && lonIdx <= maxLonIdx) {
+					visits.add(new Visit((Cell) cell.getValue(), ids));
+				}
+			}
+		} else {
+			for (int latIdx = minLatIdx; latIdx <= maxLatIdx; latIdx++) {
+				for (int lonIdx = minLonIdx; lonIdx <= maxLonIdx; lonIdx++) {
+					Cell cell = (Cell) cells.get(Long.valueOf(key(latIdx, lonIdx)));
+					if (cell != null) {
+						visits.add(new Visit(cell, ids));
+					}
+				}
+			}
+		}
+		return visits;
+	}
+
+	/**
+	 * Adds the ids of the flights of the visited cells that a flight has
+	 * entered since they were visited
+	 *
+	 * @return True if any cell had changed
+	 */
+	private static boolean rescanChanged(List visits, Set ids) {
+		boolean changed = false;
+		Iterator visitIter = visits.iterator();
+		while (visitIter.hasNext()) {
+			changed |= ((Visit) visitIter.next()).rescan(ids);
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the cell with the given key, creating it if necessary
+	 */
+	private Cell cell(long key) {
+		Long cellKey = Long.valueOf(key);
+		Cell cell = (Cell) cells.get(cellKey);
+		if (cell == null) {
+			cell = new Cell(concurrent);
+			if (concurrent) {
+				Cell raced = (Cell) ((ConcurrentHashMap) cells).putIfAbsent(cellKey, cell);
+				if (raced != null) {
+					return raced;
+				}
+				cellsCreated.incrementAndGet();
+			} else {
+				cells.put(cellKey, cell);
+			}
+		}
+		return cell;
+	}
+
+	/**
+	 * Removes the aircraft id from the cell with the given key
+	 */
+	private void leaveCell(long key, String aircraftId) {
+		Long cellKey = Long.valueOf(key);
+		Cell cell = (Cell) cells.get(cellKey);
+		if (cell != null) {
+			cell.ids.remove(aircraftId);
+			// Empty cells of a concurrent grid are kept, since another
+			// writer may be about to add to them
+			if (cell.ids.isEmpty() && !concurrent) {
+				cells.remove(cellKey);
+			}
+		}
+	}
+
+	/**
+	 * Returns the grid index of a latitude or longitude
+	 */
+	private int index(double degrees) {
+		return (int) Math.floor(degrees / cellSize);
+	}
+
+	/**
+	 * Returns the key of the cell with the given indices
+	 */
+	private static long key(int latIdx, int lonIdx) {
+		return ((long) latIdx << 32) | (lonIdx & 0xffffffffL);
+	}
+
+	/**
+	 * The ids of the flights in a cell, and the number of times a flight has
+	 * entered it
+	 */
+	private static class Cell {
+
+		private final Set ids;
+
+		private final AtomicLong version = new AtomicLong();
+
+		private Cell(boolean concurrent) {
+			this.ids = concurrent ? ConcurrentHashMap.newKeySet() : new HashSet();
+		}
+
+		/**
+		 * Adds the aircraft id, then changes the version if it is new
+		 */
+		private void enter(String aircraftId) {
+			if (ids.add(aircraftId)) {
+				version.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * A cell as a query has read it
+	 */
+	private static class Visit {
+
+		private final Cell cell;
+
+		private long version;
+
+		/**
+		 * Reads the version of the cell, then adds the ids of its flights
+		 */
+		private Visit(Cell cell, Set ids) {
+			this.cell = cell;
+			this.version = cell.version.get();
+			ids.addAll(cell.ids);
+		}
+
+		/**
+		 * Adds the ids of the flights of the cell again if its version has
+		 * changed since it was read
+		 *
+		 * @return True if it had changed
+		 */
+		private boolean rescan(Set ids) {
+			long current = cell.version.get();
+			if (current == version) {
+				return false;
+			}
+			version = current;
+			ids.addAll(cell.ids);
+			return true;
+		}
+	}
+
+	/**
+	 * A flight together with its cells and route bounding box.
+	 * This is an immutable datatype
+	 */
+	class Entry {
+
+		private final Flight flight;
+
+		private final long[] cells;
+
+		private boolean hasRoute;
+
+		private double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+
+		private double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+
+		private Entry(Flight f) {
+			this.flight = f;
+			Set keys = new HashSet();
+
+			FlightTrack ft = f.getFlightTrack();
+			if (ft != null) {
+				keys.add(Long.valueOf(key(index(ft.getLatitude()), index(ft
+						.getLongitude()))));
+			}
+
+			FlightPlan fp = f.getFlightPlan();
+			if (fp != null) {
+				Iterator fixIter = fp.getRoute().fixIterator();
+				while (fixIter.hasNext()) {
+					Fix fix = (Fix) fixIter.next();
+					keys.add(Long.valueOf(key(index(fix.getLatitude()), index(fix
+							.getLongitude()))));
+
+					hasRoute = true;
+					minLat = Math.min(minLat, fix.getLatitude());
+					maxLat = Math.max(maxLat, fix.getLatitude());
+					minLon = Math.min(minLon, fix.getLongitude());
+					maxLon = Math.max(maxLon, fix.getLongitude());
+				}
+			}
+
+			this.cells = new long[keys.size()];
+			Iterator keyIter = keys.iterator();
+			for (int i = 0; keyIter.hasNext(); i++) {
+				this.cells[i] = ((Long) keyIter.next()).longValue();
+			}
+		}
+
+		/**
+		 * @return Returns the flight.
+		 */
+		Flight getFlight() {
+			return flight;
+		}
+
+		/**
+		 * Returns false if the route of the flight certainly does not lie
+		 * within the bounds, or if the flight has no route
+		 */
+		boolean routeMayIntersect(LatLonBounds bounds) {
+			return hasRoute
+					&& maxLat > bounds.minLat && minLat < bounds.maxLat
+					&& maxLon > bounds.minLon && minLon < bounds.maxLon;
+		}
+
+		private boolean occupies(long key) {
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] == key)
+					return true;
+			}
+			return false;
+		}
+	}
+}
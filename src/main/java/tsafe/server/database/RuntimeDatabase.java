@@ -29,6 +29,7 @@ import java.util.Set;
 
 import tsafe.common_datastructures.Airway;
 import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FixTable;
 import tsafe.common_datastructures.Flight;
 import tsafe.common_datastructures.FlightPlan;
 import tsafe.common_datastructures.FlightTrack;
@@ -47,9 +48,7 @@ public class RuntimeDatabase extends DatabaseInterface {
 
 	private Map flightsOutBounds = new HashMap();
 
-	private Map fixesInBounds = new HashMap();
-
-	private Map fixesOutBounds = new HashMap();
+	private FixTable fixes = new FixTable();
 
 	private Map airwaysInBounds = new HashMap();
 
@@ -63,6 +62,9 @@ public class RuntimeDatabase extends DatabaseInterface {
 
 	private Map starsOutBounds = new HashMap();
 
+	// Spatial index over the flights in flightsInBounds
+	private FlightGrid flightGrid = new FlightGrid();
+
 	/**
 	 * RuntimeDatabase constructor
 	 */
@@ -77,23 +79,33 @@ public class RuntimeDatabase extends DatabaseInterface {
 	 * Inserts flights to the database
 	 */
 	public synchronized void insertFlight(Flight f) {
-		FlightPlan fp = f.getFlightPlan();
 		flightsInBounds.put(f.getAircraftId(), f);
-
+		flightGrid.add(f);
 	}
 
+	/**
+	 * Replaces the flight with the same aircraft id
+	 */
 	public synchronized void updateFlight(Flight f) {
-		deleteFlight(f.getAircraftId());
 		insertFlight(f);
 	}
 
 	public synchronized void deleteFlight(String aircraftId) {
 		delete(flightsInBounds, flightsOutBounds, aircraftId);
+		flightGrid.remove(aircraftId);
+	}
+
+	/**
+	 * Runs the batch of updates while holding the database lock, so readers
+	 * see either none or all of it
+	 */
+	public synchronized void executeBatch(Runnable batch) {
+		batch.run();
 	}
 
 	public synchronized Flight selectFlight(String aircraftId) {
 		Object selected = select(flightsInBounds, flightsOutBounds, aircraftId);
-		return selected == null ? null : new Flight((Flight) selected);
+		return (Flight) selected;
 	}
 
 	public synchronized Collection selectFlightsInBounds(LatLonBounds bounds) {
@@ -101,25 +113,28 @@ public class RuntimeDatabase extends DatabaseInterface {
 		FlightTrack ft = null;
 		FlightPlan fp = null;
 		boolean routeInBounds = false;
-		Set deepCopyFlights = new HashSet();
+		Set selectedFlights = new HashSet();
 
-		Iterator flightIter = flightsInBounds.values().iterator();
+		// Only look at the flights in the grid cells the bounds overlap
+		Iterator entryIter = flightGrid.candidates(bounds).iterator();
 						
-		while (flightIter.hasNext()) {
-			Flight f = (Flight) flightIter.next();
+		while (entryIter.hasNext()) {
+			FlightGrid.Entry entry = (FlightGrid.Entry) entryIter.next();
+			Flight f = entry.getFlight();
 			ft = f.getFlightTrack();
 			fp = f.getFlightPlan();
 			routeInBounds = fp != null
+					&& entry.routeMayIntersect(bounds)
 					&& super.routeInBounds(fp.getRoute(), bounds);
 			// If flight or route is in bounds add it to the list
 			if (ft != null)
 				if ((bounds.contains(ft.getLatitude(), ft.getLongitude()))
 						|| (routeInBounds)) {
-					deepCopyFlights.add(new Flight(f));
+					selectedFlights.add(f);
 				}
 		}
 
-		return deepCopyFlights;
+		return selectedFlights;
 	}
 
 	// **************************
@@ -127,19 +142,23 @@ public class RuntimeDatabase extends DatabaseInterface {
 	// **************************
 
 	public synchronized void insertFix(Fix fix) {
-		insert(fixesInBounds, fixesOutBounds, fix.getId(), fix);
+		fixes.put(fix);
 	}
 
 	public synchronized void deleteFix(String fixId) {
-		delete(fixesInBounds, fixesOutBounds, fixId);
+		fixes.remove(fixId);
 	}
 
 	public synchronized Fix selectFix(String fixId) {
-		return (Fix) select(fixesInBounds, fixesOutBounds, fixId);
+		return fixes.get(fixId);
 	}
 
 	public synchronized Collection selectFixesInBounds() {
-		return selectInBounds(fixesInBounds);
+		return fixes.fixes();
+	}
+
+	public FixTable getFixTable() {
+		return fixes;
 	}
 
 	// ****************************
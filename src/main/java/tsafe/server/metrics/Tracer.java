@@ -0,0 +1,203 @@
+package tsafe.server.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records spans: the time each stage of the pipeline, from reading the feed
+ * to rendering the flights, takes each time it runs. A span is started
+ * with start() and ended with end(stage, start), so tracing allocates
+ * nothing per span. The tracer keeps a histogram of the durations of each
+ * stage, and the most recent spans, which can be exported as a Chrome trace
+ * (the JSON format read by chrome://tracing and Perfetto).
+ *
+ * The stages of TSAFE record to the default tracer.
+ */
+public class Tracer implements TracerMBean {
+
+	// STAGES OF THE PIPELINE
+	public static final String FEED_READ = "feed read";
+	public static final String APPLY = "apply message";
+	public static final String QUERY = "database query";
+	public static final String COMPUTE = "compute flights";
+	public static final String NOTIFY = "notify clients";
+	public static final String RENDER = "render graphical window";
+	public static final String RENDER_TEXT = "render text window";
+
+	/** The JMX name of the default tracer */
+	public static final String OBJECT_NAME = "tsafe:type=Tracing";
+
+	/** Number of recent spans kept by default */
+	public static final int DEFAULT_CAPACITY = 65536;
+
+	private static volatile Tracer defaultTracer = new Tracer(DEFAULT_CAPACITY);
+
+	/** Returns the tracer the stages of TSAFE record to */
+	public static Tracer getDefault() {
+		return defaultTracer;
+	}
+
+	/** Makes the stages of TSAFE record to the given tracer */
+	public static void setDefault(Tracer tracer) {
+		defaultTracer = tracer;
+	}
+
+	private volatile boolean enabled = true;
+
+	/** Time at which the tracer was created, the origin of the exported trace */
+	private final long origin = System.nanoTime();
+
+	/** Duration histogram of each stage, and the stages in the order first seen */
+	private final Map histograms = new ConcurrentHashMap();
+	private final Vector stages = new Vector();
+
+	/** The most recent spans, in a ring */
+	private final String[] spanStages;
+	private final long[] spanStarts, spanDurations, spanThreads;
+	private long spans;
+
+	/** Constructs a tracer that keeps the given number of recent spans */
+	public Tracer(int capacity) {
+		spanStages = new String[capacity];
+		spanStarts = new long[capacity];
+		spanDurations = new long[capacity];
+		spanThreads = new long[capacity];
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/** Starts a span, returning its start time */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/** Ends a span of the stage that started at the given time */
+	public void end(String stage, long start) {
+		if (enabled && start != 0) {
+			record(stage, start, System.nanoTime() - start);
+		}
+	}
+
+	/** Records a span of the stage with the given start time and duration */
+	public void record(String stage, long start, long duration) {
+		getHistogram(stage).record(duration);
+		synchronized (this) {
+			int i = (int) (spans++ % spanStages.length);
+			spanStages[i] = stage;
+			spanStarts[i] = start;
+			spanDurations[i] = duration;
+			spanThreads[i] = Thread.currentThread().getId();
+		}
+	}
+
+	/** Returns the histogram of the durations of a stage, in nanoseconds */
+	public Histogram getHistogram(String stage) {
+		Histogram histogram = (Histogram) histograms.get(stage);
+		if (histogram == null) {
+			synchronized (stages) {
+				histogram = (Histogram) histograms.get(stage);
+				if (histogram == null) {
+					histogram = new Histogram();
+					histograms.put(stage, histogram);
+					stages.add(stage);
+				}
+			}
+		}
+		return histogram;
+	}
+
+	public String getReport() {
+		StringBuffer sb = new StringBuffer("Stage durations, microseconds\n");
+		Object[] names = stages.toArray();
+		for (int i = 0; i < names.length; i++) {
+			Histogram h = getHistogram((String) names[i]);
+			sb.append("  ").append(names[i]).append(": ").append(h.getCount())
+			  .append(" spans; mean ").append(Math.round(h.getMean() / 1000))
+			  .append(", median ").append(h.getPercentile(50) / 1000)
+			  .append(", 90% ").append(h.getPercentile(90) / 1000)
+			  .append(", 99% ").append(h.getPercentile(99) / 1000)
+			  .append(", max ").append(h.getMax() / 1000).append('\n');
+		}
+		return sb.toString();
+	}
+
+	public void exportChromeTrace(String path) throws IOException {
+		exportChromeTrace(new File(path));
+	}
+
+	/**
+	 * Writes the recent spans to the file in the Chrome trace event format,
+	 * as complete events with microsecond timestamps from the creation of
+	 * the tracer
+	 */
+	public void exportChromeTrace(File file) throws IOException {
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+			synchronized (this) {
+				long first = Math.max(0, spans - spanStages.length);
+				for (long n = first; n < spans; n++) {
+					int i = (int) (n % spanStages.length);
+					if (n > first) out.write(",");
+					out.write("\n{\"name\":\"" + spanStages[i]
+							+ "\",\"cat\":\"tsafe\",\"ph\":\"X\",\"pid\":1,\"tid\":"
+							+ spanThreads[i] + ",\"ts\":"
+							+ micros(spanStarts[i] - origin) + ",\"dur\":"
+							+ micros(spanDurations[i]) + "}");
+				}
+			}
+			out.write("\n]}\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Formats nanoseconds as microseconds with three decimals */
+	private static String micros(long nanos) {
+		StringBuffer sb = new StringBuffer();
+		if (nanos < 0) {
+			sb.append('-');
+			nanos = -nanos;
+		}
+		long fraction = nanos % 1000;
+		sb.append(nanos / 1000).append('.');
+		if (fraction < 100) sb.append('0');
+		if (fraction < 10) sb.append('0');
+		return sb.append(fraction).toString();
+	}
+
+	public synchronized void reset() {
+		Object[] names = stages.toArray();
+		for (int i = 0; i < names.length; i++) {
+			getHistogram((String) names[i]).reset();
+		}
+		spans = 0;
+	}
+
+	/**
+	 * Registers the tracer with the platform MBean server
+	 * 
+	 * @throws JMException
+	 *             if the MBean cannot be registered
+	 */
+	public void registerMBean() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				new ObjectName(OBJECT_NAME));
+	}
+}
@@ -0,0 +1,24 @@
+package tsafe.server.metrics;
+
+import java.io.IOException;
+
+/**
+ * The management interface of the tracer
+ */
+public interface TracerMBean {
+
+	/** Returns true if spans are being recorded */
+	boolean isEnabled();
+
+	/** Starts or stops recording spans */
+	void setEnabled(boolean enabled);
+
+	/** Returns the duration percentiles of each stage as text */
+	String getReport();
+
+	/** Writes the recent spans to the file as a Chrome trace */
+	void exportChromeTrace(String path) throws IOException;
+
+	/** Forgets the spans recorded */
+	void reset();
+}
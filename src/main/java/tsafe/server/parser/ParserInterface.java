@@ -20,18 +20,12 @@
 package tsafe.server.parser;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.List;
-import java.util.StringTokenizer;
 import java.util.Vector;
 
-import tsafe.common_datastructures.Airway;
-import tsafe.common_datastructures.Fix;
-import tsafe.common_datastructures.Route;
-import tsafe.common_datastructures.Sid;
-import tsafe.common_datastructures.Star;
 import tsafe.server.database.DatabaseInterface;
 
 /**
@@ -60,6 +54,11 @@ abstract public class ParserInterface implements Runnable {
 	 */
 	private boolean stopped, readerClosed;
 
+	/**
+	 * Records the static data as it is read, if a snapshot is to be written
+	 */
+	private StaticDataSnapshot snapshot;
+
 	/**
 	 * Constructs a feed parser to continually reader from the feedReader and
 	 * update a DatabaseInterface
@@ -82,6 +81,15 @@ abstract public class ParserInterface implements Runnable {
 		(new Thread(this, "Feed Parser")).start();
 	}
 
+	/**
+	 * Parse the feed on the calling thread, until it ends or a stop is
+	 * requested
+	 */
+	public final void parse() {
+		this.feedReader = new BufferedReader(source);
+		run();
+	}
+
 	/**
 	 * Stop parsing the feed
 	 */
@@ -132,6 +140,7 @@ abstract public class ParserInterface implements Runnable {
 		}
 
 		// Stop the parser
+		parsingStopped();
 		try {
 			feedReader.close();
 			readerClosed = true;
@@ -140,6 +149,13 @@ abstract public class ParserInterface implements Runnable {
 		}
 	}
 
+	/**
+	 * Returns the original feed source, which feedReader wraps
+	 */
+	protected Reader getSource() {
+		return source;
+	}
+
 	/**
 	 * Reads from the feed and executes a single update on the database Returns
 	 * true if there are more updates to be executed.
@@ -149,189 +165,75 @@ abstract public class ParserInterface implements Runnable {
 	 */
 	public abstract boolean executeUpdate() throws IOException;
 
+	/**
+	 * Called on the parser thread when parsing stops, before the feed is
+	 * closed.
+	 * 
+	 * This implementation does nothing.
+	 */
+	protected void parsingStopped() {
+	}
+
 	/*
 	 * Methods to read the static data and save it in the data base. They are
 	 * only used once when launching the program.
 	 */
 
-	private void readFixes(Reader reader, DatabaseInterface tsafeDB)
-			throws IOException {
-		BufferedReader input = new BufferedReader(reader);
-		String line = input.readLine();
-
-		while (line != null) {
-			StringTokenizer st = new StringTokenizer(line);
-			tsafeDB.insertFix(parseFix(st));
-			line = input.readLine();
-		}
-	}
-
-	private void readAirways(Reader reader, DatabaseInterface tsafeDB)
-			throws IOException {
-		BufferedReader input = new BufferedReader(reader);
-		String line = input.readLine();
-
-		while (line != null) {
-			StringTokenizer st = new StringTokenizer(line);
-			Airway airway = new Airway(st.nextToken());
-			parseRoute(st, airway, tsafeDB);
-			tsafeDB.insertAirway(airway);
-			line = input.readLine();
-		}
-	}
-
-	private void readSids(Reader reader, DatabaseInterface tsafeDB)
-			throws IOException {
-		BufferedReader input = new BufferedReader(reader);
-		String line = input.readLine();
-
-		while (line != null) {
-			StringTokenizer st = new StringTokenizer(line);
-			String id = st.nextToken();
-			Route basicRoute = parseRoute(st, new Route(), tsafeDB);
-			Sid sid = new Sid(id, basicRoute);
-
-			line = input.readLine();
-			while (line != null && Character.isWhitespace(line.charAt(0))) {
-				st = new StringTokenizer(line);
-				Route transition = parseRoute(st, new Route(), tsafeDB);
-				sid.addTransition(transition);
-				line = input.readLine();
-			}
-
-			tsafeDB.insertSid(sid);
-		}
-	}
-
-	private void readStars(Reader reader, DatabaseInterface tsafeDB)
-			throws IOException {
-		BufferedReader input = new BufferedReader(reader);
-		String line = input.readLine();
-
-		while (line != null) {
-			StringTokenizer st = new StringTokenizer(line);
-			String id = st.nextToken();
-			Route basicRoute = parseRoute(st, new Route(), tsafeDB);
-			Star star = new Star(id, basicRoute);
-
-			line = input.readLine();
-			while (line != null && Character.isWhitespace(line.charAt(0))) {
-				st = new StringTokenizer(line);
-				Route transition = parseRoute(st, new Route(), tsafeDB);
-				star.addTransition(transition);
-				line = input.readLine();
-			}
-
-			tsafeDB.insertStar(star);
-		}
-	}
-
-	private Route parseRoute(StringTokenizer st, Route r,
-			DatabaseInterface tsafeDB) {
-		while (st.hasMoreTokens()) {
-			// intern if possible
-			Fix fix = parseFix(st);
-			Fix interned = tsafeDB.selectFix(fix.getId());
-			if (interned != null)
-				fix = interned;
-			r.addFix(fix);
-		}
-		return r;
-	}
-
-	private Fix parseFix(StringTokenizer st) {
-		String fixId = st.nextToken();
-		double lat = parseLatitude(st.nextToken());
-		double lon = parseLongitude(st.nextToken());
-		return new Fix(fixId, lat, lon);
-	}
-
-	private double parseLatitude(String latitude) {
-		int degrees = Integer.parseInt(latitude.substring(0, 2));
-		int minutes = Integer.parseInt(latitude.substring(3, 5));
-		double seconds = Double.parseDouble(latitude.substring(6, 12));
-		double coord = degrees + (minutes / 60.0) + (seconds / 3600.0);
-
-		char declination = latitude.charAt(12);
-		return declination == 'N' ? coord : -coord;
-	}
-
-	private double parseLongitude(String longitude) {
-		int degrees = Integer.parseInt(longitude.substring(0, 3));
-		int minutes = Integer.parseInt(longitude.substring(4, 6));
-		double seconds = Double.parseDouble(longitude.substring(7, 13));
-		double coord = degrees + (minutes / 60.0) + (seconds / 3600.0);
-
-		char declination = longitude.charAt(13);
-		return declination == 'E' ? coord : -coord;
-	}
-
 	/**
-	 * Calls each method of this class in order to read the files with the
-	 * static data.
+	 * Loads the static data from the snapshot if it was compiled from the
+	 * current data files. Otherwise, reads the data files and compiles a new
+	 * snapshot of them.
 	 * 
 	 * @param dataFiles
 	 *            String array contains the path name of each file that stores
 	 *            the static data.
+	 * @param snapshotFile
+	 *            The file of the snapshot.
 	 * @return List of error messages.
 	 */
-	public final List readStaticData(String[] dataFiles) {
-		java.util.List errorMessages = new Vector();
-
-		// Read fixes into database.
-		try {
-			Reader reader = new FileReader(dataFiles[0]);
-			this.readFixes(reader, tsafeDB);
-		} catch (java.io.IOException e) {
-			errorMessages.add("Unable to read fix file.");
-			return errorMessages;
-		}
-
-		// Read airports into database.
-		try {
-			Reader reader = new FileReader(dataFiles[1]);
-			this.readFixes(reader, tsafeDB);
-		} catch (java.io.IOException e) {	
-			errorMessages.add("Unable to read airport file.");
-			return errorMessages;
-		}
-
-		// Read navaids into database.
+	public final List readStaticData(String[] dataFiles, File snapshotFile) {
+		long[] checksums;
 		try {
-			Reader reader = new FileReader(dataFiles[2]);
-			this.readFixes(reader, tsafeDB);
-		} catch (java.io.IOException e) {	
-			errorMessages.add("Unable to read navaid file.");
-			return errorMessages;
+			checksums = StaticDataSnapshot.checksums(dataFiles);
+		} catch (IOException e) {
+			// Let the data files report the error
+			return readStaticData(dataFiles);
 		}
-
-		// Read airways into database.
-		try {
-			Reader reader = new FileReader(dataFiles[3]);
-			this.readAirways(reader, tsafeDB);
-		} catch (java.io.IOException e) {
-			errorMessages.add("Unable to read airway file.");
-			return errorMessages;
+		if (StaticDataSnapshot.load(snapshotFile, checksums, tsafeDB)) {
+			return new Vector();
 		}
 
-		// Read airways into database.
+		this.snapshot = new StaticDataSnapshot(tsafeDB.getFixTable());
 		try {
-			Reader reader = new FileReader(dataFiles[4]);
-			this.readSids(reader, tsafeDB);
-		} catch (java.io.IOException e) {
-			errorMessages.add("Unable to read sid file.");
+			List errorMessages = readStaticData(dataFiles);
+			if (errorMessages.isEmpty()) {
+				this.snapshot.write(snapshotFile, checksums);
+			}
 			return errorMessages;
+		} catch (IOException e) {
+			System.err.println("Unable to write the static data snapshot "
+					+ snapshotFile + ": " + e);
+			return new Vector();
+		} finally {
+			this.snapshot = null;
 		}
+	}
 
-		// Read stars into database.
-		try {
-			Reader reader = new FileReader(dataFiles[5]);
-			this.readStars(reader, tsafeDB);
-		} catch (java.io.IOException e) {
-			errorMessages.add("Unable to read star file.");
-			return errorMessages;
-		}
+	/**
+	 * Reads the files with the static data, several at a time, and prints
+	 * how long each took.
+	 * 
+	 * @param dataFiles
+	 *            String array contains the path name of each file that stores
+	 *            the static data.
+	 * @return List of the error messages of all the files.
+	 * @see StaticDataLoader
+	 */
+	public final List readStaticData(String[] dataFiles) {
+		StaticDataLoader loader = new StaticDataLoader(tsafeDB);
+		loader.setSnapshot(this.snapshot);
+		List errorMessages = loader.load(dataFiles);
+		System.out.println(loader.timingReport());
 		return errorMessages;
 	}
 }
-
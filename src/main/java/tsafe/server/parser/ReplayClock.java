@@ -0,0 +1,182 @@
+package tsafe.server.parser;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Vector;
+
+/**
+ * Paces the replay of a recorded feed by the time stamps of its messages,
+ * and fires a computation cycle at every interval of simulated time.
+ *
+ * The parser calls advanceTo with the time of each message before applying
+ * it. At speed 1 the replay takes as long as the recording did, at speed N
+ * it is N times faster, and at MAX_SPEED it does not wait at all. Cycles
+ * fire at the same simulated times, between the same messages, whatever
+ * the speed, so a replay is reproducible. Like a Swing Timer, the clock
+ * notifies its ActionListeners; the event's getWhen is the simulated time
+ * of the cycle. Listeners run on the parser thread.
+ */
+public class ReplayClock {
+
+	/** Speed at which the replay runs as fast as it can be parsed */
+	public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+	/** Replay speed, as a multiple of real time */
+	private final double speed;
+
+	/** Simulated time between successive cycles */
+	private final long interval;
+
+	private final Vector listeners = new Vector();
+
+	/** Simulated and wall clock (nanosecond) time at which the replay started */
+	private long simulatedStart, wallStart;
+
+	/** Latest simulated time reached, and time of the next cycle */
+	private long simulatedTime, nextCycle;
+
+	private boolean started;
+
+	/** Number of cycles fired, and their total and longest duration */
+	private volatile long cycles, totalCycleNanos, maxCycleNanos;
+
+	/**
+	 * Constructs a clock that replays at speed times real time, and fires a
+	 * cycle every interval milliseconds of simulated time.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if speed or interval is not positive
+	 */
+	public ReplayClock(double speed, long interval) {
+		if (!(speed > 0) || interval <= 0) {
+			throw new IllegalArgumentException("speed and interval must be positive");
+		}
+		this.speed = speed;
+		this.interval = interval;
+	}
+
+	/** Adds a listener that is notified of each cycle */
+	public void addActionListener(ActionListener listener) {
+		listeners.add(listener);
+	}
+
+	/** Removes a cycle listener */
+	public void removeActionListener(ActionListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns true if advancing to a message of this time would wait or fire
+	 * a cycle, that is, if the message may not be applied together with the
+	 * messages before it.
+	 */
+	public synchronized boolean isDue(long time) {
+		if (!started || time >= nextCycle) {
+			return true;
+		}
+		return speed != MAX_SPEED && time > simulatedTime;
+	}
+
+	/**
+	 * Advances the clock to the time of the next message, first firing the
+	 * cycles of the intervals that end before it. Waits until the message is
+	 * due at this speed. Messages that go back in time do not move the
+	 * clock.
+	 */
+	public void advanceTo(long time) {
+		synchronized (this) {
+			if (!started) {
+				started = true;
+				simulatedStart = simulatedTime = time;
+				wallStart = System.nanoTime();
+				nextCycle = time + interval;
+				return;
+			}
+		}
+		while (time >= nextCycle) {
+			waitFor(nextCycle);
+			fireCycle(nextCycle);
+			synchronized (this) {
+				nextCycle += interval;
+			}
+		}
+		if (time > simulatedTime) {
+			waitFor(time);
+			synchronized (this) {
+				simulatedTime = time;
+			}
+		}
+	}
+
+	/**
+	 * Fires the cycle of the last, partial interval of the replay, if any
+	 * message was replayed.
+	 */
+	public void finish() {
+		if (started) {
+			fireCycle(simulatedTime);
+		}
+	}
+
+	/** Sleeps until the simulated time is due at this speed */
+	private void waitFor(long time) {
+		if (speed == MAX_SPEED) {
+			return;
+		}
+		long due = wallStart + (long) ((time - simulatedStart) * 1000000 / speed);
+		long delay = due - System.nanoTime();
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void fireCycle(long time) {
+		long start = System.nanoTime();
+		ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED,
+				null, time, 0);
+		Object[] targets = listeners.toArray();
+		for (int i = 0; i < targets.length; i++) {
+			((ActionListener) targets[i]).actionPerformed(event);
+		}
+		long elapsed = System.nanoTime() - start;
+		synchronized (this) {
+			cycles++;
+			totalCycleNanos += elapsed;
+			maxCycleNanos = Math.max(maxCycleNanos, elapsed);
+		}
+	}
+
+	/** Returns the replay speed, as a multiple of real time */
+	public double getSpeed() {
+		return speed;
+	}
+
+	/** Returns the simulated time between cycles, in milliseconds */
+	public long getInterval() {
+		return interval;
+	}
+
+	/** Returns the latest simulated time the replay has reached */
+	public synchronized long getSimulatedTime() {
+		return simulatedTime;
+	}
+
+	/** Returns the number of cycles fired */
+	public long getCycleCount() {
+		return cycles;
+	}
+
+	/** Returns the total time spent in the cycles, in nanoseconds */
+	public long getTotalCycleNanos() {
+		return totalCycleNanos;
+	}
+
+	/** Returns the longest time spent in a cycle, in nanoseconds */
+	public long getMaxCycleNanos() {
+		return maxCycleNanos;
+	}
+}
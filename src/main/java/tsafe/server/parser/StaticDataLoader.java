@@ -0,0 +1,452 @@
+package tsafe.server.parser;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import tsafe.common_datastructures.Airway;
+import tsafe.common_datastructures.FixTable;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.Sid;
+import tsafe.common_datastructures.Star;
+import tsafe.server.database.DatabaseInterface;
+
+/**
+ * Reads the six files of static data into the database, three at a time.
+ *
+ * The fix, airport and navaid files are parsed concurrently, each into
+ * columns of its own, and merged into the fix table in that order. The
+ * airway, sid and star files are then parsed concurrently, their fixes
+ * resolved to handles in the fix table without going through the database.
+ * Each phase is inserted into the database in one batch.
+ *
+ * A file that cannot be read, or that has a bad line, adds nothing to the
+ * database. The errors of all the files are reported together.
+ */
+public class StaticDataLoader {
+
+	/**
+	 * Indexes of the files in the data files array
+	 */
+	public static final int FIXES = 0, AIRPORTS = 1, NAVAIDS = 2,
+			AIRWAYS = 3, SIDS = 4, STARS = 5;
+
+	/**
+	 * What each file holds, for the error messages and the timing report
+	 */
+	private static final String[] KINDS = { "fix", "airport", "navaid",
+			"airway", "sid", "star" };
+
+	/**
+	 * The database the data is read into
+	 */
+	private DatabaseInterface tsafeDB;
+
+	/**
+	 * Records the data read, if a snapshot is to be written
+	 */
+	private StaticDataSnapshot snapshot;
+
+	/**
+	 * The fix table of the database. The fix of a later file replaces an
+	 * earlier fix with the same id.
+	 */
+	private FixTable fixTable;
+
+	/**
+	 * Time taken to parse each file, in nanoseconds
+	 */
+	private long[] parseNanos = new long[KINDS.length];
+
+	private long totalNanos;
+
+	public StaticDataLoader(DatabaseInterface tsafeDB) {
+		this.tsafeDB = tsafeDB;
+		this.fixTable = tsafeDB.getFixTable();
+	}
+
+	void setSnapshot(StaticDataSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Reads the data files into the database
+	 *
+	 * @param dataFiles
+	 *            String array contains the path name of each file that stores
+	 *            the static data.
+	 * @return List of the error messages of all the files.
+	 */
+	public List load(final String[] dataFiles) {
+		long start = System.nanoTime();
+		List errorMessages = new Vector();
+		ExecutorService executor = Executors.newFixedThreadPool(3,
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Static Data Loader");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		try {
+			// Fixes, airports and navaids
+			Future[] fixFiles = new Future[3];
+			for (int i = FIXES; i <= NAVAIDS; i++) {
+				final int file = i;
+				fixFiles[i] = executor.submit(new Callable() {
+					public Object call() throws IOException {
+						return readFixes(dataFiles, file);
+					}
+				});
+			}
+			final FixColumns[] fixes = (FixColumns[]) results(fixFiles,
+					FIXES, new FixColumns[3], errorMessages);
+			this.tsafeDB.executeBatch(new Runnable() {
+				public void run() {
+					for (int i = 0; i < fixes.length; i++) {
+						if (fixes[i] != null) {
+							insertFixes(fixes[i]);
+						}
+					}
+				}
+			});
+
+			// Airways, sids and stars, against the complete fix table
+			Future[] routeFiles = new Future[3];
+			routeFiles[0] = executor.submit(new Callable() {
+				public Object call() throws IOException {
+					return readAirways(dataFiles, AIRWAYS);
+				}
+			});
+			routeFiles[1] = executor.submit(new Callable() {
+				public Object call() throws IOException {
+					return readProcedures(dataFiles, SIDS);
+				}
+			});
+			routeFiles[2] = executor.submit(new Callable() {
+				public Object call() throws IOException {
+					return readProcedures(dataFiles, STARS);
+				}
+			});
+			final List[] routes = (List[]) results(routeFiles, AIRWAYS,
+					new List[3], errorMessages);
+			this.tsafeDB.executeBatch(new Runnable() {
+				public void run() {
+					if (routes[0] != null) {
+						insertAirways(routes[0]);
+					}
+					if (routes[1] != null) {
+						insertProcedures(routes[1], true);
+					}
+					if (routes[2] != null) {
+						insertProcedures(routes[2], false);
+					}
+				}
+			});
+		} finally {
+			executor.shutdown();
+		}
+		this.totalNanos = System.nanoTime() - start;
+		return errorMessages;
+	}
+
+	/**
+	 * Waits for the files read by the futures, and returns what they read.
+	 * The entry of a file that failed is left null, and its error added to
+	 * the messages.
+	 */
+	private Object[] results(Future[] futures, int firstFile, Object[] results,
+			List errorMessages) {
+		for (int i = 0; i < futures.length; i++) {
+			String kind = KINDS[firstFile + i];
+			try {
+				results[i] = futures[i].get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					errorMessages.add("Unable to read " + kind + " file.");
+				} else {
+					errorMessages.add("Bad " + kind + " file: "
+							+ cause.getMessage());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				errorMessages.add("Interrupted while reading " + kind
+						+ " file.");
+			}
+		}
+		return results;
+	}
+
+	/*
+	 * Parsing, on the threads of the loader
+	 */
+
+	private FixColumns readFixes(String[] dataFiles, int file)
+			throws IOException {
+		long start = System.nanoTime();
+		FixColumns fixes = new FixColumns();
+		BufferedReader input = new BufferedReader(new FileReader(
+				dataFiles[file]));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = input.readLine()) != null) {
+				lineNumber++;
+				try {
+					StringTokenizer st = new StringTokenizer(line);
+					fixes.add(st.nextToken(), parseLatitude(st.nextToken()),
+							parseLongitude(st.nextToken()));
+				} catch (RuntimeException e) {
+					throw badLine(lineNumber, line, e);
+				}
+			}
+		} finally {
+			input.close();
+		}
+		this.parseNanos[file] = System.nanoTime() - start;
+		return fixes;
+	}
+
+	private List readAirways(String[] dataFiles, int file)
+			throws IOException {
+		long start = System.nanoTime();
+		List airways = new ArrayList();
+		BufferedReader input = new BufferedReader(new FileReader(
+				dataFiles[file]));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = input.readLine()) != null) {
+				lineNumber++;
+				try {
+					StringTokenizer st = new StringTokenizer(line);
+					String id = st.nextToken();
+					airways.add(new Airway(id, this.fixTable, parseRoute(st)));
+				} catch (RuntimeException e) {
+					throw badLine(lineNumber, line, e);
+				}
+			}
+		} finally {
+			input.close();
+		}
+		// Index where the airways cross, for the route parser
+		Airway.indexCrossings(airways);
+		this.parseNanos[file] = System.nanoTime() - start;
+		return airways;
+	}
+
+	/**
+	 * Reads the sids or the stars of a file, each line of a basic route
+	 * followed by indented lines of its transitions. Each is returned as an
+	 * array of the sid or star, its basic route and its transitions.
+	 */
+	private List readProcedures(String[] dataFiles, int file)
+			throws IOException {
+		long start = System.nanoTime();
+		boolean sids = file == SIDS;
+		List procedures = new ArrayList();
+		BufferedReader input = new BufferedReader(new FileReader(
+				dataFiles[file]));
+		try {
+			String line = input.readLine();
+			int lineNumber = 1;
+			while (line != null) {
+				try {
+					StringTokenizer st = new StringTokenizer(line);
+					String id = st.nextToken();
+					Route basicRoute = new Route(this.fixTable, parseRoute(st));
+					Object procedure = sids ? (Object) new Sid(id, basicRoute)
+							: new Star(id, basicRoute);
+					List transitions = new ArrayList();
+
+					line = input.readLine();
+					lineNumber++;
+					while (line != null && line.length() > 0
+							&& Character.isWhitespace(line.charAt(0))) {
+						Route transition = new Route(this.fixTable,
+								parseRoute(new StringTokenizer(line)));
+						if (sids) {
+							((Sid) procedure).addTransition(transition);
+						} else {
+							((Star) procedure).addTransition(transition);
+						}
+						transitions.add(transition);
+						line = input.readLine();
+						lineNumber++;
+					}
+
+					procedures.add(new Object[] { procedure, basicRoute,
+							transitions });
+				} catch (RuntimeException e) {
+					throw badLine(lineNumber, line, e);
+				}
+			}
+		} finally {
+			input.close();
+		}
+		this.parseNanos[file] = System.nanoTime() - start;
+		return procedures;
+	}
+
+	/**
+	 * Returns the handles of the fixes of a route. A fix of the fix table is
+	 * referenced by its handle, any other is added to the table unindexed.
+	 */
+	private int[] parseRoute(StringTokenizer st) {
+		int[] handles = new int[st.countTokens() / 3];
+		int count = 0;
+		while (st.hasMoreTokens()) {
+			String fixId = st.nextToken();
+			double lat = parseLatitude(st.nextToken());
+			double lon = parseLongitude(st.nextToken());
+			int handle = this.fixTable.handleOf(fixId);
+			if (handle < 0)
+				handle = this.fixTable.append(fixId, lat, lon);
+			handles[count++] = handle;
+		}
+		return handles;
+	}
+
+	private double parseLatitude(String latitude) {
+		int degrees = Integer.parseInt(latitude.substring(0, 2));
+		int minutes = Integer.parseInt(latitude.substring(3, 5));
+		double seconds = Double.parseDouble(latitude.substring(6, 12));
+		double coord = degrees + (minutes / 60.0) + (seconds / 3600.0);
+
+		char declination = latitude.charAt(12);
+		return declination == 'N' ? coord : -coord;
+	}
+
+	private double parseLongitude(String longitude) {
+		int degrees = Integer.parseInt(longitude.substring(0, 3));
+		int minutes = Integer.parseInt(longitude.substring(4, 6));
+		double seconds = Double.parseDouble(longitude.substring(7, 13));
+		double coord = degrees + (minutes / 60.0) + (seconds / 3600.0);
+
+		char declination = longitude.charAt(13);
+		return declination == 'E' ? coord : -coord;
+	}
+
+	private static RuntimeException badLine(int lineNumber, String line,
+			RuntimeException cause) {
+		return new IllegalArgumentException("line " + lineNumber + " \""
+				+ line + "\": " + cause);
+	}
+
+	/*
+	 * Merging, in the batches of the calling thread
+	 */
+
+	private void insertFixes(FixColumns fixes) {
+		for (int i = 0; i < fixes.size; i++) {
+			this.fixTable.put(fixes.ids[i], fixes.lats[i], fixes.lons[i]);
+		}
+	}
+
+	/**
+	 * The fixes of a file, read by column before they are merged into the
+	 * fix table
+	 */
+	private static class FixColumns {
+
+		String[] ids = new String[1024];
+
+		double[] lats = new double[1024];
+
+		double[] lons = new double[1024];
+
+		int size;
+
+		void add(String id, double lat, double lon) {
+			if (size == ids.length) {
+				String[] newIds = new String[size * 2];
+				double[] newLats = new double[size * 2];
+				double[] newLons = new double[size * 2];
+				System.arraycopy(ids, 0, newIds, 0, size);
+				System.arraycopy(lats, 0, newLats, 0, size);
+				System.arraycopy(lons, 0, newLons, 0, size);
+				ids = newIds;
+				lats = newLats;
+				lons = newLons;
+			}
+			ids[size] = id;
+			lats[size] = lat;
+			lons[size] = lon;
+			size++;
+		}
+	}
+
+	private void insertAirways(List airways) {
+		Iterator airwayIter = airways.iterator();
+		while (airwayIter.hasNext()) {
+			Airway airway = (Airway) airwayIter.next();
+			this.tsafeDB.insertAirway(airway);
+			if (this.snapshot != null)
+				this.snapshot.airwayRead(airway);
+		}
+	}
+
+	private void insertProcedures(List procedures, boolean sids) {
+		Iterator procIter = procedures.iterator();
+		while (procIter.hasNext()) {
+			Object[] procedure = (Object[]) procIter.next();
+			Route basicRoute = (Route) procedure[1];
+			List transitions = (List) procedure[2];
+			if (sids) {
+				Sid sid = (Sid) procedure[0];
+				this.tsafeDB.insertSid(sid);
+				if (this.snapshot != null)
+					this.snapshot.sidRead(sid.getId(), basicRoute, transitions);
+			} else {
+				Star star = (Star) procedure[0];
+				this.tsafeDB.insertStar(star);
+				if (this.snapshot != null)
+					this.snapshot.starRead(star.getId(), basicRoute,
+							transitions);
+			}
+		}
+	}
+
+	/**
+	 * @return The time taken to parse the file at the index, in
+	 *         milliseconds, or 0 if it was not parsed
+	 */
+	public long getParseMillis(int file) {
+		return this.parseNanos[file] / 1000000;
+	}
+
+	/**
+	 * @return The time taken to load all the files, in milliseconds
+	 */
+	public long getTotalMillis() {
+		return this.totalNanos / 1000000;
+	}
+
+	/**
+	 * @return The time taken by the files, on one line
+	 */
+	public String timingReport() {
+		StringBuffer sb = new StringBuffer("Read static data in ");
+		sb.append(getTotalMillis()).append(" ms (");
+		for (int i = 0; i < KINDS.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(KINDS[i]).append(" file ").append(getParseMillis(i))
+					.append(" ms");
+		}
+		return sb.append(')').toString();
+	}
+}
@@ -0,0 +1,543 @@
+package tsafe.server.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import tsafe.common_datastructures.Airway;
+import tsafe.common_datastructures.FixTable;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.Sid;
+import tsafe.common_datastructures.Star;
+import tsafe.server.database.DatabaseInterface;
+
+/**
+ * A compiled copy of the static data, which loads in a fraction of the time
+ * it takes to parse the data files.
+ *
+ * While the data files are parsed, the snapshot records the airways, sids
+ * and stars read, and is then written with the fix table and the checksums
+ * of the files. At the next launch, it is memory mapped and loaded instead
+ * of the files if their checksums still match, and the checksum of the
+ * snapshot itself shows it is intact.
+ *
+ * The snapshot holds a table of the distinct strings, the columns of the fix
+ * table as primitive arrays, and the routes as arrays of handles into the
+ * fix table, so that a fix shared by several routes is still shared once
+ * loaded.
+ */
+public class StaticDataSnapshot {
+
+	private static final int MAGIC = 0x54534644;
+
+	private static final int VERSION = 3;
+
+	/**
+	 * The table of the fixes the routes read reference
+	 */
+	private FixTable fixTable;
+
+	private List airways = new ArrayList();
+
+	/**
+	 * The sids and stars read, as Procedures
+	 */
+	private List sids = new ArrayList();
+
+	private List stars = new ArrayList();
+
+	/**
+	 * A sid or a star as read from its data file
+	 */
+	private static class Procedure {
+
+		String id;
+
+		Route basic;
+
+		List transitions;
+
+		Procedure(String id, Route basic, List transitions) {
+			this.id = id;
+			this.basic = basic;
+			this.transitions = transitions;
+		}
+	}
+
+	/**
+	 * Constructs a snapshot of the data read into the fix table
+	 */
+	StaticDataSnapshot(FixTable fixTable) {
+		this.fixTable = fixTable;
+	}
+
+	/*
+	 * Recording, while the data files are parsed
+	 */
+
+	void airwayRead(Airway airway) {
+		this.airways.add(airway);
+	}
+
+	void sidRead(String id, Route basic, List transitions) {
+		this.sids.add(new Procedure(id, basic, transitions));
+	}
+
+	void starRead(String id, Route basic, List transitions) {
+		this.stars.add(new Procedure(id, basic, transitions));
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of each data file
+	 *
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	public static long[] checksums(String[] dataFiles) throws IOException {
+		long[] checksums = new long[dataFiles.length];
+		byte[] buffer = new byte[65536];
+		for (int i = 0; i < dataFiles.length; i++) {
+			CRC32 crc = new CRC32();
+			InputStream in = new FileInputStream(dataFiles[i]);
+			try {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					crc.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+			checksums[i] = crc.getValue();
+		}
+		return checksums;
+	}
+
+	//*********************************************
+
+	/**
+	 * Writes the snapshot of the data files with the given checksums. The
+	 * snapshot is written to a new temporary file next to the file and
+	 * moved over it, so that a launch never maps a partly written snapshot.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a route read does not reference its fixes in the fix
+	 *             table
+	 */
+	public void write(File file, long[] checksums) throws IOException {
+		// Number the distinct strings
+		int fixCount = this.fixTable.size();
+		Map stringIndexes = new HashMap();
+		List stringTable = new ArrayList();
+
+		for (int i = 0; i < fixCount; i++) {
+			index(this.fixTable.getId(i), stringIndexes, stringTable);
+		}
+		Iterator airwayIter = this.airways.iterator();
+		while (airwayIter.hasNext()) {
+			index(((Airway) airwayIter.next()).getId(), stringIndexes,
+					stringTable);
+		}
+		indexIds(this.sids, stringIndexes, stringTable);
+		indexIds(this.stars, stringIndexes, stringTable);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 20);
+		DataOutputStream out = new DataOutputStream(body);
+		try {
+			// String table: the lengths, then the characters of all strings
+			out.writeInt(stringTable.size());
+			int chars = 0;
+			Iterator stringIter = stringTable.iterator();
+			while (stringIter.hasNext()) {
+				String s = (String) stringIter.next();
+				out.writeInt(s.length());
+				chars += s.length();
+			}
+			out.writeInt(chars);
+			stringIter = stringTable.iterator();
+			while (stringIter.hasNext()) {
+				out.writeChars((String) stringIter.next());
+			}
+
+			// Fix table, one column at a time, then the indexed handles
+			out.writeInt(fixCount);
+			for (int i = 0; i < fixCount; i++) {
+				out.writeInt(indexOf(this.fixTable.getId(i), stringIndexes));
+			}
+			for (int i = 0; i < fixCount; i++) {
+				out.writeDouble(this.fixTable.getLatitude(i));
+			}
+			for (int i = 0; i < fixCount; i++) {
+				out.writeDouble(this.fixTable.getLongitude(i));
+			}
+			List indexed = new ArrayList();
+			for (int i = 0; i < fixCount; i++) {
+				if (this.fixTable.isIndexed(i)) {
+					indexed.add(Integer.valueOf(i));
+				}
+			}
+			out.writeInt(indexed.size());
+			Iterator indexedIter = indexed.iterator();
+			while (indexedIter.hasNext()) {
+				out.writeInt(((Integer) indexedIter.next()).intValue());
+			}
+
+			// Airways, sids and stars
+			out.writeInt(this.airways.size());
+			airwayIter = this.airways.iterator();
+			while (airwayIter.hasNext()) {
+				Airway airway = (Airway) airwayIter.next();
+				out.writeInt(indexOf(airway.getId(), stringIndexes));
+				writeRoute(out, airway, fixCount);
+			}
+			writeProcedures(out, this.sids, fixCount, stringIndexes);
+			writeProcedures(out, this.stars, fixCount, stringIndexes);
+		} finally {
+			out.close();
+		}
+
+		// Header: the checksums of the data files, then the length and the
+		// checksum of the body
+		CRC32 crc = new CRC32();
+		crc.update(body.toByteArray(), 0, body.size());
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to create " + dir);
+		}
+		File temp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			out = new DataOutputStream(new FileOutputStream(temp));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(checksums.length);
+				for (int i = 0; i < checksums.length; i++) {
+					out.writeLong(checksums[i]);
+				}
+				out.writeInt(body.size());
+				out.writeLong(crc.getValue());
+				body.writeTo(out);
+			} finally {
+				out.close();
+			}
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static void index(Object o, Map indexes, List table) {
+		if (!indexes.containsKey(o)) {
+			indexes.put(o, Integer.valueOf(table.size()));
+			table.add(o);
+		}
+	}
+
+	private static int indexOf(Object o, Map indexes) {
+		return ((Integer) indexes.get(o)).intValue();
+	}
+
+	private static void indexIds(List procedures, Map stringIndexes,
+			List stringTable) {
+		Iterator procIter = procedures.iterator();
+		while (procIter.hasNext()) {
+			index(((Procedure) procIter.next()).id, stringIndexes, stringTable);
+		}
+	}
+
+	private void writeRoute(DataOutputStream out, Route route, int fixCount)
+			throws IOException {
+		int[] handles = route.fixHandles();
+		if (route.getFixTable() != this.fixTable) {
+			throw new IllegalArgumentException("route " + route
+					+ " is not in the fix table");
+		}
+		out.writeInt(handles.length);
+		for (int i = 0; i < handles.length; i++) {
+			if (handles[i] >= fixCount) {
+				throw new IllegalArgumentException("route " + route
+						+ " is not in the fix table");
+			}
+			out.writeInt(handles[i]);
+		}
+	}
+
+	private void writeProcedures(DataOutputStream out, List procedures,
+			int fixCount, Map stringIndexes) throws IOException {
+		out.writeInt(procedures.size());
+		Iterator procIter = procedures.iterator();
+		while (procIter.hasNext()) {
+			Procedure procedure = (Procedure) procIter.next();
+			out.writeInt(indexOf(procedure.id, stringIndexes));
+			writeRoute(out, procedure.basic, fixCount);
+			out.writeInt(procedure.transitions.size());
+			Iterator transIter = procedure.transitions.iterator();
+			while (transIter.hasNext()) {
+				writeRoute(out, (Route) transIter.next(), fixCount);
+			}
+		}
+	}
+
+	//*********************************************
+
+	/**
+	 * Loads the snapshot into the database, if it was written from data
+	 * files with the given checksums and its body is intact. Nothing is
+	 * inserted unless the whole snapshot could be read.
+	 *
+	 * @return True if the snapshot was loaded, false if it is missing, stale
+	 *         or unreadable
+	 */
+	public static boolean load(File file, long[] checksums,
+			final DatabaseInterface tsafeDB) {
+		if (!file.isFile()) {
+			return false;
+		}
+
+		final FixTable fixTable = tsafeDB.getFixTable();
+		final String[] fixIds;
+		final double[] lats;
+		final double[] lons;
+		final int[] indexes;
+		final String[] airwayIds;
+		final int[][] airwayRoutes;
+		final Object[] sidData;
+		final Object[] starData;
+		try {
+			ByteBuffer in = map(file);
+			if (in.getInt() != MAGIC || in.getInt() != VERSION
+					|| in.getInt() != checksums.length) {
+				return false;
+			}
+			for (int i = 0; i < checksums.length; i++) {
+				if (in.getLong() != checksums[i]) {
+					return false;
+				}
+			}
+			if (in.getInt() != in.remaining() - 8) {
+				System.err.println("Truncated static data snapshot " + file);
+				return false;
+			}
+			long bodyChecksum = in.getLong();
+			CRC32 crc = new CRC32();
+			crc.update(in.duplicate());
+			if (crc.getValue() != bodyChecksum) {
+				System.err.println("Corrupt static data snapshot " + file);
+				return false;
+			}
+
+			String[] strings = new String[readCount(in, 4)];
+			int[] lengths = new int[strings.length];
+			in.asIntBuffer().get(lengths);
+			in.position(in.position() + lengths.length * 4);
+			char[] chars = new char[readCount(in, 2)];
+			in.asCharBuffer().get(chars);
+			in.position(in.position() + chars.length * 2);
+			for (int i = 0, offset = 0; i < strings.length; i++) {
+				strings[i] = new String(chars, offset, lengths[i]);
+				offset += lengths[i];
+			}
+
+			int[] names = new int[readCount(in, 20)];
+			lats = new double[names.length];
+			lons = new double[names.length];
+			in.asIntBuffer().get(names);
+			in.position(in.position() + names.length * 4);
+			in.asDoubleBuffer().get(lats);
+			in.position(in.position() + lats.length * 8);
+			in.asDoubleBuffer().get(lons);
+			in.position(in.position() + lons.length * 8);
+			indexes = readHandles(in, names.length);
+			fixIds = new String[names.length];
+			for (int i = 0; i < names.length; i++) {
+				fixIds[i] = strings[names[i]];
+			}
+
+			airwayIds = new String[readCount(in, 8)];
+			airwayRoutes = new int[airwayIds.length][];
+			for (int i = 0; i < airwayIds.length; i++) {
+				airwayIds[i] = strings[in.getInt()];
+				airwayRoutes[i] = readHandles(in, names.length);
+			}
+			sidData = readProcedures(in, strings, names.length);
+			starData = readProcedures(in, strings, names.length);
+
+			// Build the routes once against a table of the snapshot's own
+			// fixes, so that a transition that does not join its procedure
+			// fails here rather than after the fixes are in the database
+			FixTable snapshotTable = new FixTable(fixIds.length);
+			buildRoutes(snapshotTable, appendFixes(snapshotTable, fixIds,
+					lats, lons), airwayIds, airwayRoutes, sidData, starData);
+		} catch (IOException e) {
+			System.err.println("Unable to read " + file + ": " + e);
+			return false;
+		} catch (RuntimeException e) {
+			System.err.println("Corrupt static data snapshot " + file + ": "
+					+ e);
+			return false;
+		}
+
+		tsafeDB.executeBatch(new Runnable() {
+			public void run() {
+				// A fix table that is not empty gives the fixes other handles
+				int[] handles = appendFixes(fixTable, fixIds, lats, lons);
+				for (int i = 0; i < indexes.length; i++) {
+					fixTable.index(handles[indexes[i]]);
+				}
+				Object[] routes = buildRoutes(fixTable, handles, airwayIds,
+						airwayRoutes, sidData, starData);
+				Airway[] airways = (Airway[]) routes[0];
+				for (int i = 0; i < airways.length; i++) {
+					tsafeDB.insertAirway(airways[i]);
+				}
+				Sid[] sids = (Sid[]) routes[1];
+				for (int i = 0; i < sids.length; i++) {
+					tsafeDB.insertSid(sids[i]);
+				}
+				Star[] stars = (Star[]) routes[2];
+				for (int i = 0; i < stars.length; i++) {
+					tsafeDB.insertStar(stars[i]);
+				}
+			}
+		});
+		return true;
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+					.size());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the length of an array, checking that the rest of the snapshot
+	 * holds that many elements of at least the given size
+	 */
+	private static int readCount(ByteBuffer in, int elementSize) {
+		int count = in.getInt();
+		if (count < 0 || count > in.remaining() / elementSize) {
+			throw new IndexOutOfBoundsException("count " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Reads an array of handles, checking that each is in the fix table of
+	 * the snapshot
+	 */
+	private static int[] readHandles(ByteBuffer in, int fixCount) {
+		int[] handles = new int[readCount(in, 4)];
+		in.asIntBuffer().get(handles);
+		in.position(in.position() + handles.length * 4);
+		for (int i = 0; i < handles.length; i++) {
+			if (handles[i] < 0 || handles[i] >= fixCount) {
+				throw new IndexOutOfBoundsException("fix " + handles[i]);
+			}
+		}
+		return handles;
+	}
+
+	/**
+	 * Reads the sids or the stars, as an array of their ids and an array of
+	 * their routes, the basic route first
+	 */
+	private static Object[] readProcedures(ByteBuffer in, String[] strings,
+			int fixCount) {
+		String[] ids = new String[readCount(in, 12)];
+		int[][][] routes = new int[ids.length][][];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = strings[in.getInt()];
+			int[] basic = readHandles(in, fixCount);
+			routes[i] = new int[readCount(in, 4) + 1][];
+			routes[i][0] = basic;
+			for (int j = 1; j < routes[i].length; j++) {
+				routes[i][j] = readHandles(in, fixCount);
+			}
+		}
+		return new Object[] { ids, routes };
+	}
+
+	/**
+	 * Returns the handles in the fix table of the handles of the snapshot
+	 */
+	/**
+	 * Appends the fixes to the table, unindexed
+	 *
+	 * @return The handle of each fix in the table
+	 */
+	private static int[] appendFixes(FixTable table, String[] ids,
+			double[] lats, double[] lons) {
+		int[] handles = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			handles[i] = table.append(ids[i], lats[i], lons[i]);
+		}
+		return handles;
+	}
+
+	/**
+	 * Builds the airways, SIDs and STARs of the snapshot over the fixes at
+	 * the given handles in the table
+	 *
+	 * @return The airways, SIDs and STARs
+	 */
+	private static Object[] buildRoutes(FixTable table, int[] handles,
+			String[] airwayIds, int[][] airwayRoutes, Object[] sidData,
+			Object[] starData) {
+		Airway[] airways = new Airway[airwayIds.length];
+		for (int i = 0; i < airways.length; i++) {
+			airways[i] = new Airway(airwayIds[i], table, translate(
+					airwayRoutes[i], handles));
+		}
+		Airway.indexCrossings(Arrays.asList(airways));
+		Sid[] sids = new Sid[((String[]) sidData[0]).length];
+		for (int i = 0; i < sids.length; i++) {
+			int[][] routes = ((int[][][]) sidData[1])[i];
+			sids[i] = new Sid(((String[]) sidData[0])[i], new Route(table,
+					translate(routes[0], handles)));
+			for (int j = 1; j < routes.length; j++) {
+				sids[i].addTransition(new Route(table, translate(routes[j],
+						handles)));
+			}
+		}
+		Star[] stars = new Star[((String[]) starData[0]).length];
+		for (int i = 0; i < stars.length; i++) {
+			int[][] routes = ((int[][][]) starData[1])[i];
+			stars[i] = new Star(((String[]) starData[0])[i], new Route(table,
+					translate(routes[0], handles)));
+			for (int j = 1; j < routes.length; j++) {
+				stars[i].addTransition(new Route(table, translate(routes[j],
+						handles)));
+			}
+		}
+		return new Object[] { airways, sids, stars };
+	}
+
+	private static int[] translate(int[] snapshotHandles, int[] handles) {
+		int[] translated = new int[snapshotHandles.length];
+		for (int i = 0; i < translated.length; i++) {
+			translated[i] = handles[snapshotHandles[i]];
+		}
+		return translated;
+	}
+}
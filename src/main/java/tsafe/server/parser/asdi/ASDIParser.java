@@ -22,19 +22,56 @@ package tsafe.server.parser.asdi;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationScheduler;
+import tsafe.server.computation.ConformanceWatcher;
 import tsafe.server.database.DatabaseInterface;
+import tsafe.server.metrics.Tracer;
 import tsafe.server.parser.ParserInterface;
+import tsafe.server.parser.ReplayClock;
 
 /**
  * This class connects to the ASDI feed and calls the actual parser
  */
 public class ASDIParser extends ParserInterface {
-    
+
+    /** Default number of messages applied per database transaction, if pipelined */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Number of errors of each message type printed to standard error. The
+     * errors past it are only counted in the metrics
+     */
+    public static final int MAX_PRINTED_ERRORS = 10;
+
     /** Parses the ASDI messages */
     private MessageExtractor messageExtractor;
 
+    /** Reads and parses the feed ahead of the database updates, if pipelined */
+    private IngestPipeline pipeline;
+
+    /** Number of messages applied per database transaction, if pipelined */
+    private int batchSize = 1;
+
+    /** Number of threads that parse the feed, if pipelined */
+    private int parseThreads = 1;
+
+    /** Paces the updates by the time of the messages, if replaying */
+    private ReplayClock replayClock;
+
+    /** Records what the parser does, if instrumented */
+    private IngestMetrics metrics;
+
+    /** Is told about each track message applied, if cycles are triggered by tracks */
+    private ComputationScheduler scheduler;
+
+    /** Number of errors printed by message type, with null for the lines that are not messages */
+    private Map printedErrors = new HashMap();
+
     /**
      * Constructs an ASDIParser to read from the feed source, and update the database accordingly.
      * This Calculator is used to interpret some of the feed messages.
@@ -44,32 +81,303 @@ public class ASDIParser extends ParserInterface {
         this.messageExtractor = new MessageExtractor(tsafeDB, calc);
     }
 
+    /**
+     * Makes the parser read and parse the feed on separate threads, ahead
+     * of the database updates, and apply up to batchSize messages per
+     * database transaction. Must be called before parsing starts.
+     *
+     *@throws IllegalArgumentException if batchSize or parseThreads is not positive
+     */
+    public void setPipelined(int batchSize, int parseThreads) {
+        if (batchSize < 1 || parseThreads < 1) {
+            throw new IllegalArgumentException("batch size and parse threads must be positive");
+        }
+        this.batchSize = batchSize;
+        this.parseThreads = parseThreads;
+    }
+
+    /** Returns true if the parser reads and parses the feed ahead of the updates */
+    public boolean isPipelined() {
+        return batchSize > 1 || parseThreads > 1;
+    }
+
+    /**
+     * Makes the parser replay the feed at the pace of the clock, which is
+     * advanced to the time of each message before it is applied. A batch of
+     * updates ends wherever the clock has to wait or fire a cycle, so each
+     * cycle sees exactly the messages before it. Must be called before
+     * parsing starts.
+     */
+    public void setReplayClock(ReplayClock replayClock) {
+        this.replayClock = replayClock;
+    }
+
+    /** Returns the clock that paces the replay, or null if not replaying */
+    public ReplayClock getReplayClock() {
+        return replayClock;
+    }
+
+    /**
+     * Makes the parser record the messages it parses and applies, and the
+     * lines it fails to parse, in the metrics
+     */
+    public void setMetrics(IngestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Returns the metrics the parser records to, or null if not instrumented */
+    public IngestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes the parser count each track and flight plan update message, TZ
+     * and UZ, it applies in the scheduler, which may trigger a computation
+     * cycle
+     */
+    public void setComputationScheduler(ComputationScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Makes the parser evaluate the conformance of each flight whose track
+     * it updates, as the message is applied
+     */
+    public void setConformanceWatcher(ConformanceWatcher watcher) {
+        messageExtractor.setConformanceWatcher(watcher);
+    }
+
     /**
      * Reads from the feed and executes a single update on the database.
+     * If pipelined, executes a batch of updates in one transaction instead.
      * Returns true if there are more updates to be executed.
      *@throws IOException - if there is an error reading from the feed
      */
     public boolean executeUpdate() throws IOException {
+        if (getSource() instanceof MappedFeedReader) {
+            return executeMappedUpdate((MappedFeedReader) getSource());
+        }
+        if (isPipelined()) {
+            return executeBatchUpdate();
+        }
 
+        Tracer tracer = Tracer.getDefault();
+        long readStart = tracer.start();
         String line = this.feedReader.readLine();
         if (line == null) return false;
+        tracer.end(Tracer.FEED_READ, readStart);
         Calendar cal  = Calendar.getInstance();
 
         /**
           * Message time stamps don't give month and year, so we will
           * use the month and year at the time the message was received
           */
+        Message msg;
         try {
-            Message msg = new Message(line, cal.get(Calendar.YEAR), cal.get(Calendar.MONTH));
-            this.messageExtractor.extractMessage(msg);
+            msg = new Message(line, cal.get(Calendar.YEAR), cal.get(Calendar.MONTH));
         } catch (RuntimeException e) {
-            System.out.println();
-            System.out.println("ERROR PARSING MESSAGE");
-            System.out.println(line);
-            e.printStackTrace();
+            parseFailed(line, e);
+            return true;
         }
+        applyMessage(msg);
 
         return true;
    }
+
+    /**
+     * The apply stage of the pipeline: takes the next parsed batch and
+     * applies its messages to the database in one transaction.
+     * Returns true if there are more updates to be executed.
+     */
+    private boolean executeBatchUpdate() throws IOException {
+        if (pipeline == null) {
+            pipeline = new IngestPipeline(this.feedReader, batchSize, parseThreads,
+                                          IngestPipeline.DEFAULT_QUEUE_CAPACITY);
+        }
+
+        Tracer tracer = Tracer.getDefault();
+        long readStart = tracer.start();
+        final IngestPipeline.Batch batch = pipeline.take();
+        if (batch == null) return false;
+        tracer.end(Tracer.FEED_READ, readStart);
+
+        for (int i = 0; i < batch.getFailedLines().size(); i++) {
+            parseFailed((String) batch.getFailedLines().get(i),
+                        (RuntimeException) batch.getFailures().get(i));
+        }
+
+        // Split the batch wherever the replay clock has to wait or fire a cycle
+        final List messages = batch.getMessages();
+        for (int from = 0; from < messages.size(); ) {
+            int to = messages.size();
+            if (replayClock != null) {
+                replayClock.advanceTo(((Message) messages.get(from)).getTime());
+                to = from + 1;
+                while (to < messages.size()
+                       && !replayClock.isDue(((Message) messages.get(to)).getTime())) {
+                    to++;
+                }
+            }
+            applyMessages(messages, from, to);
+            from = to;
+        }
+        return true;
+    }
+
+    /**
+     * Applies the messages in the range [from, to) in one transaction.
+     * The replay clock is not due for any of them, so advancing it only
+     * records their time.
+     */
+    private void applyMessages(final List messages, final int from, final int to) {
+        this.tsafeDB.executeBatch(new Runnable() {
+            public void run() {
+                for (int i = from; i < to; i++) {
+                    applyMessage((Message) messages.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads records straight from a mapped feed and applies up to batchSize
+     * of them in one transaction. Records are decoded as they are applied,
+     * so there are no parse threads; records of types that do not change
+     * the database are skipped without being decoded. If replaying, the
+     * batch ends before a message the clock is due for, and the clock is
+     * advanced outside of the transaction.
+     * Returns true if there are more updates to be executed.
+     */
+    private boolean executeMappedUpdate(final MappedFeedReader feed) throws IOException {
+        Calendar cal = Calendar.getInstance();
+        final int year = cal.get(Calendar.YEAR), month = cal.get(Calendar.MONTH);
+        final IOException[] failure = new IOException[1];
+        final boolean[] more = {true};
+        final long[] dueTime = new long[1];
+        final boolean[] due = {false};
+
+        this.tsafeDB.executeBatch(new Runnable() {
+            public void run() {
+                for (int i = 0; i < batchSize; i++) {
+                    try {
+                        if (!feed.nextRecord()) {
+                            more[0] = false;
+                            return;
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e;
+                        return;
+                    }
+                    if (isIgnored(feed.typeCode())) {
+                        if (metrics != null) metrics.messageSkipped(feed.typeCode());
+                        continue;
+                    }
+
+                    Message msg;
+                    try {
+                        msg = new Message(feed, year, month);
+                    } catch (RuntimeException e) {
+                        parseFailed(feed.record(), e);
+                        continue;
+                    }
+                    if (replayClock != null && replayClock.isDue(msg.getTime())) {
+                        feed.unread();
+                        dueTime[0] = msg.getTime();
+                        due[0] = true;
+                        return;
+                    }
+                    applyMessage(msg);
+                }
+            }
+        });
+
+        if (failure[0] != null) throw failure[0];
+        if (due[0]) {
+            replayClock.advanceTo(dueTime[0]);
+        }
+        return more[0];
+    }
+
+    /** Returns true if the message extractor ignores messages of this type */
+    private static boolean isIgnored(int typeCode) {
+        switch (typeCode) {
+            case Message.TYPE_RT:
+            case Message.TYPE_DZ:
+            case Message.TYPE_TO:
+            case Message.TYPE_HB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Fires the last cycle of the replay, if replaying, and stops the
+     * reader and parse threads of the pipeline
+     */
+    protected void parsingStopped() {
+        if (replayClock != null) {
+            replayClock.finish();
+        }
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+    }
+
+    /**
+     * Applies a message to the database, after advancing the replay clock
+     * to it if replaying, and records how long it took
+     */
+    private void applyMessage(Message msg) {
+        if (replayClock != null) {
+            replayClock.advanceTo(msg.getTime());
+        }
+        Tracer tracer = Tracer.getDefault();
+        long start = metrics != null || tracer.isEnabled() ? System.nanoTime() : 0;
+        try {
+            messageExtractor.extractMessage(msg);
+        } catch (RuntimeException e) {
+            if (metrics != null) metrics.applyFailed(msg);
+            printError(msg.getType(), msg.getOriginalString(), e);
+            return;
+        }
+        if (scheduler != null && (msg.getTypeCode() == Message.TYPE_TZ
+                                  || msg.getTypeCode() == Message.TYPE_UZ)) {
+            scheduler.trackArrived();
+        }
+        if (start != 0) {
+            long duration = System.nanoTime() - start;
+            if (metrics != null) metrics.messageApplied(msg, duration);
+            if (tracer.isEnabled()) tracer.record(Tracer.APPLY, start, duration);
+        }
+    }
+
+    private void parseFailed(String line, RuntimeException e) {
+        if (metrics != null) metrics.parseFailed();
+        printError(null, line, e);
+    }
+
+    /**
+     * Prints the error to standard error, unless MAX_PRINTED_ERRORS errors
+     * of the message type have been printed already
+     */
+    private void printError(String type, String line, RuntimeException e) {
+        Integer printed = (Integer) printedErrors.get(type);
+        int count = printed == null ? 0 : printed.intValue();
+        if (count >= MAX_PRINTED_ERRORS) {
+            return;
+        }
+        printedErrors.put(type, Integer.valueOf(count + 1));
+
+        System.err.println();
+        System.err.println("ERROR PARSING MESSAGE");
+        System.err.println(line);
+        e.printStackTrace();
+        if (count + 1 == MAX_PRINTED_ERRORS) {
+            System.err.println("Not printing further errors of "
+                               + (type == null ? "lines that are not messages" : type + " messages"));
+        }
+    }
 }
 
@@ -0,0 +1,206 @@
+package tsafe.server.parser.asdi;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import tsafe.server.metrics.Histogram;
+
+/**
+ * What the feed parser has done: the messages it parsed and applied to the
+ * database, per message type, the lines it could not parse, and how far the
+ * messages it applied lag behind the wall clock. The lag of a recorded feed
+ * is the age of the recording.
+ *
+ * The metrics can be registered as JMX MBeans, named tsafe:type=Ingest and
+ * tsafe:type=Ingest,messageType=XX, and printed periodically as text.
+ */
+public class IngestMetrics implements IngestMetricsMBean {
+
+    /** The JMX domain and type of the MBeans */
+    public static final String OBJECT_NAME = "tsafe:type=Ingest";
+
+    /** The message types, in the order they are reported */
+    private static final String[] TYPES = {
+        "TZ", "UZ", "FZ", "AF", "RZ", "AZ", "RT", "DZ", "TO", "HB"
+    };
+
+    private final MessageTypeMetrics[] typeMetrics = new MessageTypeMetrics[TYPES.length];
+    private final AtomicLong parseFailures = new AtomicLong();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final Histogram lagMillis = new Histogram();
+
+    /** Prints the report periodically, if started */
+    private Timer reporter;
+
+    public IngestMetrics() {
+        for (int i = 0; i < TYPES.length; i++) {
+            typeMetrics[i] = new MessageTypeMetrics(TYPES[i]);
+        }
+    }
+
+    /** Returns the metrics of a message type, given its type code */
+    private MessageTypeMetrics metricsOf(int typeCode) {
+        switch (typeCode) {
+            case Message.TYPE_TZ: return typeMetrics[0];
+            case Message.TYPE_UZ: return typeMetrics[1];
+            case Message.TYPE_FZ: return typeMetrics[2];
+            case Message.TYPE_AF: return typeMetrics[3];
+            case Message.TYPE_RZ: return typeMetrics[4];
+            case Message.TYPE_AZ: return typeMetrics[5];
+            case Message.TYPE_RT: return typeMetrics[6];
+            case Message.TYPE_DZ: return typeMetrics[7];
+            case Message.TYPE_TO: return typeMetrics[8];
+            case Message.TYPE_HB: return typeMetrics[9];
+            default: throw new IllegalArgumentException("Unknown message type code: " + typeCode);
+        }
+    }
+
+    /**
+     * Returns the metrics of a message type
+     *
+     *@throws IllegalArgumentException if the type is unknown
+     */
+    public MessageTypeMetrics getMessageTypeMetrics(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) return typeMetrics[i];
+        }
+        throw new IllegalArgumentException("Unknown message type: " + type);
+    }
+
+    // RECORDING
+
+    /** Counts a line that could not be parsed */
+    void parseFailed() {
+        parseFailures.incrementAndGet();
+    }
+
+    /** Counts a message that was skipped, because its type is ignored */
+    void messageSkipped(int typeCode) {
+        metricsOf(typeCode).skipped();
+    }
+
+    /** Counts a message that was applied in the given time */
+    void messageApplied(Message message, long nanos) {
+        metricsOf(message.getTypeCode()).applied(nanos);
+        long lag = System.currentTimeMillis() - message.getTime();
+        lastLag.set(lag);
+        lagMillis.record(lag);
+    }
+
+    /** Counts a message that failed to apply */
+    void applyFailed(Message message) {
+        metricsOf(message.getTypeCode()).applyFailed();
+    }
+
+    // MANAGEMENT INTERFACE
+
+    public long getMessages() {
+        long messages = 0;
+        for (int i = 0; i < typeMetrics.length; i++) {
+            messages += typeMetrics[i].getMessages();
+        }
+        return messages;
+    }
+
+    public long getParseFailures() {
+        return parseFailures.get();
+    }
+
+    public long getApplyFailures() {
+        long failures = 0;
+        for (int i = 0; i < typeMetrics.length; i++) {
+            failures += typeMetrics[i].getApplyFailures();
+        }
+        return failures;
+    }
+
+    public long getLastLagMillis() {
+        return lastLag.get();
+    }
+
+    public long getMedianLagMillis() {
+        return lagMillis.getPercentile(50);
+    }
+
+    public long getLagMillis99th() {
+        return lagMillis.getPercentile(99);
+    }
+
+    public long getMaxLagMillis() {
+        return lagMillis.getMax();
+    }
+
+    public String getReport() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Ingest: ").append(getMessages()).append(" messages, ")
+          .append(getParseFailures()).append(" parse failures, ")
+          .append(getApplyFailures()).append(" apply failures; lag ms: last ")
+          .append(getLastLagMillis()).append(", median ").append(getMedianLagMillis())
+          .append(", 99% ").append(getLagMillis99th())
+          .append(", max ").append(getMaxLagMillis()).append('\n');
+        for (int i = 0; i < typeMetrics.length; i++) {
+            MessageTypeMetrics m = typeMetrics[i];
+            if (m.getMessages() == 0) continue;
+            sb.append("  ").append(m.getType()).append(": ").append(m.getMessages())
+              .append(" messages, ").append(m.getApplyFailures())
+              .append(" failures; apply ns: mean ").append(Math.round(m.getMeanApplyNanos()))
+              .append(", median ").append(m.getMedianApplyNanos())
+              .append(", 90% ").append(m.getApplyNanos90th())
+              .append(", 99% ").append(m.getApplyNanos99th())
+              .append(", max ").append(m.getMaxApplyNanos()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        for (int i = 0; i < typeMetrics.length; i++) {
+            typeMetrics[i].reset();
+        }
+        parseFailures.set(0);
+        lastLag.set(0);
+        lagMillis.reset();
+    }
+
+    // PUBLISHING
+
+    /**
+     * Registers the metrics, and the metrics of each message type, with the
+     * platform MBean server
+     *
+     *@throws JMException if the MBeans cannot be registered
+     */
+    public void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        for (int i = 0; i < typeMetrics.length; i++) {
+            server.registerMBean(typeMetrics[i],
+                new ObjectName(OBJECT_NAME + ",messageType=" + TYPES[i]));
+        }
+    }
+
+    /** Prints the report to out every period milliseconds */
+    public synchronized void startReporting(long period, final PrintStream out) {
+        stopReporting();
+        reporter = new Timer("Ingest Metrics", true);
+        reporter.schedule(new TimerTask() {
+            public void run() {
+                out.print(getReport());
+            }
+        }, period, period);
+    }
+
+    /** Stops printing the report */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.cancel();
+            reporter = null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package tsafe.server.parser.asdi;
+
+/**
+ * The management interface of the feed parser's ingest metrics
+ */
+public interface IngestMetricsMBean {
+
+    /** Returns the number of messages parsed */
+    long getMessages();
+
+    /** Returns the number of feed lines that could not be parsed */
+    long getParseFailures();
+
+    /** Returns the number of messages that could not be applied to the database */
+    long getApplyFailures();
+
+    /** Returns the lag of the last message applied behind the wall clock */
+    long getLastLagMillis();
+
+    /** Returns the median lag of the messages applied */
+    long getMedianLagMillis();
+
+    /** Returns the 99th percentile of the lag of the messages applied */
+    long getLagMillis99th();
+
+    /** Returns the largest lag of a message applied */
+    long getMaxLagMillis();
+
+    /** Returns the metrics as text, one line per message type */
+    String getReport();
+
+    /** Forgets all the metrics */
+    void reset();
+}
@@ -0,0 +1,206 @@
+package tsafe.server.parser.asdi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The reader and parse stages of the pipelined feed ingestion. A reader
+ * thread reads the feed in batches of lines and hands each batch to a pool
+ * of parse threads, which turn the lines into Messages. The parsed batches
+ * come out of take() in feed order, for the apply stage to run against the
+ * database.
+ *
+ * At most queueCapacity batches are read ahead of the apply stage; beyond
+ * that the reader waits, so a slow database slows down the reading instead
+ * of filling the memory. A batch is handed on early if no more input is
+ * ready, so a quiet live feed is not held back waiting for a full batch.
+ */
+class IngestPipeline {
+
+    /** Default number of batches read ahead of the apply stage */
+    static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private final BufferedReader feedReader;
+    private final int batchSize;
+    private final ExecutorService parsers;
+    private final BlockingQueue batches;
+    private Thread readerThread;
+
+    /**
+     * Constructs a pipeline that reads from the feed reader
+     *
+     *@throws IllegalArgumentException if any of the sizes is not positive
+     */
+    IngestPipeline(BufferedReader feedReader, int batchSize, int parseThreads,
+                   int queueCapacity) {
+        if (batchSize < 1 || parseThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("batch size, parse threads and queue capacity"
+                                               + " must be positive");
+        }
+        this.feedReader = feedReader;
+        this.batchSize = batchSize;
+        this.batches = new ArrayBlockingQueue(queueCapacity);
+        this.parsers = Executors.newFixedThreadPool(parseThreads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Feed Parse " + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Returns the next parsed batch, waiting for it if necessary.
+     * Returns null at the end of the feed.
+     *
+     *@throws IOException if there was an error reading the feed; the
+     *  reader starts again on the next call
+     */
+    synchronized Batch take() throws IOException {
+        if (readerThread == null) {
+            readerThread = new Thread(new Runnable() {
+                public void run() {
+                    read();
+                }
+            }, "Feed Reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        Batch batch;
+        try {
+            batch = (Batch) ((Future) batches.take()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("feed parse failed", e.getCause());
+        }
+
+        if (batch.readError != null) {
+            readerThread = null;
+            throw batch.readError;
+        }
+        return batch.isEnd() ? null : batch;
+    }
+
+    /** Stops the reader and parse threads */
+    synchronized void close() {
+        if (readerThread != null) {
+            readerThread.interrupt();
+            readerThread = null;
+        }
+        parsers.shutdownNow();
+        batches.clear();
+    }
+
+    /**
+     * The reader stage: reads the feed into batches of lines until the end
+     * of the feed, an error, or an interrupt
+     */
+    private void read() {
+        List lines = new ArrayList(batchSize);
+        try {
+            String line;
+            while ((line = feedReader.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == batchSize || !feedReader.ready()) {
+                    submit(lines);
+                    lines = new ArrayList(batchSize);
+                }
+            }
+            submit(lines);
+            batches.put(CompletableFuture.completedFuture(Batch.END));
+        } catch (IOException e) {
+            try {
+                submit(lines);
+                batches.put(CompletableFuture.completedFuture(new Batch(e)));
+            } catch (InterruptedException e2) {
+                // Closed while reporting the error
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    /** Hands the lines to the parse stage, waiting if the queue is full */
+    private void submit(final List lines) throws InterruptedException {
+        if (lines.isEmpty()) return;
+        batches.put(parsers.submit(new Callable() {
+            public Object call() {
+                return new Batch((String[]) lines.toArray(new String[lines.size()]));
+            }
+        }));
+    }
+
+    /**
+     * A batch of parsed messages, and the lines that could not be parsed
+     */
+    static class Batch {
+
+        private static final Batch END = new Batch(new String[0]);
+
+        private final List messages;
+        private final List failedLines = new ArrayList();
+        private final List failures = new ArrayList();
+        private final IOException readError;
+
+        /** The parse stage: parses the lines of a batch */
+        Batch(String[] lines) {
+            /**
+              * Message time stamps don't give month and year, so we will
+              * use the month and year at the time the batch was read
+              */
+            Calendar cal = Calendar.getInstance();
+            int year = cal.get(Calendar.YEAR), month = cal.get(Calendar.MONTH);
+
+            this.messages = new ArrayList(lines.length);
+            for (int i = 0; i < lines.length; i++) {
+                try {
+                    messages.add(new Message(lines[i], year, month));
+                } catch (RuntimeException e) {
+                    failedLines.add(lines[i]);
+                    failures.add(e);
+                }
+            }
+            this.readError = null;
+        }
+
+        private Batch(IOException readError) {
+            this.messages = new ArrayList(0);
+            this.readError = readError;
+        }
+
+        private boolean isEnd() {
+            return this == END;
+        }
+
+        /** Returns the parsed messages, in feed order */
+        List getMessages() {
+            return messages;
+        }
+
+        /** Returns the lines that could not be parsed */
+        List getFailedLines() {
+            return failedLines;
+        }
+
+        /** Returns the exceptions of the lines that could not be parsed */
+        List getFailures() {
+            return failures;
+        }
+    }
+}
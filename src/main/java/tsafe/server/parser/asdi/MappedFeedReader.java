@@ -0,0 +1,188 @@
+package tsafe.server.parser.asdi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A recorded feed file that is memory mapped rather than read. The ASDI
+ * parser recognizes this source and scans it one record, or line, at a
+ * time: the fixed-width header of each record is decoded straight from the
+ * mapped bytes, and the record only becomes a String or a set of field
+ * Strings when a Message asks for them. Records of types the parser ignores
+ * are skipped without creating any objects.
+ *
+ * Files larger than a mapping can hold are mapped one region at a time.
+ * The source is also an ordinary Reader of the file's characters, so it can
+ * be used wherever a feed Reader is expected.
+ */
+public class MappedFeedReader extends Reader {
+
+    /** Maximum size of a mapped region of the file */
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long regionSize;
+
+    /** The mapped region and its offset in the file */
+    private MappedByteBuffer region;
+    private long regionOffset;
+
+    /** Position in the region of the next character or record to read */
+    private int position;
+
+    /** The current record, as offsets into the region */
+    private int recordStart, recordEnd;
+
+    /**
+     * Maps the file for reading
+     *
+     *@throws IOException if the file cannot be opened or mapped
+     */
+    public MappedFeedReader(File file) throws IOException {
+        this(file, REGION_SIZE);
+    }
+
+    /** Maps the file for reading, in regions of at most regionSize bytes */
+    MappedFeedReader(File file, long regionSize) throws IOException {
+        this.file = file;
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        this.fileSize = channel.size();
+        this.regionSize = regionSize;
+        map(0);
+    }
+
+    /** Maps the region of the file that starts at the given offset */
+    private void map(long offset) throws IOException {
+        regionOffset = offset;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                             Math.min(regionSize, fileSize - offset));
+        position = 0;
+        recordStart = recordEnd = 0;
+    }
+
+    // RECORD ACCESS
+
+    /**
+     * Advances to the next record, skipping empty lines.
+     * Returns false at the end of the file.
+     *
+     *@throws IOException if a record is longer than a mapped region
+     */
+    boolean nextRecord() throws IOException {
+        while (true) {
+            int limit = region.limit();
+            int end = position;
+            while (end < limit && region.get(end) != '\n') {
+                end++;
+            }
+
+            // The record continues past the region: map from its start
+            if (end == limit && regionOffset + limit < fileSize) {
+                if (position == 0) {
+                    throw new IOException("record longer than " + regionSize + " bytes in " + file);
+                }
+                map(regionOffset + position);
+                continue;
+            }
+
+            int start = position;
+            position = end < limit ? end + 1 : end;
+            if (end > start && region.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end > start) {
+                recordStart = start;
+                recordEnd = end;
+                return true;
+            }
+            if (position >= limit) {
+                return false;
+            }
+        }
+    }
+
+    /** Steps back, so that the next record is the current record again */
+    void unread() {
+        position = recordStart;
+    }
+
+    /**
+     * Returns the mapped region that holds the current record. The region
+     * stays readable after the source moves on to another region.
+     */
+    ByteBuffer recordBuffer() {
+        return region;
+    }
+
+    /** Returns the offset of the current record in its region */
+    int recordStart() {
+        return recordStart;
+    }
+
+    /** Returns the length of the current record */
+    int recordLength() {
+        return recordEnd - recordStart;
+    }
+
+    /** Returns the byte at the given index of the current record */
+    int byteAt(int index) {
+        return region.get(recordStart + index) & 0xff;
+    }
+
+    /**
+     * Returns the two characters of the message type of the current record,
+     * packed in an int, or -1 if the record is too short to have one
+     */
+    int typeCode() {
+        if (recordLength() < Message.HEADER_LENGTH + 2) return -1;
+        return (byteAt(Message.HEADER_LENGTH) << 8) | byteAt(Message.HEADER_LENGTH + 1);
+    }
+
+    /** Returns the bytes of the buffer in the given range as a String */
+    static String decode(ByteBuffer buffer, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (buffer.get(from + i) & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /** Returns the current record as a String */
+    String record() {
+        return decode(region, recordStart, recordEnd);
+    }
+
+    // READER
+
+    /** Reads the characters of the file, one byte per character */
+    public int read(char[] buf, int off, int len) throws IOException {
+        if (region == null) throw new IOException("closed");
+        if (position >= region.limit()) {
+            if (regionOffset + region.limit() >= fileSize) return -1;
+            map(regionOffset + region.limit());
+        }
+        int n = Math.min(len, region.limit() - position);
+        for (int i = 0; i < n; i++) {
+            buf[off + i] = (char) (region.get(position++) & 0xff);
+        }
+        return n;
+    }
+
+    /** Unmaps the file */
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+
+    /** Returns the path of the file */
+    public String toString() {
+        return file.getPath();
+    }
+}
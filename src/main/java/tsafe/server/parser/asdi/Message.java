@@ -19,10 +19,10 @@
 
 package tsafe.server.parser.asdi;
 
+import java.nio.ByteBuffer;
+import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.TimeZone;
 
 /**
  * This class parses the NAS messages from the ASDI feed
@@ -31,6 +31,10 @@ import java.util.StringTokenizer;
  * for a description of the ASDI feed
  * *** NOTE: The description seems to either have an error or be dated with respect to the FZ message.
  * *** The FZ message does not currently include the requested altitude as the description states.
+ *
+ * A message is decoded in a single pass: the header is parsed digit by
+ * digit, and the fields are recorded as offsets into the message. A field
+ * only becomes a String when it is asked for.
  */
 class Message {
 
@@ -51,10 +55,24 @@ class Message {
     public static final int DEPARTURE          = 26;
     public static final int DESTINATION        = 27;
     public static final int ARRIVAL_TIME       = 28;
+
+    // MESSAGE TYPE CODES: the two characters of the type, packed in an int
+    public static final int TYPE_AF = ('A' << 8) | 'F';
+    public static final int TYPE_AZ = ('A' << 8) | 'Z';
+    public static final int TYPE_DZ = ('D' << 8) | 'Z';
+    public static final int TYPE_FZ = ('F' << 8) | 'Z';
+    public static final int TYPE_RZ = ('R' << 8) | 'Z';
+    public static final int TYPE_TZ = ('T' << 8) | 'Z';
+    public static final int TYPE_UZ = ('U' << 8) | 'Z';
+    public static final int TYPE_RT = ('R' << 8) | 'T';
+    public static final int TYPE_TO = ('T' << 8) | 'O';
+    public static final int TYPE_HB = ('H' << 8) | 'B';
+
+    /** Length of the header: sequence number, date-time stamp and facility */
+    static final int HEADER_LENGTH = 16;
     
-    // Initializes field names and field numbers used by each message
+    // Initializes field names
     private static String[] fieldNames = initFieldNames();
-    private static Map fieldsUsedByMessage = initFieldsUsedByMessage();
     
     private static String[] initFieldNames() {
         String[] fieldNames = new String[ARRIVAL_TIME + 1];
@@ -77,57 +95,107 @@ class Message {
         return fieldNames;
     }
     
-    private static Map initFieldsUsedByMessage() {
-        Map msgType2Fields = new HashMap();
-        
-        // AF message
-        int vAF[] = {MESSAGE_TYPE, FLIGHT_ID, DEPARTURE, DESTINATION, FIELD_REFERENCE, AMENDMENT_DATA};
-        // AZ message
-        int vAZ[] = {MESSAGE_TYPE, FLIGHT_ID, DEPARTURE, DESTINATION, ARRIVAL_TIME};
-        // DZ message
-        int vDZ[] = {MESSAGE_TYPE, FLIGHT_ID, AIRCRAFT_DATA, DEPARTURE, COORDINATION_TIME, DESTINATION, ARRIVAL_TIME};
-        // FZ message (note does not include requested altitude as description states)
-        int vFZ[] = {MESSAGE_TYPE, FLIGHT_ID, AIRCRAFT_DATA, SPEED, COORDINATION_FIX, COORDINATION_TIME, ASSIGNED_ALTITUDE, ROUTE_DATA};
-        // RZ message
-        int vRZ[] = {MESSAGE_TYPE, FLIGHT_ID, DEPARTURE, DESTINATION};
-        // TZ message
-        int vTZ[] = {MESSAGE_TYPE, FLIGHT_ID, SPEED, ASSIGNED_ALTITUDE, TRACK_POSITION};
-        // UZ message
-        int vUZ[] = {MESSAGE_TYPE, FLIGHT_ID, AIRCRAFT_DATA, SPEED, COORDINATION_FIX, COORDINATION_TIME, ASSIGNED_ALTITUDE, ROUTE_DATA};
-        // RT message
-        int vRT[] = {MESSAGE_TYPE};
-        // TO message - non-NAS message, NOT YET IMPLEMENTED
-        int vTO[] = {MESSAGE_TYPE};
-        // HB message - non_NAS message
-        int vHB[] = {MESSAGE_TYPE};
-                
-        // Map message types to array of field numbers
-        msgType2Fields.put("AF", vAF);
-        msgType2Fields.put("AZ", vAZ);
-        msgType2Fields.put("DZ", vDZ);
-        msgType2Fields.put("FZ", vFZ);
-        msgType2Fields.put("RZ", vRZ);
-        msgType2Fields.put("TZ", vTZ);
-        msgType2Fields.put("UZ", vUZ);
-        msgType2Fields.put("RT", vRT);
-        msgType2Fields.put("TO", vTO);
-        msgType2Fields.put("HB", vHB);
-        
-        return msgType2Fields;
+    // Field numbers used by each message, in order
+
+    // AF message
+    private static final int vAF[] = {MESSAGE_TYPE, FLIGHT_ID, DEPARTURE, DESTINATION, FIELD_REFERENCE, AMENDMENT_DATA};
+    // AZ message
+    private static final int vAZ[] = {MESSAGE_TYPE, FLIGHT_ID, DEPARTURE, DESTINATION, ARRIVAL_TIME};
+    // DZ message
+    private static final int vDZ[] = {MESSAGE_TYPE, FLIGHT_ID, AIRCRAFT_DATA, DEPARTURE, COORDINATION_TIME, DESTINATION, ARRIVAL_TIME};
+    // FZ message (note does not include requested altitude as description states)
+    private static final int vFZ[] = {MESSAGE_TYPE, FLIGHT_ID, AIRCRAFT_DATA, SPEED, COORDINATION_FIX, COORDINATION_TIME, ASSIGNED_ALTITUDE, ROUTE_DATA};
+    // RZ message
+    private static final int vRZ[] = {MESSAGE_TYPE, FLIGHT_ID, DEPARTURE, DESTINATION};
+    // TZ message
+    private static final int vTZ[] = {MESSAGE_TYPE, FLIGHT_ID, SPEED, ASSIGNED_ALTITUDE, TRACK_POSITION};
+    // UZ message
+    private static final int vUZ[] = {MESSAGE_TYPE, FLIGHT_ID, AIRCRAFT_DATA, SPEED, COORDINATION_FIX, COORDINATION_TIME, ASSIGNED_ALTITUDE, ROUTE_DATA};
+    // RT, TO (non-NAS, NOT YET IMPLEMENTED) and HB (non-NAS) messages
+    private static final int vTypeOnly[] = {MESSAGE_TYPE};
+
+    /** Returns the field numbers used by the message type, or null if the type is unknown */
+    private static int[] fieldsUsedByMessage(int typeCode) {
+        switch (typeCode) {
+            case TYPE_AF: return vAF;
+            case TYPE_AZ: return vAZ;
+            case TYPE_DZ: return vDZ;
+            case TYPE_FZ: return vFZ;
+            case TYPE_RZ: return vRZ;
+            case TYPE_TZ: return vTZ;
+            case TYPE_UZ: return vUZ;
+            case TYPE_RT:
+            case TYPE_TO:
+            case TYPE_HB: return vTypeOnly;
+            default: return null;
+        }
+    }
+
+    /** Returns the message type of a type code, or null if the type is unknown */
+    static String typeOf(int typeCode) {
+        switch (typeCode) {
+            case TYPE_AF: return "AF";
+            case TYPE_AZ: return "AZ";
+            case TYPE_DZ: return "DZ";
+            case TYPE_FZ: return "FZ";
+            case TYPE_RZ: return "RZ";
+            case TYPE_TZ: return "TZ";
+            case TYPE_UZ: return "UZ";
+            case TYPE_RT: return "RT";
+            case TYPE_TO: return "TO";
+            case TYPE_HB: return "HB";
+            default: return null;
+        }
     }
 
     // Data present in every message
     private int sequenceNumber;
     private long time;
-    private String original, facilityCode, messageType;
-    private String fields[] = new String[fieldNames.length];
+    private int typeCode;
+    private String original, facilityCode;
+
+    // The mapped record the message is decoded from, if it was not given as a String
+    private ByteBuffer record;
+    private int recordStart, recordLength;
+
+    // The field numbers used by the message, the start and end offsets of
+    // each of them, and the fields that have been asked for
+    private int vAux[];
+    private int fieldOffsets[];
+    private String fields[];
 
     // must provide the year and the month for the message
     // because that is not in the message's date-time stamp
     public Message(String st, int year, int month)
     {
         this.original = st;
-    
+        decode(st.length(), year, month);
+    }
+
+    /**
+     * Constructs the message from the current record of a mapped feed,
+     * decoding it straight from the mapped bytes
+     */
+    Message(MappedFeedReader feed, int year, int month)
+    {
+        this.record = feed.recordBuffer();
+        this.recordStart = feed.recordStart();
+        this.recordLength = feed.recordLength();
+        decode(recordLength, year, month);
+    }
+
+    /** Returns the character at the given index of the message */
+    private int charAt(int index) {
+        return record == null ? original.charAt(index) : record.get(recordStart + index) & 0xff;
+    }
+
+    /** Returns the characters of the message in the given range */
+    private String substring(int from, int to) {
+        return record == null ? original.substring(from, to)
+                              : MappedFeedReader.decode(record, recordStart + from, recordStart + to);
+    }
+
+    private void decode(int length, int year, int month) {
         /**
          * Each ASDI message consists of five components.
          * 1. Sequence Number (4 bytes) 
@@ -136,40 +204,106 @@ class Message {
          * 4. NAS or ETMS message (variable) 
          * 5. Line feed (1 byte)
          **/
-         
+        if (length < HEADER_LENGTH + 2) {
+            throw new IllegalArgumentException("Message too short: " + getOriginalString());
+        }
+
         // Extract the sequence number
-        this.sequenceNumber = Integer.parseInt(st.substring(0,4),16);
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit((char) charAt(i), 16);
+            if (digit < 0) throw badHeader();
+            this.sequenceNumber = (sequenceNumber << 4) | digit;
+        }
 
         // Extract the time of the message from the date-time stamp: ddhhmmss
-        int day    = Integer.parseInt(st.substring(4,6));
-        int hour   = Integer.parseInt(st.substring(6,8));
-        int minute = Integer.parseInt(st.substring(8,10));
-        int second = Integer.parseInt(st.substring(10,12));
-        
-        java.util.Calendar cal = java.util.Calendar.getInstance();
-        cal.clear();
-        cal.set(year, month, day, hour, minute, second);
-        this.time = cal.getTime().getTime();
+        this.time = toTime(year, month, twoDigits(4), twoDigits(6), twoDigits(8), twoDigits(10));
 
-        // Extract the facility code
-        this.facilityCode = st.substring(12,16);
-
-        // Remove the header information already parsed
-        st = st.substring(16);
-        
         // Extract the message type
-        this.messageType = st.substring(0, 2);
+        this.typeCode = (charAt(HEADER_LENGTH) << 8) | charAt(HEADER_LENGTH + 1);
+        this.vAux = fieldsUsedByMessage(typeCode);
+        if (vAux == null) {
+            throw new IllegalArgumentException("Unknown message type: " + getOriginalString());
+        }
 
-        // Extract the fields
-        StringTokenizer stringTok = new StringTokenizer(st);
-        int vAux[] = (int[])fieldsUsedByMessage.get(messageType);
+        // Record the offsets of the fields, which are separated by white space
+        this.fieldOffsets = new int[2 * vAux.length];
+        int pos = HEADER_LENGTH;
         for (int i = 0; i < vAux.length; i++) {
-            fields[vAux[i]] = stringTok.hasMoreTokens() ? stringTok.nextToken() : null;
+            while (pos < length && charAt(pos) <= ' ') pos++;
+            int start = pos;
+            while (pos < length && charAt(pos) > ' ') pos++;
+            fieldOffsets[2 * i] = start;
+            fieldOffsets[2 * i + 1] = pos;
+        }
+    }
+
+    /** Returns the decimal number of two digits at the given index */
+    private int twoDigits(int index) {
+        int tens = charAt(index) - '0', units = charAt(index + 1) - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) throw badHeader();
+        return tens * 10 + units;
+    }
+
+    private NumberFormatException badHeader() {
+        return new NumberFormatException("Bad ASDI header: " + getOriginalString());
+    }
+
+    /** The start of the last day a message time was computed for */
+    private static volatile DayStart lastDay;
+
+    /**
+     * The time at the start of a day in a time zone. A day is uniform if the
+     * time zone's offset does not change during it.
+     */
+    private static class DayStart {
+        final int year, month, day;
+        final TimeZone zone;
+        final long millis;
+        final boolean uniform;
+
+        DayStart(int year, int month, int day, TimeZone zone) {
+            Calendar cal = Calendar.getInstance(zone);
+            cal.clear();
+            cal.set(year, month, day);
+            this.year = year;
+            this.month = month;
+            this.day = day;
+            this.zone = zone;
+            this.millis = cal.getTime().getTime();
+            this.uniform = zone.getOffset(millis) == zone.getOffset(millis + 86400000 - 1);
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds of the given date and time in the
+     * default time zone, as a Calendar would. Successive messages are nearly
+     * always from the same day, so the start of the day is computed once per
+     * day and time zone, and the time of day is added to it.
+     */
+    static long toTime(int year, int month, int day, int hour, int minute, int second) {
+        TimeZone zone = TimeZone.getDefault();
+        DayStart start = lastDay;
+        if (start == null || start.day != day || start.month != month || start.year != year
+            || !start.zone.equals(zone)) {
+            start = new DayStart(year, month, day, zone);
+            lastDay = start;
         }
+        if (start.uniform) {
+            return start.millis + ((hour * 60L + minute) * 60 + second) * 1000;
+        }
+
+        // The offset changes during the day
+        Calendar cal = Calendar.getInstance(zone);
+        cal.clear();
+        cal.set(year, month, day, hour, minute, second);
+        return cal.getTime().getTime();
     }
 
     /** Return the original string */
     public String getOriginalString() {
+        if (this.original == null && this.record != null) {
+            this.original = MappedFeedReader.decode(record, recordStart, recordStart + recordLength);
+        }
         return this.original;
     }
 
@@ -180,17 +314,40 @@ class Message {
 
     /** Return the faciltiy code */
     public String getFacilityCode() {
+        if (this.facilityCode == null) {
+            this.facilityCode = substring(12, 16);
+        }
         return this.facilityCode;
     }
 
     /** Return the message type */
     public String getType() {
-        return this.messageType;
+        return typeOf(this.typeCode);
+    }
+
+    /** Returns the two characters of the message type, packed in an int */
+    public int getTypeCode() {
+        return this.typeCode;
     }
 
     /** Return the value of the given field */
     public String getField(int field) {
-        return this.fields[field];
+        for (int i = 0; i < vAux.length; i++) {
+            if (vAux[i] == field) {
+                int start = fieldOffsets[2 * i], end = fieldOffsets[2 * i + 1];
+                if (start == end) {
+                    return null;
+                }
+                if (this.fields == null) {
+                    this.fields = new String[vAux.length];
+                }
+                if (this.fields[i] == null) {
+                    this.fields[i] = substring(start, end);
+                }
+                return this.fields[i];
+            }
+        }
+        return null;
     }
 
     /**
@@ -202,11 +359,10 @@ class Message {
         st += "Sequence number: 0x" + Integer.toHexString(sequenceNumber) + "/n";
         java.text.DateFormat formatter = new java.text.SimpleDateFormat("HH:mm:ss EEE dd MMM yyyy");
         st += "Time: " + formatter.format(new Date(time)) + "/n";
-        st += "Facility code: " + facilityCode + "/n";
+        st += "Facility code: " + getFacilityCode() + "/n";
 
-        int vAux[]=(int[]) fieldsUsedByMessage.get(messageType);
         for (int i=0; i < vAux.length; i++)
-            st += "Field " +vAux[i] + " (" + fieldNames[vAux[i]] + ") = " + fields[vAux[i]] + "/n";
+            st += "Field " +vAux[i] + " (" + fieldNames[vAux[i]] + ") = " + getField(vAux[i]) + "/n";
 
         st += "END OF MESSAGE/n";
         return st;
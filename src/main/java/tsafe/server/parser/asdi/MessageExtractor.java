@@ -28,6 +28,7 @@ import tsafe.common_datastructures.FlightPlan;
 import tsafe.common_datastructures.FlightTrack;
 import tsafe.common_datastructures.Route;
 import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ConformanceWatcher;
 import tsafe.server.database.DatabaseInterface;
 
 /**
@@ -45,6 +46,12 @@ class MessageExtractor {
 	 */
 	private Calculator calc;
 
+	/**
+	 * Is told about the flights whose track or flight plan is updated, if
+	 * conformance is monitored as the messages arrive
+	 */
+	private ConformanceWatcher watcher;
+
 	/**
 	 * Constuct a message parser that updates the given TSAFE database and uses
 	 * the given heading calculator
@@ -54,13 +61,22 @@ class MessageExtractor {
 		this.calc = calc;
 	}
 
+	/**
+	 * Makes the extractor hand each flight whose track or flight plan it
+	 * updates, and each flight it removes, to the watcher
+	 */
+	public void setConformanceWatcher(ConformanceWatcher watcher) {
+		this.watcher = watcher;
+	}
+
 	/**
 	 * This method realizes the messages update on the DatabaseInterface
 	 */
 	public void extractMessage(Message message) {
-		String messageType = message.getType();
+		switch (message.getTypeCode()) {
+
 		// Flight track message
-		if (messageType.equals("TZ")) {
+		case Message.TYPE_TZ: {
 
 			String aircraftId = NASFields.getAircraftId(message
 					.getField(Message.FLIGHT_ID));
@@ -98,14 +114,16 @@ class MessageExtractor {
 						.getLatitude(), track.getLongitude(), latitude,
 						longitude);
 
-				f.setFlightTrack(new FlightTrack(latitude, longitude, altitude,
-						message.getTime(), speed, heading));
+				f = f.withFlightTrack(new FlightTrack(latitude, longitude,
+						altitude, message.getTime(), speed, heading));
 				tsafeDB.updateFlight(f);
+				trackUpdated(f);
 			}
+			break;
 		}
 
 		// Update/boundary crossing message
-		else if (messageType.equals("UZ")) {
+		case Message.TYPE_UZ: {
 			String aircraftId = NASFields.getAircraftId(message
 					.getField(Message.FLIGHT_ID));
 			Fix fix = NASFields.getCoordinationFix(message
@@ -161,23 +179,25 @@ class MessageExtractor {
 						.getLatitude(), track.getLongitude(), latitude,
 						longitude);
 
-				f.setFlightTrack(new FlightTrack(latitude, longitude, altitude,
-						time, speed, heading));
+				f = f.withFlightTrack(new FlightTrack(latitude, longitude,
+						altitude, time, speed, heading));
 				if (f.getFlightPlan() != null) {
-					f.setFlightPlan(f.getFlightPlan().amendRoute(route));
+					f = f.withFlightPlan(f.getFlightPlan().amendRoute(route));
 				}
 				tsafeDB.updateFlight(f);
+				trackUpdated(f);
 			}
+			break;
 		}
 
 		// Flight plan message
-		else if (messageType.equals("FZ")) {
+		case Message.TYPE_FZ: {
 			// FZ messages are always received before the flight
 			// takes off, so this flight will not be in the database
 			String aircraftId = NASFields.getAircraftId(message
 					.getField(Message.FLIGHT_ID));
 			if (tsafeDB.selectFlight(aircraftId) != null) {
-				tsafeDB.deleteFlight(aircraftId);
+				deleteFlight(aircraftId);
 			}
 
 			double assignedSpeed = NASFields.getGroundSpeed(message
@@ -193,10 +213,11 @@ class MessageExtractor {
 
 			Flight flight = new Flight(aircraftId, plan);
 			tsafeDB.insertFlight(flight);
+			break;
 		}
 
 		// Amendment message
-		else if (messageType.equals("AF")) {
+		case Message.TYPE_AF: {
 			// ** We ignore AF messages if they do not amend any field
 			if (message.getField(Message.FIELD_REFERENCE) == null)
 				return;
@@ -216,20 +237,23 @@ class MessageExtractor {
 
 			// Flight id amendment message
 			case Message.FLIGHT_ID:
-				tsafeDB.deleteFlight(aircraftId);
+				deleteFlight(aircraftId);
 				String newAircraftId = NASFields.getAircraftId(message
 						.getField(Message.AMENDMENT_DATA));
 				Flight flight2 = new Flight(newAircraftId, flight
 						.getFlightTrack(), flight.getFlightPlan());
 				tsafeDB.insertFlight(flight2);
+				trackUpdated(flight2);
 				break;
 
 			// Route amendment message
 			case Message.ROUTE_DATA:
 				Route route = NASFields.getRoute(message
 						.getField(Message.AMENDMENT_DATA), tsafeDB, calc);
-				flight.setFlightPlan(flight.getFlightPlan().amendRoute(route));
+				flight = flight.withFlightPlan(flight.getFlightPlan()
+						.amendRoute(route));
 				tsafeDB.updateFlight(flight);
+				trackUpdated(flight);
 				break;
 
 			// Aircraft data amendment message
@@ -241,18 +265,21 @@ class MessageExtractor {
 			case Message.SPEED:
 				double speed = NASFields.getGroundSpeed(message
 						.getField(Message.AMENDMENT_DATA));
-				flight.setFlightPlan(flight.getFlightPlan().amendAssignedSpeed(
-						speed));
+				flight = flight.withFlightPlan(flight.getFlightPlan()
+						.amendAssignedSpeed(speed));
 				tsafeDB.updateFlight(flight);
+				trackUpdated(flight);
 				break;
 
 			// Assigned Altitude amendment message
 			case Message.ASSIGNED_ALTITUDE:
 				double altitude = NASFields.getAltitude(message
 						.getField(Message.AMENDMENT_DATA));
-				flight.setFlightPlan(flight.getFlightPlan()
+				flight = flight.withFlightPlan(flight.getFlightPlan()
 						.amendAssignedAltitude(altitude));
 				tsafeDB.updateFlight(flight);
+				trackUpdated(flight);
+				break;
 
 			case Message.REQUESTED_ALTITUDE:
 				// ** We ignore amendments to the requested altitude
@@ -273,44 +300,64 @@ class MessageExtractor {
 				throw new RuntimeException("Unknown amendment message: "
 						+ message.getOriginalString());
 			}
+			break;
 		}
 
 		// Flight cancellation message
-		else if (messageType.equals("RZ")) {
-			tsafeDB.deleteFlight(NASFields.getAircraftId(message
+		case Message.TYPE_RZ: {
+			deleteFlight(NASFields.getAircraftId(message
 					.getField(Message.FLIGHT_ID)));
+			break;
 		}
 
 		// Arrival messages
-		else if (messageType.equals("AZ")) {
-			tsafeDB.deleteFlight(NASFields.getAircraftId(message
+		case Message.TYPE_AZ: {
+			deleteFlight(NASFields.getAircraftId(message
 					.getField(Message.FLIGHT_ID)));
+			break;
 		}
 
 		// Flight prediction message
-		else if (messageType.equals("RT")) {
+		case Message.TYPE_RT: {
 			// ** We ignore flight prediction messages
+			break;
 		}
 
 		// Departure message
-		else if (messageType.equals("DZ")) {
+		case Message.TYPE_DZ: {
 			// ** We ignore departure messages
+			break;
 		}
 
 		// Oceanic position message
-		else if (messageType.equals("TO")) {
+		case Message.TYPE_TO: {
 			// ** We ignore oceanic position messages
+			break;
 		}
 
 		// Heartbeat message
-		else if (messageType.equals("HB")) {
+		case Message.TYPE_HB: {
 			// ** We ignore heartbeat messages
+			break;
 		}
 
 		// Uh Oh, unknown message
-		else {
+		default:
 			throw new RuntimeException("Unknown message: "
 					+ message.getOriginalString());
 		}
 	}
+
+	private void trackUpdated(Flight flight) {
+		if (watcher != null) {
+			watcher.flightUpdated(flight);
+		}
+	}
+
+	private void deleteFlight(String aircraftId) {
+		tsafeDB.deleteFlight(aircraftId);
+		if (watcher != null) {
+			watcher.flightRemoved(aircraftId);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package tsafe.server.parser.asdi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import tsafe.server.metrics.Histogram;
+
+/**
+ * The ingest metrics of one message type: how many messages were parsed,
+ * and how long they took to apply to the database
+ */
+public class MessageTypeMetrics implements MessageTypeMetricsMBean {
+
+    private final String type;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong applyFailures = new AtomicLong();
+    private final Histogram applyNanos = new Histogram();
+
+    MessageTypeMetrics(String type) {
+        this.type = type;
+    }
+
+    /** Counts a message that was not applied, because its type is ignored */
+    void skipped() {
+        messages.incrementAndGet();
+    }
+
+    /** Counts a message that was applied in the given time */
+    void applied(long nanos) {
+        messages.incrementAndGet();
+        applyNanos.record(nanos);
+    }
+
+    /** Counts a message that failed to apply */
+    void applyFailed() {
+        messages.incrementAndGet();
+        applyFailures.incrementAndGet();
+    }
+
+    void reset() {
+        messages.set(0);
+        applyFailures.set(0);
+        applyNanos.reset();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getMessages() {
+        return messages.get();
+    }
+
+    public long getApplyFailures() {
+        return applyFailures.get();
+    }
+
+    public double getMeanApplyNanos() {
+        return applyNanos.getMean();
+    }
+
+    public long getMedianApplyNanos() {
+        return applyNanos.getPercentile(50);
+    }
+
+    public long getApplyNanos90th() {
+        return applyNanos.getPercentile(90);
+    }
+
+    public long getApplyNanos99th() {
+        return applyNanos.getPercentile(99);
+    }
+
+    public long getMaxApplyNanos() {
+        return applyNanos.getMax();
+    }
+}
@@ -0,0 +1,31 @@
+package tsafe.server.parser.asdi;
+
+/**
+ * The management interface of the ingest metrics of one message type
+ */
+public interface MessageTypeMetricsMBean {
+
+    /** Returns the message type */
+    String getType();
+
+    /** Returns the number of messages of this type parsed */
+    long getMessages();
+
+    /** Returns the number of messages of this type that could not be applied */
+    long getApplyFailures();
+
+    /** Returns the mean time to apply a message to the database */
+    double getMeanApplyNanos();
+
+    /** Returns the median time to apply a message to the database */
+    long getMedianApplyNanos();
+
+    /** Returns the 90th percentile of the time to apply a message */
+    long getApplyNanos90th();
+
+    /** Returns the 99th percentile of the time to apply a message */
+    long getApplyNanos99th();
+
+    /** Returns the longest time to apply a message */
+    long getMaxApplyNanos();
+}
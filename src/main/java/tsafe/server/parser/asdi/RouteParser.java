@@ -22,7 +22,6 @@ package tsafe.server.parser.asdi;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
@@ -281,7 +280,7 @@ class RouteParser {
 		Fix onFix, offFix;
 
 		// If the prec fix is on the airway, make it the on fix
-		if (fixList.contains(precFix)) {
+		if (airway.contains(precFix)) {
 			onFix = precFix;
 		}
 		// If it isnt, find the closest fix on the airway to the prec fix
@@ -300,7 +299,7 @@ class RouteParser {
 		}
 
 		// If the succ fix is on the airway, make it the off fix
-		if (fixList.contains(succFix)) {
+		if (airway.contains(succFix)) {
 			offFix = succFix;
 		}
 		// If it isnt, find the closest fix on the airway to the succ fix
@@ -315,8 +314,8 @@ class RouteParser {
 		}
 
 		// Get the indices of the on and off fixes
-		int onIdx = fixList.indexOf(onFix);
-		int offIdx = fixList.indexOf(offFix);
+		int onIdx = airway.indexOf(onFix);
+		int offIdx = airway.indexOf(offFix);
 
 		// Add all the points between the indices to the route
 		try {
@@ -346,39 +345,23 @@ class RouteParser {
 
 		// else if we're following the list forward
 		else if (onIdx < offIdx) {
-			ListIterator fixIter = fixList.listIterator(onIdx + 1);
-			Fix fix = (Fix) fixIter.next();
-
-			for (int i = onIdx + 1; i < offIdx; i++) {
-				route.addFix(fix);
-				fix = (Fix) fixIter.next();
-			}
+			route.addFixes(fixList.subList(onIdx + 1, offIdx));
 		}
 
 		// else if we're following the list backwards
 		else {
-			ListIterator fixIter = fixList.listIterator(onIdx);
-			Fix fix = (Fix) fixIter.previous();
-
 			for (int i = onIdx - 1; i > offIdx; i--) {
-				route.addFix(fix);
-				fix = (Fix) fixIter.previous();
+				route.addFix((Fix) fixList.get(i));
 			}
 		}
 	}
 
 	private static void addRouteToRoute(Route from, Route to, boolean addFirst) {
-		Iterator fixIter = from.fixIterator();
-
-		if (fixIter.hasNext()) {
-			Fix first = (Fix) fixIter.next();
-			if (addFirst)
-				to.addFix(first);
-		}
+		List fixList = from.fixList();
+		if (fixList.isEmpty())
+			return;
 
-		while (fixIter.hasNext()) {
-			to.addFix((Fix) fixIter.next());
-		}
+		to.addFixes(addFirst ? fixList : fixList.subList(1, fixList.size()));
 	}
 
 	/**
@@ -408,6 +391,11 @@ class RouteParser {
 	 */
 	private static Fix getCrossAirwaysFix(Airway a1, Airway a2, Calculator calc) {
 
+		// If they share a fix, just return it
+		Fix sharedFix = a1.sharedFix(a2);
+		if (sharedFix != null)
+			return sharedFix;
+
 		Iterator fixIter1 = a1.fixIterator();
 		double minDistance = Double.MAX_VALUE;
 		Fix closestFix = null;
@@ -418,11 +406,7 @@ class RouteParser {
 
 			while (fixIter2.hasNext()) {
 				Fix a2Fix = (Fix) fixIter2.next();
-				// If they share a fix, just return it
-				if (a1Fix.equals(a2Fix))
-					return a1Fix;
-
-				// Otherwise, continue to find the closest cross fix
+				// Find the closest cross fix
 				double distance = calc.distanceLL(a1Fix, a2Fix);
 				if (distance < minDistance) {
 					closestFix = a1Fix;
@@ -0,0 +1,208 @@
+package tsafe.server.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import tsafe.client.ClientInterface;
+import tsafe.client.SelectedFlights;
+import tsafe.client.ShowOptions;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.ResultsState;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.common_datastructures.client_server_communication.WireProtocol;
+import tsafe.server.ServerInterface;
+
+/**
+ *
+ *
+ * Stands in for a client connected over TCP. It is notified like the
+ * in-process clients, and writes the results to the connection on a thread
+ * of its own, so a slow connection only makes its own client skip results.
+ * Only the changes since the results last written are sent.
+ */
+public class RemoteClient extends ClientInterface {
+
+	/**
+	 * The connection to the client
+	 */
+	private final Socket socket;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Writes the frames to the connection, in order
+	 */
+	private final ExecutorService writer;
+
+	/**
+	 * Whether the client has sent its bounds and parameters
+	 */
+	private volatile boolean subscribed;
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	/**
+	 * The results written to the connection, which the client has once it
+	 * reads them. Only used by the writer.
+	 */
+	private final ResultsState sentState = new ResultsState();
+
+	public RemoteClient(ServerInterface server, Socket socket)
+			throws IOException {
+		super(server, new UserParameters(), new ShowOptions(),
+				new SelectedFlights());
+		this.socket = socket;
+		this.out = new DataOutputStream(new BufferedOutputStream(socket
+				.getOutputStream()));
+		final String name = "Remote Client " + socket.getRemoteSocketAddress();
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Sends the fixes, then reads the subscriptions of the client until it
+	 * disconnects.
+	 */
+	void startReading() {
+		this.writer.execute(new Runnable() {
+			public void run() {
+				try {
+					WireProtocol.writeFixes(out, server.getFixes());
+					out.flush();
+				} catch (IOException e) {
+					close();
+				}
+			}
+		});
+
+		Thread reader = new Thread("Remote Client Reader "
+				+ this.socket.getRemoteSocketAddress()) {
+			public void run() {
+				readSubscriptions();
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void readSubscriptions() {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					this.socket.getInputStream()));
+			while (true) {
+				byte type = in.readByte();
+				if (type != WireProtocol.SUBSCRIBE) {
+					throw new IOException("Unexpected frame type " + type);
+				}
+				LatLonBounds bounds = WireProtocol.readBounds(in);
+				UserParameters parameters = WireProtocol.readParameters(in);
+				synchronized (this) {
+					this.bounds = bounds;
+					this.parameters = parameters;
+				}
+				this.subscribed = true;
+			}
+		} catch (EOFException e) {
+			// The client disconnected
+		} catch (IOException e) {
+			if (!this.closed.get()) {
+				e.printStackTrace();
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * The client is displayed on its own workstation
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+	}
+
+	/**
+	 * Computes the results of the client and hands them to its writer, once
+	 * it has subscribed.
+	 *
+	 * @see tsafe.client.ClientInterface#getFlightData()
+	 */
+	public void getFlightData() {
+		if (!this.subscribed) {
+			return;
+		}
+		LatLonBounds bounds;
+		UserParameters parameters;
+		synchronized (this) {
+			bounds = this.bounds;
+			parameters = this.parameters;
+		}
+		pushResults(this.server.getFlightData(bounds, parameters));
+	}
+
+	/**
+	 * Writes the changes since the last results to the connection
+	 *
+	 * @see tsafe.client.ClientInterface#updateClient(ComputationResults)
+	 */
+	public void updateClient(ComputationResults results) {
+		try {
+			WireProtocol.writeDelta(this.out, this.sentState.update(results));
+			this.out.flush();
+		} catch (IOException e) {
+			close();
+		}
+	}
+
+	/**
+	 * Runs the updates on the writer of the connection
+	 *
+	 * @see tsafe.client.ClientInterface#scheduleUpdate(Runnable)
+	 */
+	protected void scheduleUpdate(Runnable update) {
+		try {
+			this.writer.execute(update);
+		} catch (RejectedExecutionException e) {
+			// The connection has been closed
+		}
+	}
+
+	/**
+	 * Closes the connection and stops notifying the client
+	 */
+	public void close() {
+		if (!this.closed.compareAndSet(false, true)) {
+			return;
+		}
+		this.server.detachObserver(this);
+		this.writer.shutdown();
+		try {
+			this.socket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return Whether the connection has been closed
+	 */
+	public boolean isClosed() {
+		return this.closed.get();
+	}
+}
@@ -0,0 +1,77 @@
+package tsafe.server.remote;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import tsafe.server.ServerInterface;
+
+/**
+ *
+ *
+ * Accepts the TCP connections of remote clients, and attaches each of them
+ * to the server as an observer. See WireProtocol for the frames they
+ * exchange.
+ */
+public class ResultsServer implements Runnable {
+
+	/**
+	 * Port the headless server listens on, unless told otherwise
+	 */
+	public static final int DEFAULT_PORT = 7575;
+
+	/**
+	 * The server the remote clients observe
+	 */
+	private final ServerInterface server;
+
+	private final ServerSocket serverSocket;
+
+	/**
+	 * Listens on the port, or on any free port if it is 0
+	 */
+	public ResultsServer(ServerInterface server, int port) throws IOException {
+		this.server = server;
+		this.serverSocket = new ServerSocket(port);
+	}
+
+	/**
+	 * @return The port the server listens on
+	 */
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Starts accepting the remote clients
+	 */
+	public void start() {
+		Thread t = new Thread(this, "Results Server");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	public void run() {
+		while (!this.serverSocket.isClosed()) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				RemoteClient client = new RemoteClient(this.server, socket);
+				this.server.attachObserver(client);
+				client.startReading();
+			} catch (IOException e) {
+				if (!this.serverSocket.isClosed()) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting the remote clients. The connected clients stay
+	 * connected.
+	 */
+	public void close() throws IOException {
+		this.serverSocket.close();
+	}
+}
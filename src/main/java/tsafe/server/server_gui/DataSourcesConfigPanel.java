@@ -24,8 +24,7 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.File;
 import java.io.Reader;
 import java.util.Vector;
 
@@ -641,13 +640,8 @@ class DataSourcesConfigPanel extends ConfigPanel {
         if (fixesTextField.getText().length() == 0) {
             errorMessages.add("Must select a fix file.");
         }
-        else {
-            try {
-                Reader reader = new FileReader(fixesTextField.getText());
-            } 
-            catch (FileNotFoundException e) {
-                errorMessages.add("Selected fix file not found.");
-            }
+        else if (!new File(fixesTextField.getText()).isFile()) {
+            errorMessages.add("Selected fix file not found.");
         }
 
 
@@ -655,13 +649,8 @@ class DataSourcesConfigPanel extends ConfigPanel {
         if (airportsTextField.getText().length() == 0) {
             errorMessages.add("Must select an airport file.");
         }
-        else {
-            try {
-                Reader reader = new FileReader(airportsTextField.getText());
-            } 
-            catch (FileNotFoundException e) {
-                errorMessages.add("Selected airport file not found.");
-            }
+        else if (!new File(airportsTextField.getText()).isFile()) {
+            errorMessages.add("Selected airport file not found.");
         }
 
 
@@ -669,13 +658,8 @@ class DataSourcesConfigPanel extends ConfigPanel {
         if (navaidsTextField.getText().length() == 0) {
             errorMessages.add("Must select an navaid file.");
         }
-        else {
-            try {
-                Reader reader = new FileReader(navaidsTextField.getText());
-            } 
-            catch (FileNotFoundException e) {
-                errorMessages.add("Selected navaid file not found.");
-            }
+        else if (!new File(navaidsTextField.getText()).isFile()) {
+            errorMessages.add("Selected navaid file not found.");
         }
 
 
@@ -683,39 +667,24 @@ class DataSourcesConfigPanel extends ConfigPanel {
         if (airwaysTextField.getText().length() == 0) {
             errorMessages.add("Must select an airway file.");
         }
-        else {
-            try {
-                Reader reader = new FileReader(airwaysTextField.getText());
-            } 
-            catch (FileNotFoundException e) {
-                errorMessages.add("Selected airway file not found.");
-            }
+        else if (!new File(airwaysTextField.getText()).isFile()) {
+            errorMessages.add("Selected airway file not found.");
         }
 
         // Validate Sid data file.
         if (sidsTextField.getText().length() == 0) {
             errorMessages.add("Must select a sid file.");
         }
-        else {
-            try {
-                Reader reader = new FileReader(sidsTextField.getText());
-            } 
-            catch (FileNotFoundException e) {
-                errorMessages.add("Selected sid file not found.");
-            }
+        else if (!new File(sidsTextField.getText()).isFile()) {
+            errorMessages.add("Selected sid file not found.");
         }
 
         // Validate Star data file.
         if (starsTextField.getText().length() == 0) {
             errorMessages.add("Must select a star file.");
         }
-        else {
-            try {
-                Reader reader = new FileReader(starsTextField.getText());
-            } 
-            catch (FileNotFoundException e) {
-                errorMessages.add("Selected star file not found.");
-            }
+        else if (!new File(starsTextField.getText()).isFile()) {
+            errorMessages.add("Selected star file not found.");
         }
 
 
@@ -0,0 +1,239 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+import tsafe.server.parser.ReplayClock;
+import tsafe.server.parser.asdi.ASDIParser;
+import tsafe.server.parser.asdi.IngestMetrics;
+import tsafe.server.parser.asdi.MessageTypeMetrics;
+import tsafe.server.parser.asdi.MappedFeedReader;
+
+public class ASDIParserTest {
+
+  private static final int FLIGHTS = 300;
+  private static final int UPDATES = 4;
+
+  private static String two(int n) {
+    return n < 10 ? "0" + n : String.valueOf(n);
+  }
+
+  /** A feed of flight plans followed by rounds of track messages */
+  private String feed() {
+    StringBuffer sb = new StringBuffer();
+    int n = 0;
+    for (int i = 0; i < FLIGHTS; i++, n++) {
+      sb.append(String.format("%04X", n)).append("161900").append(two(n % 60))
+        .append("KZBWFZ AAL").append(i).append("/1 B738/L 0450 BOS P1830 350 ")
+        .append("42").append(two(i % 60)).append("N/071").append(two(i % 60))
+        .append("W..43").append(two(i % 60)).append("N/072").append(two(i % 60))
+        .append("W\n");
+      if (i % 50 == 0) {
+        sb.append("this line is not a message\n");
+      }
+    }
+    for (int u = 0; u < UPDATES; u++) {
+      for (int i = 0; i < FLIGHTS; i++, n++) {
+        sb.append(String.format("%04X", n % 65536)).append("1620").append(two(u))
+          .append(two(i % 60)).append("KZBWTZ AAL").append(i).append("/1 450 350 4")
+          .append(2 + u).append(two(i % 60)).append("N/07").append(1 + u)
+          .append(two((i + u) % 60)).append("W\n");
+      }
+    }
+    return sb.toString();
+  }
+
+  private DatabaseInterface parse(boolean pipelined) {
+    return parse(new StringReader(feed()), pipelined);
+  }
+
+  private DatabaseInterface parse(Reader source, boolean pipelined) {
+    return parse(source, pipelined, new ConcurrentRuntimeDatabase(), null);
+  }
+
+  private DatabaseInterface parse(Reader source, boolean pipelined, DatabaseInterface db,
+      ReplayClock clock) {
+    return parse(source, pipelined, db, clock, null);
+  }
+
+  private DatabaseInterface parse(Reader source, boolean pipelined, DatabaseInterface db,
+      ReplayClock clock, IngestMetrics metrics) {
+    ASDIParser parser = new ASDIParser(source, db, new Calculator());
+    if (pipelined) {
+      parser.setPipelined(16, 3);
+    }
+    parser.setReplayClock(clock);
+    parser.setMetrics(metrics);
+    parser.parse();
+    return db;
+  }
+
+  @Test
+  public void testPipelinedMatchesSerial() {
+    assertSameFlights(parse(false), parse(true));
+  }
+
+  @Test
+  public void testMappedMatchesSerial() throws IOException {
+    File file = File.createTempFile("feed", ".txt");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write(feed().replace("\n", "\r\n"));
+    writer.close();
+
+    assertSameFlights(parse(false), parse(new MappedFeedReader(file), false));
+    assertSameFlights(parse(false), parse(new MappedFeedReader(file), true));
+  }
+
+  /**
+   * Replays the feed at full speed with a cycle every simulated minute.
+   * Returns, for each cycle, the simulated time and the times of the
+   * earliest and latest tracks in the database.
+   */
+  private List<long[]> replay(Reader source, boolean pipelined) {
+    final DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    final List<long[]> cycles = new ArrayList<long[]>();
+    ReplayClock clock = new ReplayClock(ReplayClock.MAX_SPEED, 60000);
+    clock.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        long earliest = Long.MAX_VALUE, latest = Long.MIN_VALUE;
+        for (int i = 0; i < FLIGHTS; i++) {
+          Flight f = db.selectFlight("AAL" + i);
+          if (f != null && f.getFlightTrack() != null) {
+            earliest = Math.min(earliest, f.getFlightTrack().getTime());
+            latest = Math.max(latest, f.getFlightTrack().getTime());
+          }
+        }
+        cycles.add(new long[] {e.getWhen(), earliest, latest});
+      }
+    });
+    parse(source, pipelined, db, clock);
+    assertEquals(cycles.size(), clock.getCycleCount());
+    return cycles;
+  }
+
+  @Test
+  public void testReplayCyclesSeeTheMessagesBeforeThem() throws IOException {
+    File file = File.createTempFile("feed", ".txt");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write(feed());
+    writer.close();
+
+    List<long[]> serial = replay(new StringReader(feed()), false);
+
+    // A cycle per minute from the first flight plan to the last track, and
+    // a last one at the end of the feed
+    assertEquals(63 + 1, serial.size());
+    for (int c = 0; c < serial.size() - 1; c++) {
+      long[] cycle = serial.get(c);
+      if (cycle[2] != Long.MIN_VALUE) {
+        assertTrue(cycle[2] < cycle[0]);
+        assertTrue(cycle[1] >= cycle[0] - 60000);
+      }
+    }
+
+    // The cycles are the same however the feed is read
+    List<long[]> pipelined = replay(new StringReader(feed()), true);
+    List<long[]> mapped = replay(new MappedFeedReader(file), true);
+    for (int c = 0; c < serial.size(); c++) {
+      assertTrue(Arrays.equals(serial.get(c), pipelined.get(c)));
+      assertTrue(Arrays.equals(serial.get(c), mapped.get(c)));
+    }
+  }
+
+  @Test
+  public void testReplayIsPacedBySpeed() {
+    // The feed spans 64 minutes: a fifth of a second at 19200 times real time
+    ReplayClock clock = new ReplayClock(19200, 60000);
+    long start = System.currentTimeMillis();
+    parse(new StringReader(feed()), false, new ConcurrentRuntimeDatabase(), clock);
+    assertTrue(System.currentTimeMillis() - start >= 190);
+  }
+
+  private void assertSameFlights(DatabaseInterface serial, DatabaseInterface pipelined) {
+    for (int i = 0; i < FLIGHTS; i++) {
+      Flight expected = serial.selectFlight("AAL" + i);
+      Flight actual = pipelined.selectFlight("AAL" + i);
+      assertNotNull(actual);
+
+      FlightTrack et = expected.getFlightTrack(), at = actual.getFlightTrack();
+      assertEquals(et.getLatitude(), at.getLatitude(), 0);
+      assertEquals(et.getLongitude(), at.getLongitude(), 0);
+      assertEquals(et.getHeading(), at.getHeading(), 0);
+      assertEquals(et.getTime(), at.getTime());
+      assertEquals(expected.getFlightPlan().getRoute().toString(),
+          actual.getFlightPlan().getRoute().toString());
+    }
+  }
+
+  @Test
+  public void testMetricsCountMessagesAndFailures() {
+    for (int run = 0; run < 2; run++) {
+      IngestMetrics metrics = new IngestMetrics();
+      parse(new StringReader(feed() + "000016200000KZBWHB\n"), run == 1,
+          new ConcurrentRuntimeDatabase(), null, metrics);
+
+      MessageTypeMetrics tz = metrics.getMessageTypeMetrics("TZ");
+      assertEquals(FLIGHTS, metrics.getMessageTypeMetrics("FZ").getMessages());
+      assertEquals(FLIGHTS * UPDATES, tz.getMessages());
+      assertEquals(1, metrics.getMessageTypeMetrics("HB").getMessages());
+      assertEquals(FLIGHTS * (UPDATES + 1) + 1, metrics.getMessages());
+      assertEquals(FLIGHTS / 50, metrics.getParseFailures());
+      assertEquals(0, metrics.getApplyFailures());
+
+      assertTrue(tz.getMedianApplyNanos() <= tz.getApplyNanos99th());
+      assertTrue(tz.getApplyNanos99th() <= tz.getMaxApplyNanos());
+      assertTrue(metrics.getMaxLagMillis() > 0);
+      assertTrue(metrics.getReport().indexOf("TZ: " + FLIGHTS * UPDATES + " messages") > 0);
+    }
+  }
+
+  @Test
+  public void testOnlyTheFirstErrorsArePrinted() {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < 3 * ASDIParser.MAX_PRINTED_ERRORS; i++) {
+      sb.append("this line is not a message\n");
+    }
+    IngestMetrics metrics = new IngestMetrics();
+    PrintStream err = System.err;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(printed, true));
+    try {
+      parse(new StringReader(sb.toString()), false, new ConcurrentRuntimeDatabase(), null,
+          metrics);
+    } finally {
+      System.setErr(err);
+    }
+
+    // The metrics count all of them
+    assertEquals(3 * ASDIParser.MAX_PRINTED_ERRORS, metrics.getParseFailures());
+    assertEquals(ASDIParser.MAX_PRINTED_ERRORS,
+        printed.toString().split("ERROR PARSING MESSAGE", -1).length - 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBatchSizeMustBePositive() {
+    new ASDIParser(new StringReader(""), new ConcurrentRuntimeDatabase(), new Calculator())
+        .setPipelined(0, 1);
+  }
+}
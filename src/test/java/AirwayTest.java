@@ -0,0 +1,62 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Airway;
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FixTable;
+
+public class AirwayTest {
+
+  @Test
+  public void testIndexesFixPositions() {
+    Airway airway = new Airway("J1");
+    Fix a = new Fix("AAA", 42, -72);
+    Fix b = new Fix("BBB", 43, -71);
+    airway.addFix(a);
+    airway.addFixes(Arrays.asList(new Fix[] {b, a}));
+
+    assertEquals(0, airway.indexOf(a));
+    assertEquals(1, airway.indexOf(new Fix("BBB", 0, 0)));
+    assertEquals(-1, airway.indexOf(new Fix("CCC", 0, 0)));
+    assertTrue(airway.contains(b));
+    assertFalse(airway.contains(new Fix("CCC", 0, 0)));
+  }
+
+  @Test
+  public void testIndexedCrossingsMatchComparedOnes() {
+    FixTable table = new FixTable();
+    int a = table.put("AAA", 42, -72);
+    int b = table.put("BBB", 43, -71);
+    int c = table.put("CCC", 44, -70);
+    int d = table.put("DDD", 45, -69);
+    int e = table.put("EEE", 46, -68);
+
+    Airway j1 = new Airway("J1", table, new int[] {a, b, c, d});
+    Airway j2 = new Airway("J2", table, new int[] {e, d, b});
+    Airway j3 = new Airway("J3", table, new int[] {e});
+    assertEquals(2, j2.indexOf(table.getFix(b)));
+
+    Fix j1j2 = j1.sharedFix(j2);
+    Fix j2j1 = j2.sharedFix(j1);
+    assertSame(table.getFix(b), j1j2);
+    assertSame(table.getFix(d), j2j1);
+    assertNull(j1.sharedFix(j3));
+
+    Airway.indexCrossings(Arrays.asList(new Airway[] {j1, j2, j3}));
+    assertSame(j1j2, j1.sharedFix(j2));
+    assertSame(j2j1, j2.sharedFix(j1));
+    assertSame(table.getFix(e), j3.sharedFix(j2));
+    assertNull(j1.sharedFix(j3));
+
+    // An airway indexed apart compares its fixes
+    Airway j4 = new Airway("J4", table, new int[] {d, c});
+    assertSame(table.getFix(c), j1.sharedFix(j4));
+  }
+}
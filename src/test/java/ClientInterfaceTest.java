@@ -0,0 +1,105 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import tsafe.client.ClientInterface;
+import tsafe.client.SelectedFlights;
+import tsafe.client.ShowOptions;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+
+public class ClientInterfaceTest {
+
+  /** A client that takes a while to render and updates on its own threads */
+  private static class SlowClient extends ClientInterface {
+    final List<ComputationResults> updates =
+        Collections.synchronizedList(new ArrayList<ComputationResults>());
+    volatile int concurrentUpdates;
+    private volatile boolean updating;
+
+    SlowClient() {
+      super(null, new UserParameters(), new ShowOptions(), new SelectedFlights());
+    }
+
+    protected void scheduleUpdate(Runnable update) {
+      new Thread(update).start();
+    }
+
+    public void updateClient(ComputationResults results) {
+      if (updating) {
+        concurrentUpdates++;
+      }
+      updating = true;
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      updating = false;
+      updates.add(results);
+    }
+  }
+
+  private static ComputationResults results() {
+    return new ComputationResults(Collections.EMPTY_LIST, Collections.EMPTY_LIST,
+        new HashMap());
+  }
+
+  @Test
+  public void testSlowClientGetsTheLatestResults() throws InterruptedException {
+    SlowClient client = new SlowClient();
+    ComputationResults last = null;
+    for (int i = 0; i < 50; i++) {
+      last = results();
+      client.pushResults(last);
+      Thread.sleep(2);
+    }
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline
+        && (client.updates.isEmpty()
+            || client.updates.get(client.updates.size() - 1) != last)) {
+      Thread.sleep(10);
+    }
+    assertSame(last, client.updates.get(client.updates.size() - 1));
+    assertTrue(client.updates.size() < 50);
+    assertEquals(50, client.updates.size() + client.getCoalescedUpdates());
+    assertEquals(0, client.concurrentUpdates);
+  }
+
+  @Test
+  public void testPushingNeverWaitsForTheClient() throws InterruptedException {
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    ClientInterface client = new SlowClient() {
+      public void updateClient(ComputationResults results) {
+        rendering.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.updateClient(results);
+      }
+    };
+
+    client.pushResults(results());
+    assertTrue(rendering.await(5, TimeUnit.SECONDS));
+    long start = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      client.pushResults(results());
+    }
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    assertEquals(99, client.getCoalescedUpdates());
+    release.countDown();
+  }
+}
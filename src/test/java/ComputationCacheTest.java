@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationCache;
+import tsafe.server.computation.ComputationMediator;
+
+public class ComputationCacheTest {
+
+  private ComputationMediator mediator;
+  private UserParameters params;
+  private FlightPlan plan;
+
+  @Before
+  public void setUp() {
+    mediator = new ComputationMediator(new Calculator());
+    params = new UserParameters();
+    plan = TestFlights.plan();
+  }
+
+  private Vector<Flight> flights(FlightTrack track) {
+    Vector<Flight> flights = new Vector<Flight>();
+    flights.add(new Flight("AAL1", track, plan));
+    flights.add(TestFlights.unplanned());
+    return flights;
+  }
+
+  private ComputationResults compute(Vector<Flight> flights) {
+    mediator.setFlights(flights);
+    return mediator.computeFlights(TestFlights.BOUNDS, params);
+  }
+
+  @Test
+  public void testUnchangedFlightsAreReused() {
+    ComputationCache cache = mediator.getCache();
+    FlightTrack track = TestFlights.track(42.01, -71.5, 1000);
+
+    ComputationResults first = compute(flights(track));
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    ComputationResults second = compute(flights(track));
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    Flight flight = new Flight("AAL1", track, plan);
+    assertSame(first.getFlight2TrajectoryMap().get(flight),
+        second.getFlight2TrajectoryMap().get(flight));
+  }
+
+  @Test
+  public void testChangedInputsAreRecomputed() {
+    ComputationCache cache = mediator.getCache();
+    compute(flights(TestFlights.track(42.01, -71.5, 1000)));
+
+    // A new track position
+    compute(flights(TestFlights.track(42.02, -71.4, 2000)));
+    assertEquals(1, cache.getHits());
+
+    // An amended flight plan
+    plan = plan.amendAssignedAltitude(5000);
+    compute(flights(TestFlights.track(42.02, -71.4, 2000)));
+    assertEquals(2, cache.getHits());
+
+    // Changed parameters invalidate every flight
+    params.cmResidualThreshold = 0.5;
+    compute(flights(TestFlights.track(42.02, -71.4, 2000)));
+    assertEquals(2, cache.getHits());
+    assertEquals(6, cache.getMisses());
+  }
+
+  @Test
+  public void testOverlappingBoundsShareFlightsWithAFixedProjection() {
+    ComputationCache cache = mediator.getCache();
+    FlightTrack track = TestFlights.track(42.01, -71.5, 1000);
+    LatLonBounds overlapping = new LatLonBounds(41, -73, 44, -70);
+
+    // Each computation projects from the corner of its own bounds
+    compute(flights(track));
+    mediator.computeFlights(overlapping, params);
+    assertEquals(0, cache.getHits());
+
+    // With a fixed projection, the second client reuses the first's flights
+    mediator.setProjectionBounds(TestFlights.BOUNDS);
+    ComputationResults first = compute(flights(track));
+    ComputationResults second = mediator.computeFlights(overlapping, params);
+    assertEquals(2, cache.getHits());
+    Flight flight = new Flight("AAL1", track, plan);
+    assertSame(first.getFlight2TrajectoryMap().get(flight),
+        second.getFlight2TrajectoryMap().get(flight));
+  }
+
+  @Test
+  public void testDisabledCacheGivesSameResults() {
+    FlightTrack track = TestFlights.track(41.0, -71.5, 1000);
+    ComputationResults cached = compute(flights(track));
+
+    mediator.setCacheEnabled(false);
+    ComputationResults uncached = compute(flights(track));
+
+    assertEquals(cached.getBlunders(), uncached.getBlunders());
+    assertTrue(uncached.getBlunders().contains(new Flight("AAL1", track, plan)));
+    assertEquals(0, mediator.getCache().size());
+  }
+}
@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationScheduler;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.parser.asdi.ASDIParser;
+
+public class ComputationSchedulerTest {
+
+  /** A cycle that takes the given time, and counts its runs and the threads that run it */
+  private static class Cycle implements Runnable {
+    final Semaphore runs = new Semaphore(0);
+    final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+    volatile long millis;
+
+    Cycle(long millis) {
+      this.millis = millis;
+    }
+
+    public void run() {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      threads.add(Thread.currentThread());
+      runs.release();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testCyclesRunAtThePeriod() throws InterruptedException {
+    Cycle cycle = new Cycle(0);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 20);
+    long start = System.nanoTime();
+    scheduler.start();
+    assertTrue(cycle.runs.tryAcquire(10, 5, TimeUnit.SECONDS));
+    scheduler.stop();
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    assertEquals(0, scheduler.getSkippedCycleCount());
+    assertEquals(0, scheduler.getTriggeredCycleCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testOverrunCyclesAreSkipped() throws InterruptedException {
+    Cycle cycle = new Cycle(50);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 20);
+    scheduler.start();
+    assertTrue(cycle.runs.tryAcquire(4, 5, TimeUnit.SECONDS));
+    scheduler.stop();
+
+    // Each 50 ms cycle overruns the two cycles due during it
+    assertTrue(scheduler.getSkippedCycleCount() >= 6);
+    assertEquals(0, scheduler.getCoalescedCycleCount());
+    assertTrue(scheduler.getMaxCycleNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test(timeout = 10000)
+  public void testOverrunCyclesAreCoalesced() throws InterruptedException {
+    Cycle cycle = new Cycle(70);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 20);
+    scheduler.setOverrunPolicy(ComputationScheduler.COALESCE);
+    scheduler.start();
+    assertTrue(cycle.runs.tryAcquire(3, 5, TimeUnit.SECONDS));
+    scheduler.stop();
+
+    // The cycles overrun by each one are run at once, as a single cycle
+    assertTrue(scheduler.getCoalescedCycleCount() >= 4);
+    assertEquals(0, scheduler.getSkippedCycleCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testTrackMessagesTriggerCycles() throws InterruptedException {
+    Cycle cycle = new Cycle(0);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 0);
+    scheduler.setTrackTrigger(10);
+    scheduler.start();
+
+    for (int i = 0; i < 9; i++) {
+      scheduler.trackArrived();
+    }
+    assertFalse(cycle.runs.tryAcquire(100, TimeUnit.MILLISECONDS));
+    scheduler.trackArrived();
+    assertTrue(cycle.runs.tryAcquire(5, TimeUnit.SECONDS));
+
+    for (int i = 0; i < 10; i++) {
+      scheduler.trackArrived();
+    }
+    assertTrue(cycle.runs.tryAcquire(5, TimeUnit.SECONDS));
+    scheduler.stop();
+    while (scheduler.getCycleCount() < 2) {
+      Thread.sleep(1);
+    }
+    assertEquals(2, scheduler.getCycleCount());
+    assertEquals(2, scheduler.getTriggeredCycleCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testLoweredTriggerFiresAtOnce() throws InterruptedException {
+    Cycle cycle = new Cycle(0);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 0);
+    scheduler.setTrackTrigger(10);
+    scheduler.start();
+
+    for (int i = 0; i < 5; i++) {
+      scheduler.trackArrived();
+    }
+    scheduler.setTrackTrigger(3);
+    scheduler.trackArrived();
+    assertTrue(cycle.runs.tryAcquire(5, TimeUnit.SECONDS));
+    scheduler.stop();
+  }
+
+  @Test(timeout = 10000)
+  public void testUpdateMessagesTriggerCycles() throws InterruptedException {
+    Cycle cycle = new Cycle(0);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 0);
+    scheduler.setTrackTrigger(2);
+    scheduler.start();
+
+    // The flight plan does not count, its update and the track do
+    String feed =
+        "000116190000KZBWFZ AAL1/1 B738/L 0450 BOS P1830 350 4200N/07200W..4200N/07100W\n"
+      + "000216190100KZBWUZ AAL1/1 B738/L 0450 BOS E1830 350 4200N/07200W..4300N/07100W\n"
+      + "000316190200KZBWTZ AAL1/1 450 350 4200N/07130W\n";
+    ASDIParser parser = new ASDIParser(new StringReader(feed), new ConcurrentRuntimeDatabase(),
+        new Calculator());
+    parser.setComputationScheduler(scheduler);
+    parser.parse();
+    assertTrue(cycle.runs.tryAcquire(5, TimeUnit.SECONDS));
+    scheduler.stop();
+  }
+
+  @Test(timeout = 10000)
+  public void testRestartedSchedulerRunsOnOneThread() throws InterruptedException {
+    Cycle cycle = new Cycle(200);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 5);
+    scheduler.start();
+
+    // Restart during the first cycle. The thread that runs it ends after
+    // it, rather than running on next to the new one
+    Thread.sleep(50);
+    scheduler.stop();
+    scheduler.start();
+    cycle.millis = 0;
+    Thread.sleep(250);
+    cycle.threads.clear();
+    cycle.runs.drainPermits();
+    assertTrue(cycle.runs.tryAcquire(20, 5, TimeUnit.SECONDS));
+    scheduler.stop();
+    assertEquals(1, cycle.threads.size());
+  }
+
+  @Test(timeout = 10000)
+  public void testStoppedSchedulerRunsNoCycles() throws InterruptedException {
+    Cycle cycle = new Cycle(0);
+    ComputationScheduler scheduler = new ComputationScheduler(cycle, 10);
+    scheduler.start();
+    assertTrue(cycle.runs.tryAcquire(5, TimeUnit.SECONDS));
+    scheduler.stop();
+    Thread.sleep(30);
+    cycle.runs.drainPermits();
+    assertFalse(cycle.runs.tryAcquire(100, TimeUnit.MILLISECONDS));
+    assertFalse(scheduler.isRunning());
+  }
+}
@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.BlunderListener;
+import tsafe.server.computation.ConformanceWatcher;
+import tsafe.server.computation.data.RouteTrack;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.parser.asdi.ASDIParser;
+
+public class ConformanceWatcherTest {
+
+  private ConformanceWatcher watcher;
+  private FlightPlan plan;
+  private List<String> events = new ArrayList<String>();
+
+  @Before
+  public void setUp() {
+    UserParameters params = new UserParameters();
+    params.cmLateralWeightOn = true;
+    params.cmVerticalWeightOn = false;
+    params.cmAngularWeightOn = false;
+    params.cmSpeedWeightOn = false;
+    watcher = new ConformanceWatcher(new Calculator(), TestFlights.BOUNDS, params);
+    watcher.addBlunderListener(new BlunderListener() {
+      public void blunderStarted(Flight flight, RouteTrack routeTrack) {
+        assertNotNull(routeTrack);
+        events.add("+" + flight.getAircraftId());
+      }
+
+      public void blunderCleared(String aircraftId) {
+        events.add("-" + aircraftId);
+      }
+    });
+    plan = TestFlights.plan();
+  }
+
+  private Flight onRoute(long time) {
+    return new Flight("AAL1", TestFlights.track(42.25, -70.5, time), plan);
+  }
+
+  private Flight offRoute(long time) {
+    return new Flight("AAL1", TestFlights.track(42.5, -71.5, time), plan);
+  }
+
+  @Test
+  public void testTransitionsArePublished() {
+    watcher.flightUpdated(onRoute(1000));
+    assertFalse(watcher.isBlundering("AAL1"));
+    assertTrue(events.isEmpty());
+
+    watcher.flightUpdated(offRoute(2000));
+    assertTrue(watcher.isBlundering("AAL1"));
+    assertTrue(watcher.getBlunderIds().contains("AAL1"));
+
+    // Only the transitions are published
+    watcher.flightUpdated(offRoute(3000));
+    watcher.flightUpdated(onRoute(4000));
+    assertFalse(watcher.isBlundering("AAL1"));
+    assertEquals("[+AAL1, -AAL1]", events.toString());
+    assertEquals(4, watcher.getEvaluationCount());
+  }
+
+  @Test
+  public void testRouteAmendmentIsEvaluatedAtOnce() {
+    String feed =
+        "000116190000KZBWFZ AAL1/1 B738/L 0450 BOS P1830 350 4200N/07200W..4200N/07100W\n"
+      + "000216190100KZBWTZ AAL1/1 450 350 4200N/07130W\n"
+      + "000316190200KZBWAF AAL1/1 BOS JFK 10 4400N/07400W..4500N/07300W\n";
+    ASDIParser parser = new ASDIParser(new StringReader(feed), new ConcurrentRuntimeDatabase(),
+        new Calculator());
+    parser.setConformanceWatcher(watcher);
+    parser.parse();
+
+    // The amended route takes the flight off course before its next track
+    assertTrue(watcher.isBlundering("AAL1"));
+    assertEquals("[+AAL1]", events.toString());
+  }
+
+  @Test
+  public void testRemovedBlunderIsCleared() {
+    watcher.flightUpdated(offRoute(1000));
+    watcher.flightRemoved("AAL1");
+    assertEquals("[+AAL1, -AAL1]", events.toString());
+    assertNull(watcher.getRouteTrack("AAL1"));
+    assertTrue(watcher.getBlunderIds().isEmpty());
+
+    // Flights without a flight plan are not evaluated
+    watcher.flightUpdated(TestFlights.unplanned());
+    assertNull(watcher.getRouteTrack("N123"));
+    assertEquals(1, watcher.getEvaluationCount());
+  }
+}
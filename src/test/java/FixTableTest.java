@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FixTable;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.Sid;
+
+public class FixTableTest {
+
+  @Test
+  public void testIndexesFixesByIdAndHandle() {
+    FixTable table = new FixTable(16);
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i, table.put("F" + i, i / 1000.0, -i / 1000.0));
+    }
+    assertEquals(10000, table.size());
+    assertEquals(10000, table.fixes().size());
+    for (int i = 0; i < 10000; i++) {
+      int handle = table.handleOf("F" + i);
+      assertEquals(i, handle);
+      assertEquals(i / 1000.0, table.getLatitude(handle), 0);
+      assertEquals(-i / 1000.0, table.getLongitude(handle), 0);
+      assertSame(table.getFix(handle), table.get("F" + i));
+    }
+    assertEquals(-1, table.handleOf("G1"));
+    assertNull(table.get("G1"));
+  }
+
+  @Test
+  public void testReplacingAndRemovingKeepsHandles() {
+    FixTable table = new FixTable();
+    Fix fix = new Fix("AAA", 42, -72);
+    int first = table.put(fix);
+    assertSame(fix, table.get("AAA"));
+
+    int second = table.put("AAA", 43, -71);
+    assertEquals(second, table.handleOf("AAA"));
+    assertFalse(table.isIndexed(first));
+    assertSame(fix, table.getFix(first));
+    assertEquals(1, table.fixes().size());
+
+    int appended = table.append("BBB", 44, -70);
+    assertEquals(-1, table.handleOf("BBB"));
+    assertEquals("BBB", table.getFix(appended).getId());
+
+    assertTrue(table.remove("AAA"));
+    assertFalse(table.remove("AAA"));
+    assertNull(table.get("AAA"));
+    assertEquals(43, table.getLatitude(second), 0);
+    assertTrue(table.fixes().isEmpty());
+
+    table.index(appended);
+    assertEquals(appended, table.handleOf("BBB"));
+  }
+
+  @Test
+  public void testRoutesReferenceFixesByHandle() {
+    FixTable table = new FixTable();
+    int a = table.put("AAA", 42, -72);
+    int b = table.put("BBB", 43, -71);
+    int c = table.put("CCC", 44, -70);
+    int d = table.put("DDD", 45, -69);
+
+    Route basic = new Route(table, new int[] {a, b});
+    Sid sid = new Sid("SID1", basic);
+    sid.addTransition(new Route(table, new int[] {b, c, d}));
+
+    Route full = sid.routeTo(table.get("DDD"));
+    assertSame(table, full.getFixTable());
+    assertEquals(4, full.fixHandles().length);
+    List fixes = full.fixList();
+    assertSame(table.getFix(a), fixes.get(0));
+    assertSame(table.getFix(d), fixes.get(3));
+    assertEquals("AAA.BBB.CCC.DDD", full.toString());
+  }
+}
@@ -0,0 +1,45 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import tsafe.server.metrics.Histogram;
+
+public class HistogramTest {
+
+  @Test
+  public void testPercentilesAreWithinAnEighth() {
+    Histogram histogram = new Histogram();
+    for (long v = 1; v <= 100000; v++) {
+      histogram.record(v);
+    }
+    assertEquals(100000, histogram.getCount());
+    assertEquals(50000.5, histogram.getMean(), 1e-9);
+    assertEquals(100000, histogram.getMax());
+
+    long[] percents = {1, 50, 90, 99};
+    for (int i = 0; i < percents.length; i++) {
+      long expected = 1000 * percents[i];
+      long actual = histogram.getPercentile(percents[i]);
+      assertTrue(actual >= expected);
+      assertTrue(actual <= expected + expected / 8);
+    }
+    assertEquals(100000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testSmallAndLargeValues() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getPercentile(50));
+    histogram.record(-5);
+    histogram.record(3);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(0, histogram.getPercentile(1));
+    assertEquals(3, histogram.getPercentile(50));
+    assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+}
@@ -0,0 +1,89 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.Point4D;
+import tsafe.common_datastructures.Trajectory;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationMediator;
+
+public class ParallelComputationTest {
+
+  private Set<Flight> traffic(int count) {
+    Random random = new Random(7);
+    FlightPlan plan = TestFlights.plan();
+
+    Set<Flight> flights = new LinkedHashSet<Flight>();
+    for (int i = 0; i < count; i++) {
+      FlightTrack track = new FlightTrack(41 + 2 * random.nextDouble(),
+          -74 + 4 * random.nextDouble(), TestFlights.ALTITUDE, 1000, TestFlights.SPEED,
+          random.nextDouble());
+      flights.add(i % 5 == 0 ? new Flight("N" + i, track)
+                             : new Flight("AAL" + i, track, plan));
+    }
+    return flights;
+  }
+
+  private ComputationResults compute(Set<Flight> flights, int parallelism) {
+    ComputationMediator mediator = new ComputationMediator(new Calculator());
+    mediator.setCacheEnabled(false);
+    mediator.setParallelism(parallelism);
+    mediator.setFlights(flights);
+    return mediator.computeFlights(TestFlights.BOUNDS, new UserParameters());
+  }
+
+  @Test
+  public void testParallelMatchesSerial() {
+    Set<Flight> flights = traffic(2000);
+    ComputationResults serial = compute(flights, 1);
+    ComputationResults parallel = compute(flights, 4);
+
+    // Blunders come out in the same order as the flights
+    assertEquals(new ArrayList<Object>(serial.getBlunders()),
+        new ArrayList<Object>(parallel.getBlunders()));
+    assertTrue(serial.getBlunders().size() > 0);
+
+    assertEquals(flights.size(), parallel.getFlight2TrajectoryMap().size());
+    Iterator<Flight> flightIter = flights.iterator();
+    while (flightIter.hasNext()) {
+      Flight flight = flightIter.next();
+      assertEquals(describe((Trajectory) serial.getFlight2TrajectoryMap().get(flight)),
+          describe((Trajectory) parallel.getFlight2TrajectoryMap().get(flight)));
+    }
+  }
+
+  private String describe(Trajectory t) {
+    StringBuffer sb = new StringBuffer();
+    Iterator<?> pointIter = t.pointIterator();
+    while (pointIter.hasNext()) {
+      Point4D p = (Point4D) pointIter.next();
+      sb.append(p.getLatitude()).append(',').append(p.getLongitude()).append(',')
+        .append(p.getAltitude()).append(',').append(p.getTime()).append(' ');
+    }
+    return sb.toString();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParallelismMustBePositive() {
+    new ComputationMediator(new Calculator()).setParallelism(0);
+  }
+
+  @Test
+  public void testSmallCyclesStayOnCallingThread() {
+    List<Object> blunders = new ArrayList<Object>(compute(traffic(10), 8).getBlunders());
+    assertEquals(new ArrayList<Object>(compute(traffic(10), 1).getBlunders()), blunders);
+  }
+}
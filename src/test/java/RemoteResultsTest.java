@@ -0,0 +1,193 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tsafe.client.remote.ResultsClient;
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Point4D;
+import tsafe.common_datastructures.Trajectory;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.UserParameters;
+import tsafe.common_datastructures.client_server_communication.WireProtocol;
+import tsafe.server.ServerInterface;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationMediator;
+import tsafe.server.remote.ResultsServer;
+
+public class RemoteResultsTest {
+
+  private Vector<Fix> fixes;
+  private ComputationResults results;
+
+  @Before
+  public void setUp() {
+    fixes = TestFlights.fixes();
+    FlightPlan plan = TestFlights.plan(TestFlights.route(fixes));
+
+    Vector<Flight> flights = new Vector<Flight>();
+    flights.add(new Flight("AAL1", TestFlights.track(42.01, -71.5, 1000), plan));
+    flights.add(new Flight("AAL2", new FlightTrack(44, -69, 9000, 1000, 0.2, 0), plan));
+    flights.add(TestFlights.unplanned());
+
+    ComputationMediator mediator = new ComputationMediator(new Calculator());
+    mediator.setFlights(flights);
+    results = mediator.computeFlights(TestFlights.BOUNDS, new UserParameters());
+    assertFalse(results.getBlunders().isEmpty());
+  }
+
+  private static void assertSameFlight(Flight expected, Flight actual) {
+    assertEquals(expected.getAircraftId(), actual.getAircraftId());
+    FlightTrack t1 = expected.getFlightTrack(), t2 = actual.getFlightTrack();
+    assertEquals(t1.getLatitude(), t2.getLatitude(), 0);
+    assertEquals(t1.getLongitude(), t2.getLongitude(), 0);
+    assertEquals(t1.getAltitude(), t2.getAltitude(), 0);
+    assertEquals(t1.getTime(), t2.getTime());
+    assertEquals(t1.getSpeed(), t2.getSpeed(), 0);
+    assertEquals(t1.getHeading(), t2.getHeading(), 0);
+    if (expected.getFlightPlan() == null) {
+      assertNull(actual.getFlightPlan());
+      return;
+    }
+    FlightPlan p1 = expected.getFlightPlan(), p2 = actual.getFlightPlan();
+    assertEquals(p1.getAssignedSpeed(), p2.getAssignedSpeed(), 0);
+    assertEquals(p1.getAssignedAltitude(), p2.getAssignedAltitude(), 0);
+    List<?> r1 = p1.getRoute().fixList(), r2 = p2.getRoute().fixList();
+    assertEquals(r1, r2);
+    for (int i = 0; i < r1.size(); i++) {
+      assertEquals(((Fix) r1.get(i)).getLatitude(), ((Fix) r2.get(i)).getLatitude(), 0);
+      assertEquals(((Fix) r1.get(i)).getLongitude(), ((Fix) r2.get(i)).getLongitude(), 0);
+    }
+  }
+
+  private void assertSameResults(ComputationResults expected, ComputationResults actual) {
+    assertEquals(expected.getFlights().size(), actual.getFlights().size());
+    Iterator<?> i1 = expected.getFlights().iterator(), i2 = actual.getFlights().iterator();
+    while (i1.hasNext()) {
+      assertSameFlight((Flight) i1.next(), (Flight) i2.next());
+    }
+    assertEquals(new Vector<Object>(expected.getBlunders()),
+        new Vector<Object>(actual.getBlunders()));
+
+    Map<?, ?> m1 = expected.getFlight2TrajectoryMap(), m2 = actual.getFlight2TrajectoryMap();
+    assertEquals(m1.keySet(), m2.keySet());
+    for (Object flight : m1.keySet()) {
+      List<?> p1 = ((Trajectory) m1.get(flight)).pointList();
+      List<?> p2 = ((Trajectory) m2.get(flight)).pointList();
+      assertEquals(p1.size(), p2.size());
+      for (int i = 0; i < p1.size(); i++) {
+        Point4D a = (Point4D) p1.get(i), b = (Point4D) p2.get(i);
+        assertEquals(a.getLatitude(), b.getLatitude(), 0);
+        assertEquals(a.getLongitude(), b.getLongitude(), 0);
+        assertEquals(a.getAltitude(), b.getAltitude(), 0);
+        assertEquals(a.getTime(), b.getTime());
+      }
+    }
+  }
+
+  @Test
+  public void testResultsRoundTrip() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    WireProtocol.writeResults(new DataOutputStream(bytes), results);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(WireProtocol.RESULTS, in.readByte());
+    assertSameResults(results, WireProtocol.readResults(in));
+    assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void testSubscriptionRoundTrip() throws IOException {
+    UserParameters params = new UserParameters();
+    params.cmAngularWeightOn = false;
+    params.cmSpeedThreshold = 42;
+    params.tsTimeHorizon = 1234;
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    WireProtocol.writeSubscription(new DataOutputStream(bytes), TestFlights.BOUNDS, params);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(WireProtocol.SUBSCRIBE, in.readByte());
+    assertEquals(TestFlights.BOUNDS, WireProtocol.readBounds(in));
+    assertEquals(params, WireProtocol.readParameters(in));
+    assertEquals(-1, in.read());
+  }
+
+  @Test(timeout = 20000)
+  public void testLoopbackClientReceivesTheResults() throws Exception {
+    final Vector<Object> requests = new Vector<Object>();
+    final ServerInterface server = new ServerInterface(true) {
+      public ComputationResults getFlightData(LatLonBounds bounds, UserParameters parameters) {
+        requests.add(bounds);
+        requests.add(parameters);
+        return results;
+      }
+
+      public Collection getFixes() {
+        return fixes;
+      }
+    };
+    server.setAsynchronous(true);
+    ResultsServer resultsServer = new ResultsServer(server, 0);
+    resultsServer.start();
+
+    ResultsClient client = new ResultsClient("localhost", resultsServer.getPort());
+    UserParameters params = new UserParameters();
+    params.cmLateralThreshold = 1000;
+    Thread cycles = new Thread() {
+      public void run() {
+        while (!isInterrupted()) {
+          server.notifyObservers();
+          try {
+            Thread.sleep(10);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    };
+    try {
+      assertEquals(fixes, client.getFixes());
+      client.subscribe(TestFlights.BOUNDS, params);
+      cycles.start();
+
+      assertSameResults(results, client.receiveResults());
+      assertSameResults(results, client.receiveResults());
+      assertEquals(TestFlights.BOUNDS, requests.get(0));
+      assertEquals(params, requests.get(1));
+    } finally {
+      cycles.interrupt();
+      cycles.join();
+      client.close();
+      resultsServer.close();
+    }
+
+    // The server stops notifying the client once it disconnects
+    long deadline = System.currentTimeMillis() + 5000;
+    int before;
+    do {
+      before = requests.size();
+      server.notifyObservers();
+      Thread.sleep(20);
+    } while (before != requests.size() && System.currentTimeMillis() < deadline);
+    assertTrue(before == requests.size());
+  }
+}
@@ -0,0 +1,193 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.Point4D;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.Trajectory;
+import tsafe.common_datastructures.client_server_communication.ComputationResults;
+import tsafe.common_datastructures.client_server_communication.ResultsDelta;
+import tsafe.common_datastructures.client_server_communication.ResultsState;
+import tsafe.common_datastructures.client_server_communication.WireProtocol;
+
+public class ResultsStateTest {
+
+  /** A cycle's worth of flights, blunders and trajectories, by aircraft id */
+  private Map<String, Flight> flights = new LinkedHashMap<String, Flight>();
+  private Map<String, Trajectory> trajectories = new HashMap<String, Trajectory>();
+  private HashSet<String> blunders = new HashSet<String>();
+  private Random random = new Random(5);
+
+  private void move(String id) {
+    FlightTrack track = new FlightTrack(40 + 5 * random.nextDouble(),
+        -75 + 7 * random.nextDouble(), 9000, random.nextInt(100000), 0.2, 0);
+    Route route = new Route();
+    route.addFix(new Fix("F" + random.nextInt(50), 42, -72));
+    route.addFix(new Fix("F" + random.nextInt(50), 43, -71));
+    flights.put(id, new Flight(id, track, id.hashCode() % 3 == 0 ? null
+        : new FlightPlan(0.2, 9000, route)));
+
+    Trajectory trajectory = new Trajectory();
+    trajectory.addPoint(track.asPoint4D());
+    trajectory.addPoint(new Point4D(track.getLatitude() + 0.1, track.getLongitude(), 9000,
+        track.getTime() + 60000));
+    trajectories.put(id, trajectory);
+  }
+
+  private ComputationResults results() {
+    List<Flight> blundering = new ArrayList<Flight>();
+    Map<Flight, Trajectory> flight2TrajMap = new HashMap<Flight, Trajectory>();
+    for (Flight flight : flights.values()) {
+      if (blunders.contains(flight.getAircraftId())) {
+        blundering.add(flight);
+      }
+      flight2TrajMap.put(flight, trajectories.get(flight.getAircraftId()));
+    }
+    return new ComputationResults(new ArrayList<Flight>(flights.values()), blundering,
+        flight2TrajMap);
+  }
+
+  private static ResultsDelta transfer(ResultsDelta delta) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    WireProtocol.writeDelta(new DataOutputStream(bytes), delta);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(WireProtocol.DELTA, in.readByte());
+    ResultsDelta read = WireProtocol.readDelta(in);
+    assertEquals(-1, in.read());
+    return read;
+  }
+
+  private static int size(ResultsDelta delta) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    WireProtocol.writeDelta(new DataOutputStream(bytes), delta);
+    return bytes.size();
+  }
+
+  private static void assertSameResults(ComputationResults expected, ComputationResults actual) {
+    Map<String, Flight> byId = new HashMap<String, Flight>();
+    for (Object o : actual.getFlights()) {
+      byId.put(((Flight) o).getAircraftId(), (Flight) o);
+    }
+    assertEquals(expected.getFlights().size(), byId.size());
+    for (Object o : expected.getFlights()) {
+      Flight e = (Flight) o, a = byId.get(e.getAircraftId());
+      assertEquals(e.getFlightTrack().getLatitude(), a.getFlightTrack().getLatitude(), 0);
+      assertEquals(e.getFlightTrack().getTime(), a.getFlightTrack().getTime());
+      assertEquals(e.getFlightPlan() == null, a.getFlightPlan() == null);
+      assertEquals(expected.getBlunders().contains(e), actual.getBlunders().contains(a));
+      Trajectory t1 = (Trajectory) expected.getFlight2TrajectoryMap().get(e);
+      Trajectory t2 = (Trajectory) actual.getFlight2TrajectoryMap().get(a);
+      assertEquals(t1.pointList().size(), t2.pointList().size());
+      assertEquals(t1.lastPoint().getLatitude(), t2.lastPoint().getLatitude(), 0);
+    }
+    assertEquals(new HashSet<Object>(expected.getBlunders()),
+        new HashSet<Object>(actual.getBlunders()));
+    assertEquals(expected.getFlight2TrajectoryMap().size(),
+        actual.getFlight2TrajectoryMap().size());
+  }
+
+  @Test
+  public void testClientFollowsTheServerThroughDeltas() throws IOException {
+    ResultsState server = new ResultsState();
+    ResultsState client = new ResultsState();
+    for (int i = 0; i < 500; i++) {
+      move("AAL" + i);
+    }
+
+    for (int cycle = 0; cycle < 20; cycle++) {
+      ComputationResults results = results();
+      client.apply(transfer(server.update(results)));
+      assertEquals(cycle + 1, client.getVersion());
+      assertSameResults(results, client.getResults());
+
+      // Move, add and remove some flights, and toggle some blunders
+      for (int i = 0; i < 20; i++) {
+        move("AAL" + random.nextInt(600));
+      }
+      for (int i = 0; i < 5; i++) {
+        String id = "AAL" + random.nextInt(600);
+        flights.remove(id);
+        trajectories.remove(id);
+      }
+      for (int i = 0; i < 10; i++) {
+        String id = "AAL" + random.nextInt(600);
+        if (!blunders.remove(id)) {
+          blunders.add(id);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDeltaIsProportionalToChange() throws IOException {
+    ResultsState server = new ResultsState();
+    for (int i = 0; i < 1000; i++) {
+      move("AAL" + i);
+    }
+    int full = size(server.update(results()));
+
+    ResultsDelta unchanged = server.update(results());
+    assertTrue(unchanged.isEmpty());
+
+    for (int i = 0; i < 10; i++) {
+      move("AAL" + i);
+    }
+    blunders.add("AAL500");
+    ResultsDelta delta = server.update(results());
+    assertEquals(10, delta.getUpdatedFlights().size());
+    assertEquals(10, delta.getChangedTrajectories().size());
+    assertEquals(1, delta.getNewBlunderIds().size());
+    assertTrue(size(delta) * 50 < full);
+
+    // A removed flight takes its blunder and trajectory with it
+    flights.remove("AAL500");
+    delta = server.update(results());
+    assertEquals(1, delta.getRemovedFlightIds().size());
+    assertTrue(delta.getClearedBlunderIds().isEmpty());
+    assertTrue(server.getResults().getBlunders().isEmpty());
+    assertNull(server.getResults().getFlight2TrajectoryMap().get(
+        new Flight("AAL500", (FlightTrack) null)));
+    assertEquals(999, server.getResults().getFlights().size());
+  }
+
+  @Test
+  public void testResultsAreLiveViews() {
+    ResultsState state = new ResultsState();
+    ComputationResults views = state.getResults();
+    move("N1");
+    blunders.add("N1");
+    state.update(results());
+    assertSame(views, state.getResults());
+    assertEquals(1, views.getFlights().size());
+    assertSame(flights.get("N1"), views.getBlunders().iterator().next());
+    assertSame(trajectories.get("N1"), views.getFlight2TrajectoryMap().get(flights.get("N1")));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDeltaFromAnotherVersionIsRejected() {
+    ResultsState server = new ResultsState();
+    move("N1");
+    server.update(results());
+    new ResultsState().apply(server.update(results()));
+  }
+}
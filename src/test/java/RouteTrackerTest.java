@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.computation.ComputationMediator;
+import tsafe.server.computation.data.RouteSegments;
+import tsafe.server.computation.data.RouteTrack;
+import tsafe.server.computation.sub_computation.RouteTracker;
+
+public class RouteTrackerTest {
+
+  private Calculator calculator;
+  private RouteTracker tracker;
+  private FlightPlan plan;
+
+  @Before
+  public void setUp() {
+    calculator = new Calculator();
+    ComputationMediator mediator = new ComputationMediator(calculator);
+    mediator.setBounds(TestFlights.BOUNDS);
+    tracker = new RouteTracker(mediator, calculator);
+
+    plan = TestFlights.plan(TestFlights.route(Arrays.asList(
+        new Fix("AAA", 41.0, -74.0),
+        new Fix("BBB", 42.0, -73.0),
+        new Fix("CCC", 43.0, -73.5),
+        new Fix("DDD", 43.5, -71.0),
+        new Fix("EEE", 42.0, -69.0))));
+  }
+
+  private RouteTrack find(double lat, double lon, RouteTrack previous) {
+    return tracker.findRouteTrack(TestFlights.track(lat, lon, 0), plan, previous);
+  }
+
+  @Test
+  public void testSegmentsAreCachedWithTheRoute() {
+    find(42.5, -73.0, null);
+    RouteSegments segments = RouteSegments.of(plan.getRoute(), calculator, TestFlights.BOUNDS);
+    assertEquals(4, segments.size());
+
+    // Amending the speed keeps the route, and its segments
+    plan = plan.amendAssignedSpeed(0.3);
+    find(42.5, -73.0, null);
+    assertSame(segments, RouteSegments.of(plan.getRoute(), calculator, TestFlights.BOUNDS));
+  }
+
+  @Test
+  public void testAxisAlignedSegmentsSnapBetweenTheirFixes() {
+    // Along the western edge of the bounds the route is vertical once
+    // projected, and along a parallel it is horizontal
+    plan = TestFlights.plan(TestFlights.route(Arrays.asList(
+        new Fix("AAA", 41.0, -75.0),
+        new Fix("BBB", 44.0, -75.0),
+        new Fix("CCC", 44.0, -70.0))));
+
+    RouteTrack vertical = find(42.5, -74.9, null);
+    assertEquals(0, vertical.getSegment());
+    assertEquals(42.5, vertical.getLatitude(), 1e-9);
+    assertEquals(-75.0, vertical.getLongitude(), 1e-9);
+
+    RouteTrack horizontal = find(43.9, -72.0, null);
+    assertEquals(1, horizontal.getSegment());
+    assertEquals(44.0, horizontal.getLatitude(), 1e-9);
+    assertTrue(horizontal.getLongitude() > -72.1 && horizontal.getLongitude() < -71.9);
+  }
+
+  @Test
+  public void testPreviousSegmentDoesNotChangeTheResult() {
+    for (double lat = 40.5; lat < 44.5; lat += 0.25) {
+      for (double lon = -74.5; lon < -68.5; lon += 0.25) {
+        RouteTrack expected = find(lat, lon, null);
+        for (int hint = 0; hint < 4; hint++) {
+          RouteTrack previous = find(41.0 + hint * 0.7, -74.0 + hint * 1.2, null);
+          RouteTrack actual = find(lat, lon, previous);
+          assertEquals(expected.getSegment(), actual.getSegment());
+          assertSame(expected.getPrevFix(), actual.getPrevFix());
+          assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+          assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+        }
+      }
+    }
+  }
+}
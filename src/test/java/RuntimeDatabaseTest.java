@@ -0,0 +1,264 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Route;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+import tsafe.server.database.RuntimeDatabase;
+
+public class RuntimeDatabaseTest {
+
+  private Flight randomFlight(Random random, int i) {
+    FlightTrack track = new FlightTrack(25 + 25 * random.nextDouble(),
+        -125 + 58 * random.nextDouble(), 9000, i, 0.2, 0);
+    if (i % 3 == 0) {
+      return new Flight("N" + i, track);
+    }
+    Route route = new Route();
+    for (int j = 0; j < 2 + random.nextInt(6); j++) {
+      route.addFix(new Fix("F" + i + "_" + j, 25 + 25 * random.nextDouble(),
+          -125 + 58 * random.nextDouble()));
+    }
+    return new Flight("AAL" + i, i % 7 == 0 ? null : track, new FlightPlan(0.2, 9000, route));
+  }
+
+  /** The answer of a full scan over the flights */
+  private Set<Flight> scan(Collection<Flight> flights, LatLonBounds bounds) {
+    Set<Flight> result = new HashSet<Flight>();
+    for (Flight f : flights) {
+      if (f.getFlightTrack() == null)
+        continue;
+      boolean routeInBounds = false;
+      if (f.getFlightPlan() != null) {
+        for (Object fix : f.getFlightPlan().getRoute().fixList()) {
+          routeInBounds |= bounds.contains((Fix) fix);
+        }
+      }
+      if (routeInBounds || bounds.contains(f.getFlightTrack().getLatitude(),
+          f.getFlightTrack().getLongitude())) {
+        result.add(f);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testSelectFlightsInBoundsMatchesScan() {
+    checkSelectFlightsInBounds(new RuntimeDatabase());
+  }
+
+  @Test
+  public void testConcurrentSelectFlightsInBoundsMatchesScan() {
+    checkSelectFlightsInBounds(new ConcurrentRuntimeDatabase());
+  }
+
+  private void checkSelectFlightsInBounds(DatabaseInterface db) {
+    Random random = new Random(11);
+    Set<Flight> flights = new HashSet<Flight>();
+
+    for (int i = 0; i < 3000; i++) {
+      Flight f = randomFlight(random, i);
+      db.insertFlight(f);
+      flights.add(f);
+    }
+
+    // Move, amend and delete some of the flights
+    for (int i = 0; i < 3000; i += 4) {
+      Flight moved = randomFlight(random, i);
+      db.updateFlight(moved);
+      flights.remove(moved);
+      flights.add(moved);
+    }
+    for (int i = 1; i < 3000; i += 10) {
+      Flight deleted = db.selectFlight("AAL" + i);
+      db.deleteFlight("AAL" + i);
+      flights.remove(deleted);
+    }
+
+    LatLonBounds[] queries = {
+      new LatLonBounds(40, -75, 45, -68),
+      new LatLonBounds(42.1, -71.3, 42.2, -71.2),
+      new LatLonBounds(0, -180, 90, 0),
+      new LatLonBounds(45, -70, 40, -75),
+    };
+    for (LatLonBounds bounds : queries) {
+      Set<Flight> expected = scan(flights, bounds);
+      assertEquals(expected, new HashSet<Flight>(db.selectFlightsInBounds(bounds)));
+    }
+    assertTrue(scan(flights, queries[0]).size() > 0);
+  }
+
+  @Test
+  public void testReadersNeverMissMovingFlights() throws InterruptedException {
+    final DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    final LatLonBounds bounds = new LatLonBounds(40, -75, 45, -68);
+    for (int i = 0; i < 50; i++) {
+      db.insertFlight(new Flight("N" + i, new FlightTrack(42, -72, 9000, 0, 0.2, 0)));
+    }
+
+    // Keep moving the flights from cell to cell, always within the bounds
+    final AtomicBoolean running = new AtomicBoolean(true);
+    Thread writer = new Thread() {
+      public void run() {
+        Random random = new Random(3);
+        while (running.get()) {
+          db.updateFlight(new Flight("N" + random.nextInt(50), new FlightTrack(
+              40.5 + 4 * random.nextDouble(), -74.5 + 6 * random.nextDouble(),
+              9000, 0, 0.2, 0)));
+        }
+      }
+    };
+    writer.start();
+    try {
+      for (int i = 0; i < 2000; i++) {
+        assertEquals(50, db.selectFlightsInBounds(bounds).size());
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+  }
+
+  @Test
+  public void testReadersSeeWholeBatches() throws InterruptedException {
+    final DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    final LatLonBounds bounds = new LatLonBounds(40, -75, 45, -68);
+    for (int i = 0; i < 50; i++) {
+      db.insertFlight(new Flight("N" + i, new FlightTrack(42, -72, 9000, 0, 0.2, 0)));
+    }
+
+    // Replace all the flights in each batch, deleting before inserting as
+    // the FZ and AF messages do
+    final AtomicBoolean running = new AtomicBoolean(true);
+    Thread writer = new Thread() {
+      public void run() {
+        final Random random = new Random(7);
+        while (running.get()) {
+          db.executeBatch(new Runnable() {
+            public void run() {
+              for (int i = 0; i < 50; i++) {
+                db.deleteFlight("N" + i);
+                db.insertFlight(new Flight("N" + i, new FlightTrack(
+                    40.5 + 4 * random.nextDouble(), -74.5 + 6 * random.nextDouble(),
+                    9000, 0, 0.2, 0)));
+              }
+            }
+          });
+        }
+      }
+    };
+    writer.start();
+    try {
+      for (int i = 0; i < 2000; i++) {
+        assertEquals(50, db.selectFlightsInBounds(bounds).size());
+        assertNotNull(db.selectFlight("N" + (i % 50)));
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+  }
+
+  /** A flight that counts how often its track is read */
+  private static class CountingFlight extends Flight {
+
+    static final AtomicInteger reads = new AtomicInteger();
+
+    CountingFlight(String aircraftId, FlightTrack track) {
+      super(aircraftId, track);
+    }
+
+    public FlightTrack getFlightTrack() {
+      reads.incrementAndGet();
+      return super.getFlightTrack();
+    }
+  }
+
+  @Test
+  public void testQueriesOnlyReadNearbyFlightsWhileFlightsMove() throws InterruptedException {
+    final DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    final LatLonBounds bounds = new LatLonBounds(40, -75, 45, -68);
+    for (int i = 0; i < 50; i++) {
+      db.insertFlight(new Flight("N" + i, new FlightTrack(42, -72, 9000, 0, 0.2, 0)));
+    }
+    Random random = new Random(5);
+    for (int i = 0; i < 5000; i++) {
+      db.insertFlight(new CountingFlight("FAR" + i, new FlightTrack(
+          25 + 10 * random.nextDouble(), -125 + 30 * random.nextDouble(), 9000, 0, 0.2, 0)));
+    }
+    CountingFlight.reads.set(0);
+
+    // Keep moving the nearby flights from cell to cell, like live traffic
+    final AtomicBoolean running = new AtomicBoolean(true);
+    Thread writer = new Thread() {
+      public void run() {
+        Random random = new Random(3);
+        while (running.get()) {
+          db.updateFlight(new Flight("N" + random.nextInt(50), new FlightTrack(
+              40.5 + 4 * random.nextDouble(), -74.5 + 6 * random.nextDouble(),
+              9000, 0, 0.2, 0)));
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    };
+    writer.start();
+    try {
+      for (int i = 0; i < 5000; i++) {
+        assertEquals(50, db.selectFlightsInBounds(bounds).size());
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+
+    // None of the far away flights was ever a candidate
+    assertEquals(0, CountingFlight.reads.get());
+  }
+
+  @Test
+  public void testFlightsAreSharedSnapshots() {
+    DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    Flight first = new Flight("N1", new FlightTrack(42, -72, 9000, 0, 0.2, 0));
+    db.insertFlight(first);
+    assertSame(first, db.selectFlight("N1"));
+
+    Flight second = first.withFlightTrack(new FlightTrack(42.1, -72, 9000, 1000, 0.2, 0));
+    db.updateFlight(second);
+    assertSame(second, db.selectFlight("N1"));
+    assertNotSame(first, second);
+    assertEquals(42, first.getFlightTrack().getLatitude(), 0);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testFlightPlanRouteIsUnmodifiable() {
+    Route route = new Route();
+    route.addFix(new Fix("AAA", 42, -72));
+    FlightPlan plan = new FlightPlan(0.2, 9000, route);
+
+    // Changing the original route does not change the plan
+    route.addFix(new Fix("BBB", 43, -72));
+    assertEquals(1, plan.getRoute().fixList().size());
+    plan.getRoute().addFix(new Fix("CCC", 44, -72));
+  }
+}
@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+import tsafe.server.parser.StaticDataLoader;
+
+public class StaticDataLoaderTest {
+
+  private static final String[] DATA_FILES = {
+    "datafiles/fixes.txt", "datafiles/airports.txt", "datafiles/navaids.txt",
+    "datafiles/airways.txt", "datafiles/sids.txt", "datafiles/stars.txt"
+  };
+
+  @Test
+  public void testLoadsEveryFile() {
+    DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    StaticDataLoader loader = new StaticDataLoader(db);
+    assertTrue(loader.load(DATA_FILES).isEmpty());
+
+    assertTrue(db.selectFixesInBounds().size() > 0);
+    assertTrue(db.selectAirwaysInBounds().size() > 0);
+    assertTrue(db.selectSidsInBounds().size() > 0);
+    assertTrue(db.selectStarsInBounds().size() > 0);
+    assertNotNull(loader.timingReport());
+  }
+
+  @Test
+  public void testReportsTheErrorsOfEveryFile() throws IOException {
+    File badAirways = File.createTempFile("airways", ".txt");
+    try {
+      FileWriter writer = new FileWriter(badAirways);
+      writer.write("J1   TIJ   32-32-24.550N 116-57-13.150W MZB   32-46-55.923N 117-13-31.506W\n");
+      writer.write("J2   MZB   32-46-55.923N\n");
+      writer.close();
+
+      String[] dataFiles = DATA_FILES.clone();
+      dataFiles[StaticDataLoader.NAVAIDS] = "datafiles/missing.txt";
+      dataFiles[StaticDataLoader.AIRWAYS] = badAirways.getPath();
+      dataFiles[StaticDataLoader.STARS] = "datafiles/missing.txt";
+
+      List errors = new StaticDataLoader(new ConcurrentRuntimeDatabase()).load(dataFiles);
+      assertEquals(errors.toString(), 3, errors.size());
+      assertEquals("Unable to read navaid file.", errors.get(0));
+      assertTrue(errors.get(1).toString(), errors.get(1).toString().startsWith("Bad airway file: line 2"));
+      assertEquals("Unable to read star file.", errors.get(2));
+    } finally {
+      badAirways.delete();
+    }
+  }
+}
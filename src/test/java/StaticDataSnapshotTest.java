@@ -0,0 +1,216 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import tsafe.common_datastructures.Airway;
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.FixTable;
+import tsafe.common_datastructures.Sid;
+import tsafe.common_datastructures.Star;
+import tsafe.server.calculation.Calculator;
+import tsafe.server.database.ConcurrentRuntimeDatabase;
+import tsafe.server.database.DatabaseInterface;
+import tsafe.server.parser.StaticDataSnapshot;
+import tsafe.server.parser.asdi.ASDIParser;
+
+public class StaticDataSnapshotTest {
+
+  private static final String[] DATA_FILES = {
+    "datafiles/fixes.txt", "datafiles/airports.txt", "datafiles/navaids.txt",
+    "datafiles/airways.txt", "datafiles/sids.txt", "datafiles/stars.txt"
+  };
+
+  private File dir, snapshot;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = File.createTempFile("tsafe", "");
+    dir.delete();
+    snapshot = new File(dir, "static-data.snapshot");
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    for (int i = 0; files != null && i < files.length; i++) {
+      files[i].delete();
+    }
+    dir.delete();
+  }
+
+  private DatabaseInterface read() {
+    DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    ASDIParser parser = new ASDIParser(new StringReader(""), db, new Calculator());
+    assertTrue(parser.readStaticData(DATA_FILES, snapshot).isEmpty());
+    return db;
+  }
+
+  @Test
+  public void testSnapshotLoadsTheSameData() throws IOException {
+    DatabaseInterface parsed = read();
+    assertTrue(snapshot.isFile());
+    // The directory was created, and the temporary file moved into place
+    assertEquals(1, dir.listFiles().length);
+
+    DatabaseInterface loaded = new ConcurrentRuntimeDatabase();
+    assertTrue(StaticDataSnapshot.load(snapshot, StaticDataSnapshot.checksums(DATA_FILES), loaded));
+
+    assertEquals(parsed.selectFixesInBounds().size(), loaded.selectFixesInBounds().size());
+    Iterator fixIter = parsed.selectFixesInBounds().iterator();
+    while (fixIter.hasNext()) {
+      Fix fix = (Fix) fixIter.next();
+      Fix copy = loaded.selectFix(fix.getId());
+      assertEquals(fix.getLatitude(), copy.getLatitude(), 0);
+      assertEquals(fix.getLongitude(), copy.getLongitude(), 0);
+    }
+
+    assertEquals(parsed.selectAirwaysInBounds().size(), loaded.selectAirwaysInBounds().size());
+    Iterator airwayIter = parsed.selectAirwaysInBounds().iterator();
+    while (airwayIter.hasNext()) {
+      Airway airway = (Airway) airwayIter.next();
+      assertEquals(airway.toString(), loaded.selectAirway(airway.getId()).toString());
+    }
+
+    assertEquals(parsed.selectSidsInBounds().size(), loaded.selectSidsInBounds().size());
+    Iterator sidIter = parsed.selectSidsInBounds().iterator();
+    while (sidIter.hasNext()) {
+      Sid sid = (Sid) sidIter.next();
+      assertEquals(sid.allRoutes().size(), loaded.selectSid(sid.getId()).allRoutes().size());
+    }
+    assertEquals(parsed.selectStarsInBounds().size(), loaded.selectStarsInBounds().size());
+
+    // Route fixes are still shared with the fix table
+    Airway airway = (Airway) loaded.selectAirwaysInBounds().iterator().next();
+    Fix first = airway.firstFix();
+    Fix interned = loaded.selectFix(first.getId());
+    if (interned != null) {
+      assertSame(interned, first);
+    }
+  }
+
+  @Test
+  public void testStaleOrCorruptSnapshotIsIgnored() throws IOException {
+    read();
+    long[] checksums = StaticDataSnapshot.checksums(DATA_FILES);
+
+    checksums[3]++;
+    assertFalse(StaticDataSnapshot.load(snapshot, checksums, new ConcurrentRuntimeDatabase()));
+    checksums[3]--;
+
+    RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+    file.setLength(file.length() / 2);
+    file.close();
+    DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    assertFalse(StaticDataSnapshot.load(snapshot, checksums, db));
+    assertTrue(db.selectFixesInBounds().isEmpty());
+
+    // Reading again replaces the snapshot
+    read();
+    assertTrue(StaticDataSnapshot.load(snapshot, checksums, new ConcurrentRuntimeDatabase()));
+  }
+
+  @Test
+  public void testSnapshotWithCorruptBodyIsIgnored() throws IOException {
+    read();
+    long[] checksums = StaticDataSnapshot.checksums(DATA_FILES);
+
+    // Make the first count of the body huge
+    RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+    file.seek(12 + checksums.length * 8 + 12);
+    file.writeInt(Integer.MAX_VALUE);
+    file.close();
+    DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    assertFalse(StaticDataSnapshot.load(snapshot, checksums, db));
+    assertTrue(db.selectFixesInBounds().isEmpty());
+  }
+
+  @Test
+  public void testSnapshotWithBrokenProcedureLeavesTheFixTableAlone() throws IOException {
+    read();
+    long[] checksums = StaticDataSnapshot.checksums(DATA_FILES);
+    DataInputStream header = new DataInputStream(new FileInputStream(snapshot));
+    int magic = header.readInt();
+    int version = header.readInt();
+    header.close();
+
+    // Fixes AAA, BBB and CCC, and a sid whose transition does not start at
+    // the last fix of its basic route
+    String[] strings = { "AAA", "BBB", "CCC", "S1" };
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream body = new DataOutputStream(bytes);
+    body.writeInt(strings.length);
+    int chars = 0;
+    for (int i = 0; i < strings.length; i++) {
+      body.writeInt(strings[i].length());
+      chars += strings[i].length();
+    }
+    body.writeInt(chars);
+    for (int i = 0; i < strings.length; i++) {
+      body.writeChars(strings[i]);
+    }
+    body.writeInt(3);
+    for (int i = 0; i < 3; i++) {
+      body.writeInt(i);
+    }
+    for (int i = 0; i < 3; i++) {
+      body.writeDouble(42);
+    }
+    for (int i = 0; i < 3; i++) {
+      body.writeDouble(-72 + i);
+    }
+    body.writeInt(3);
+    for (int i = 0; i < 3; i++) {
+      body.writeInt(i);
+    }
+    body.writeInt(0);
+    body.writeInt(1);
+    body.writeInt(3);
+    body.writeInt(2);
+    body.writeInt(0);
+    body.writeInt(1);
+    body.writeInt(1);
+    body.writeInt(2);
+    body.writeInt(2);
+    body.writeInt(0);
+    body.writeInt(0);
+    body.close();
+
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(snapshot));
+    out.writeInt(magic);
+    out.writeInt(version);
+    out.writeInt(checksums.length);
+    for (int i = 0; i < checksums.length; i++) {
+      out.writeLong(checksums[i]);
+    }
+    out.writeInt(bytes.size());
+    out.writeLong(crc.getValue());
+    bytes.writeTo(out);
+    out.close();
+
+    DatabaseInterface db = new ConcurrentRuntimeDatabase();
+    FixTable fixTable = db.getFixTable();
+    fixTable.index(fixTable.append("DDD", 43, -71));
+    assertFalse(StaticDataSnapshot.load(snapshot, checksums, db));
+    assertEquals(1, fixTable.size());
+    assertTrue(db.selectSidsInBounds().isEmpty());
+  }
+}
@@ -0,0 +1,58 @@
+import java.util.Vector;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Flight;
+import tsafe.common_datastructures.FlightPlan;
+import tsafe.common_datastructures.FlightTrack;
+import tsafe.common_datastructures.LatLonBounds;
+import tsafe.common_datastructures.Route;
+
+/**
+ * The airspace, route and flights the computation tests share
+ */
+public class TestFlights {
+
+  /** Bounds around the route */
+  public static final LatLonBounds BOUNDS = new LatLonBounds(40, -75, 45, -68);
+
+  /** Assigned speed and altitude of the flight plans, and of the tracks that follow them */
+  public static final double SPEED = 0.2, ALTITUDE = 3000;
+
+  /** Returns the fixes of the route: AAA, BBB and CCC */
+  public static Vector<Fix> fixes() {
+    Vector<Fix> fixes = new Vector<Fix>();
+    fixes.add(new Fix("AAA", 42.0, -72.0));
+    fixes.add(new Fix("BBB", 42.0, -71.0));
+    fixes.add(new Fix("CCC", 42.5, -70.0));
+    return fixes;
+  }
+
+  /** Returns a route through the fixes */
+  public static Route route(Iterable<Fix> fixes) {
+    Route route = new Route();
+    for (Fix fix : fixes) {
+      route.addFix(fix);
+    }
+    return route;
+  }
+
+  /** Returns a flight plan along the route */
+  public static FlightPlan plan(Route route) {
+    return new FlightPlan(SPEED, ALTITUDE, route);
+  }
+
+  /** Returns a flight plan along the route through AAA, BBB and CCC */
+  public static FlightPlan plan() {
+    return plan(route(fixes()));
+  }
+
+  /** Returns a track at the assigned speed and altitude, heading north */
+  public static FlightTrack track(double lat, double lon, long time) {
+    return new FlightTrack(lat, lon, ALTITUDE, time, SPEED, 0);
+  }
+
+  /** Returns N123, a flight without a flight plan */
+  public static Flight unplanned() {
+    return new Flight("N123", new FlightTrack(43, -72, 1000, 0, 0.1, 1));
+  }
+}
@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import tsafe.server.metrics.Tracer;
+
+public class TracerTest {
+
+  private String read(File file) throws IOException {
+    StringBuffer sb = new StringBuffer();
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      sb.append(line).append('\n');
+    }
+    in.close();
+    return sb.toString();
+  }
+
+  private int count(String s, String part) {
+    int n = 0;
+    for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+      n++;
+    }
+    return n;
+  }
+
+  @Test
+  public void testStagePercentiles() {
+    Tracer tracer = new Tracer(16);
+    for (int i = 1; i <= 100; i++) {
+      tracer.record(Tracer.COMPUTE, 1000, i * 1000L);
+    }
+    tracer.end(Tracer.QUERY, tracer.start());
+
+    assertEquals(100, tracer.getHistogram(Tracer.COMPUTE).getCount());
+    assertEquals(1, tracer.getHistogram(Tracer.QUERY).getCount());
+    long median = tracer.getHistogram(Tracer.COMPUTE).getPercentile(50);
+    assertTrue(median >= 50000 && median <= 50000 + 50000 / 8);
+    String report = tracer.getReport();
+    assertTrue(report.indexOf(Tracer.COMPUTE + ": 100 spans") > 0);
+    assertTrue(report.indexOf(Tracer.COMPUTE) < report.indexOf(Tracer.QUERY));
+
+    tracer.setEnabled(false);
+    tracer.end(Tracer.QUERY, tracer.start());
+    assertEquals(1, tracer.getHistogram(Tracer.QUERY).getCount());
+  }
+
+  @Test
+  public void testExportKeepsTheMostRecentSpans() throws IOException {
+    Tracer tracer = new Tracer(4);
+    for (int i = 0; i < 10; i++) {
+      tracer.record(i < 7 ? Tracer.APPLY : Tracer.NOTIFY, System.nanoTime(), 1500 + i);
+    }
+    File file = File.createTempFile("trace", ".json");
+    file.deleteOnExit();
+    tracer.exportChromeTrace(file);
+
+    String json = read(file);
+    assertTrue(json.startsWith("{") && json.trim().endsWith("]}"));
+    assertEquals(4, count(json, "\"ph\":\"X\""));
+    assertEquals(1, count(json, Tracer.APPLY));
+    assertEquals(3, count(json, Tracer.NOTIFY));
+    assertTrue(json.indexOf("\"dur\":1.509}") > 0);
+    assertEquals(10, tracer.getHistogram(Tracer.APPLY).getCount()
+        + tracer.getHistogram(Tracer.NOTIFY).getCount());
+  }
+}
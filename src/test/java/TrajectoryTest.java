@@ -0,0 +1,55 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import tsafe.common_datastructures.Fix;
+import tsafe.common_datastructures.Point4D;
+import tsafe.common_datastructures.Route;
+import tsafe.common_datastructures.Trajectory;
+
+public class TrajectoryTest {
+
+  @Test
+  public void testFindsPointsByTime() {
+    Trajectory trajectory = new Trajectory(1);
+    for (int i = 0; i < 100; i++) {
+      trajectory.addPoint(new Point4D(42, -72, 9000, 1000 + 10 * i));
+    }
+    assertEquals(100, trajectory.size());
+    assertEquals(1990, trajectory.lastPoint().getTime());
+
+    assertEquals(-1, trajectory.indexAtTime(999));
+    assertEquals(0, trajectory.indexAtTime(1000));
+    assertEquals(0, trajectory.indexAtTime(1009));
+    assertEquals(50, trajectory.indexAtTime(1500));
+    assertEquals(99, trajectory.indexAtTime(5000));
+    assertEquals(-1, new Trajectory().indexAtTime(0));
+  }
+
+  @Test
+  public void testAppendsInBulk() {
+    Trajectory trajectory = new Trajectory();
+    Point4D first = new Point4D(42, -72, 9000, 0);
+    Point4D second = new Point4D(43, -71, 9000, 60);
+    trajectory.addPoints(Arrays.asList(new Point4D[] {first, second}));
+    Trajectory copy = new Trajectory(trajectory);
+    copy.addPoint(new Point4D(44, -70, 9000, 120));
+
+    assertEquals(2, trajectory.size());
+    assertSame(second, trajectory.getPoint(1));
+    assertEquals(3, copy.pointList().size());
+    assertSame(first, copy.pointList().get(0));
+
+    Route route = new Route();
+    Fix a = new Fix("AAA", 42, -72);
+    Fix b = new Fix("BBB", 43, -71);
+    route.addFixes(Arrays.asList(new Fix[] {a, b}));
+    route.addFix(a);
+    assertEquals(3, route.size());
+    assertSame(b, route.getFix(1));
+    assertEquals("AAA.BBB.AAA", route.toString());
+  }
+}
@@ -0,0 +1,197 @@
+package tsafe.server.parser.asdi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageTest {
+
+  /** Zones whose offset changes during the year, north and south */
+  private static final String[] ZONES = {
+    "America/New_York", "Europe/London", "Australia/Sydney"
+  };
+
+  /** One message of each type */
+  private static final String[] MESSAGES = {
+    "000116190000KZBWAF AAL1/1 BOS JFK 10 4400N/07400W..4500N/07300W",
+    "000216190100KZBWAZ AAL1/1 BOS JFK 1930",
+    "000316190200KZBWDZ AAL1/1 B738/L BOS D1830 JFK 1930",
+    "000416190300KZBWFZ AAL1/1 B738/L 0450 BOS P1830 350 4200N/07200W..4200N/07100W",
+    "000516190400KZBWRZ AAL1/1 BOS JFK",
+    "000616190500KZBWTZ AAL1/1 450 350 4200N/07130W",
+    "000716190600KZBWUZ AAL1/1 B738/L 0450 BOS E1830 350 4200N/07200W..4200N/07100W",
+    "000816190700KZBWRT",
+    "000916190800KZBWTO",
+    "000A16190900KZBWHB",
+  };
+
+  private TimeZone defaultZone;
+
+  @Before
+  public void setUp() {
+    defaultZone = TimeZone.getDefault();
+  }
+
+  @After
+  public void tearDown() {
+    TimeZone.setDefault(defaultZone);
+  }
+
+  private static long calendarTime(int year, int month, int day, int hour, int minute, int second) {
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(year, month, day, hour, minute, second);
+    return cal.getTime().getTime();
+  }
+
+  /** Decodes the line from a mapped feed file */
+  private static Message mapped(String line, int year, int month) throws IOException {
+    File file = File.createTempFile("feed", ".txt");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write(line + "\n");
+    writer.close();
+
+    MappedFeedReader feed = new MappedFeedReader(file);
+    try {
+      assertTrue(feed.nextRecord());
+      return new Message(feed, year, month);
+    } finally {
+      feed.close();
+    }
+  }
+
+  @Test
+  public void testTimeMatchesCalendarOnEveryDayOfTheYear() {
+    for (int z = 0; z < ZONES.length; z++) {
+      TimeZone.setDefault(TimeZone.getTimeZone(ZONES[z]));
+      Calendar day = Calendar.getInstance();
+      day.clear();
+      day.set(2004, Calendar.JANUARY, 1);
+      while (day.get(Calendar.YEAR) == 2004) {
+        int year = day.get(Calendar.YEAR);
+        int month = day.get(Calendar.MONTH);
+        int date = day.get(Calendar.DATE);
+        for (int hour = 0; hour < 24; hour++) {
+          assertEquals(ZONES[z] + " " + day.getTime(), calendarTime(year, month, date, hour, 0, 0),
+              Message.toTime(year, month, date, hour, 0, 0));
+          assertEquals(ZONES[z] + " " + day.getTime(), calendarTime(year, month, date, hour, 30, 0),
+              Message.toTime(year, month, date, hour, 30, 0));
+          assertEquals(ZONES[z] + " " + day.getTime(), calendarTime(year, month, date, hour, 59, 59),
+              Message.toTime(year, month, date, hour, 59, 59));
+        }
+        day.add(Calendar.DATE, 1);
+      }
+    }
+  }
+
+  @Test
+  public void testTimeFollowsTheDefaultZone() {
+    for (int z = 0; z < ZONES.length; z++) {
+      TimeZone.setDefault(TimeZone.getTimeZone(ZONES[z]));
+      assertEquals(ZONES[z], calendarTime(2004, Calendar.JULY, 16, 19, 0, 0),
+          Message.toTime(2004, Calendar.JULY, 16, 19, 0, 0));
+    }
+  }
+
+  @Test
+  public void testStringAndMappedMessagesAreDecodedAlike() throws IOException {
+    for (int i = 0; i < MESSAGES.length; i++) {
+      Message string = new Message(MESSAGES[i], 2004, Calendar.JULY);
+      Message mapped = mapped(MESSAGES[i], 2004, Calendar.JULY);
+
+      assertEquals(MESSAGES[i].substring(16, 18), string.getType());
+      assertEquals(string.getType(), mapped.getType());
+      assertEquals(string.getTypeCode(), mapped.getTypeCode());
+      assertEquals(calendarTime(2004, Calendar.JULY, 16, 19, i, 0), string.getTime());
+      assertEquals(string.getTime(), mapped.getTime());
+      assertEquals("KZBW", string.getFacilityCode());
+      assertEquals(string.getFacilityCode(), mapped.getFacilityCode());
+      assertEquals(MESSAGES[i], mapped.getOriginalString());
+      for (int field = Message.MESSAGE_TYPE; field <= Message.ARRIVAL_TIME; field++) {
+        assertEquals(MESSAGES[i] + " field " + field, string.getField(field), mapped.getField(field));
+      }
+    }
+  }
+
+  @Test
+  public void testFieldsAreSplitOnWhiteSpace() throws IOException {
+    String line = "000616190500KZBWTZ  AAL1/1\t450 350   4200N/07130W";
+    Message[] messages = { new Message(line, 2004, Calendar.JULY), mapped(line, 2004, Calendar.JULY) };
+    for (int i = 0; i < messages.length; i++) {
+      assertEquals("TZ", messages[i].getField(Message.MESSAGE_TYPE));
+      assertEquals("AAL1/1", messages[i].getField(Message.FLIGHT_ID));
+      assertEquals("450", messages[i].getField(Message.SPEED));
+      assertEquals("350", messages[i].getField(Message.ASSIGNED_ALTITUDE));
+      assertEquals("4200N/07130W", messages[i].getField(Message.TRACK_POSITION));
+
+      // Fields the type does not use
+      assertNull(messages[i].getField(Message.ROUTE_DATA));
+    }
+  }
+
+  @Test
+  public void testMissingTrailingFieldsAreNull() throws IOException {
+    String[] lines = {
+      "000616190500KZBWTZ AAL1/1 450",
+      "000616190500KZBWTZ AAL1/1 450   ",
+    };
+    for (int i = 0; i < lines.length; i++) {
+      Message[] messages = { new Message(lines[i], 2004, Calendar.JULY),
+                             mapped(lines[i], 2004, Calendar.JULY) };
+      for (int j = 0; j < messages.length; j++) {
+        assertEquals("AAL1/1", messages[j].getField(Message.FLIGHT_ID));
+        assertEquals("450", messages[j].getField(Message.SPEED));
+        assertNull(messages[j].getField(Message.ASSIGNED_ALTITUDE));
+        assertNull(messages[j].getField(Message.TRACK_POSITION));
+      }
+    }
+
+    Message typeOnly = new Message("000616190500KZBWFZ", 2004, Calendar.JULY);
+    assertEquals("FZ", typeOnly.getType());
+    assertNull(typeOnly.getField(Message.FLIGHT_ID));
+    assertNull(typeOnly.getField(Message.ROUTE_DATA));
+  }
+
+  @Test
+  public void testBadHeadersAreRejected() throws IOException {
+    String[] numberErrors = {
+      "00G116190000KZBWTZ AAL1/1 450 350 4200N/07130W",
+      "0001161X0000KZBWTZ AAL1/1 450 350 4200N/07130W",
+      "000116 90000KZBWTZ AAL1/1 450 350 4200N/07130W",
+    };
+    String[] otherErrors = {
+      "000116190000KZBW",
+      "0001161900",
+      "000116190000KZBWXX AAL1/1",
+    };
+    for (int i = 0; i < numberErrors.length + otherErrors.length; i++) {
+      String line = i < numberErrors.length ? numberErrors[i] : otherErrors[i - numberErrors.length];
+      for (int mode = 0; mode < 2; mode++) {
+        try {
+          if (mode == 0) {
+            new Message(line, 2004, Calendar.JULY);
+          } else {
+            mapped(line, 2004, Calendar.JULY);
+          }
+          fail("Accepted " + line);
+        } catch (NumberFormatException e) {
+          assertTrue(line, i < numberErrors.length);
+        } catch (IllegalArgumentException e) {
+          assertTrue(line, i >= numberErrors.length);
+        }
+      }
+    }
+  }
+}